@@ -1,9 +1,24 @@
 package de.hpi.swa.trufflesqueak.test;
 
+import java.math.BigInteger;
+
 import org.junit.Test;
 
+import com.oracle.truffle.api.nodes.NodeCost;
+import com.oracle.truffle.api.nodes.NodeUtil;
+
 import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.LargeInteger;
+import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.model.ObjectLayout;
 import de.hpi.swa.trufflesqueak.model.PointersObject;
+import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
+import de.hpi.swa.trufflesqueak.nodes.context.ObjectAtNode;
+import de.hpi.swa.trufflesqueak.nodes.context.ObjectAtPutNode;
 
 public class TestBytecodes extends TestSqueak {
     @Test
@@ -56,6 +71,99 @@ public class TestBytecodes extends TestSqueak {
         assertSame(null, runMethod(rcvr, 115, 124));
     }
 
+    @Test
+    public void testInlinedSpecialSelectors() {
+        BaseSqueakObject rcvr = image.specialObjectsArray;
+        // pushConstant: 1, pushConstant: 2, send: +, returnTop
+        assertEquals(3, runMethod(rcvr, 118, 119, 176, 124));
+        // pushConstant: 1, pushConstant: 2, send: <, returnTop
+        assertTrue((boolean) runMethod(rcvr, 118, 119, 178, 124));
+        // pushConstant: 2, pushConstant: 1, send: bitAnd:, returnTop
+        assertEquals(0, runMethod(rcvr, 119, 118, 190, 124));
+    }
+
+    @Test
+    public void testInlinedSpecialSelectorOverflow() {
+        CompiledMethodObject cm = new CompiledMethodObject(image);
+        // pushTemp: 0, pushTemp: 1, send: +, returnTop
+        cm.fillinLiteralsAndBytes(new Object[]{(2 << 24) | (2 << 18)}, new byte[]{16, 17, (byte) 176, 124});
+        assertEquals(BigInteger.ONE.shiftLeft(63), runMethod(cm, (Object) null, Long.MAX_VALUE, 1L));
+        LargeInteger large = new LargeInteger(image, BigInteger.ONE.shiftLeft(70));
+        assertEquals(BigInteger.ONE.shiftLeft(70).add(BigInteger.ONE), runMethod(cm, (Object) null, large, 1));
+    }
+
+    @Test
+    public void testSpecialSelectorSendsToOtherReceivers() {
+        CompiledMethodObject plusMethod = new CompiledMethodObject(image);
+        // returnReceiver, for a method with one argument
+        plusMethod.fillinLiteralsAndBytes(new Object[]{(1 << 24) | (1 << 18)}, new byte[]{120});
+        ListObject methodDict = new ListObject(image, null, new Object[]{1, image.wrap(plusMethod, null), image.plus, null});
+        ClassObject vectorClass = new ClassObject(image, image.metaclass, new Object[]{null, methodDict, 0});
+        NativeObject rcvr = new NativeObject(image, vectorClass, new byte[]{1, 2});
+        // pushReceiver, pushConstant: 1, send: +, returnTop
+        assertSame(rcvr, runMethod(rcvr, 112, 118, 176, 124));
+    }
+
+    @Test
+    public void testFilledInMethod() {
+        // methods from an image are filled in without decoding their header
+        CompiledMethodObject cm = new CompiledMethodObject(image);
+        int header = (2 << 24) | (2 << 18) | 2; // two arguments, two temps, two literals
+        // pushTemp: 0, pushTemp: 1, send: +, returnTop
+        cm.fillinLiteralsAndBytes(new Object[]{header, null, null}, new byte[]{16, 17, (byte) 176, 124});
+        assertEquals(2, cm.getNumArgs());
+        assertFalse(cm.hasPrimitive());
+        assertEquals(5, runMethod(cm, (Object) image.specialObjectsArray, 2, 3));
+
+        CompiledMethodObject primitiveMethod = new CompiledMethodObject(image);
+        // callPrimitive: 1, pushConstant: 1, returnTop
+        primitiveMethod.fillinLiteralsAndBytes(new Object[]{(1 << 24) | (1 << 18) | (1 << 16)}, new byte[]{(byte) 139, 1, 0, 118, 124});
+        assertEquals(1, primitiveMethod.primitiveIndex());
+        assertEquals(5, runMethod(primitiveMethod, (Object) 2, 3));
+        assertEquals(5, primitiveMethod.getCallTarget().call(2, 3));
+    }
+
+    @Test
+    public void testReceiverVariableLayout() {
+        ClassObject pointClass = new ClassObject(image, image.metaclass, new Object[]{null, null, 0});
+        pointClass.setFormat(2);
+        PointersObject rcvr = new PointersObject(image, pointClass, 2);
+        // pushConstant: 1, popIntoReceiverVariable: 0, pushReceiverVariable: 0, returnTop
+        assertEquals(1, runMethod(rcvr, 118, 96, 0, 124));
+        assertSame(ObjectLayout.SlotKind.LONG, rcvr.getLayout().getKind(0));
+        assertNull(rcvr.at0(1));
+
+        PointersObject other = new PointersObject(image, pointClass, 2);
+        other.atput0(0, image.smalltalk);
+        assertFalse(rcvr.getLayout().isValid());
+        assertEquals(1, rcvr.at0(0));
+        assertSame(ObjectLayout.SlotKind.OBJECT, rcvr.getLayout().getKind(0));
+        assertSame(image.smalltalk, other.at0(0));
+    }
+
+    @Test
+    public void testNewInstancesShareLayout() {
+        ClassObject pointClass = new ClassObject(image, image.metaclass, new Object[]{null, null, 0});
+        pointClass.setFormat(2);
+        ((PointersObject) pointClass.newInstance()).atput0(0, 0);
+        // pushConstant: 1, popIntoReceiverVariable: 0, pushReceiverVariable: 0, returnTop
+        CompiledCodeObject cm = makeMethod(118, 96, 0, 124);
+        for (int i = 0; i < 5; i++) {
+            PointersObject rcvr = (PointersObject) pointClass.newInstance();
+            assertNotNull(rcvr.getLayout());
+            assertNull(rcvr.at0(0));
+            assertEquals(1, runMethod(cm, (Object) rcvr, new Object[4]));
+        }
+        for (SqueakNode node : cm.getBytecodeAST()) {
+            for (ObjectAtPutNode atPutNode : NodeUtil.findAllNodeInstances(node, ObjectAtPutNode.class)) {
+                assertEquals(NodeCost.MONOMORPHIC, atPutNode.getCost());
+            }
+            for (ObjectAtNode atNode : NodeUtil.findAllNodeInstances(node, ObjectAtNode.class)) {
+                assertEquals(NodeCost.MONOMORPHIC, atNode.getCost());
+            }
+        }
+    }
+
     @Test
     public void testReturnReceiver() {
         BaseSqueakObject rcvr = image.specialObjectsArray;
@@ -1,15 +1,32 @@
 package de.hpi.swa.trufflesqueak.test;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Stack;
+
 import org.junit.Test;
 
+import com.oracle.truffle.api.nodes.NodeUtil;
+import com.oracle.truffle.api.source.SourceSection;
+
+import de.hpi.swa.trufflesqueak.instrumentation.PrettyPrintVisitor;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.ConstantNode;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.ReturnReceiverNode;
+import de.hpi.swa.trufflesqueak.nodes.bytecodes.SqueakBytecodeNode;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.jump.IfNilCheck;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.jump.IfThenNode;
+import de.hpi.swa.trufflesqueak.nodes.bytecodes.jump.LoopRepeatingNode;
+import de.hpi.swa.trufflesqueak.nodes.bytecodes.jump.LoopRepeatingNode.WhileNode;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.send.CascadedSend;
+import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimDebugger;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.send.SendSelector;
+import de.hpi.swa.trufflesqueak.util.ASTCache;
+import de.hpi.swa.trufflesqueak.util.BytecodeSequence;
+import de.hpi.swa.trufflesqueak.util.Decompiler;
 
 public class TestDecompile extends TestSqueak {
     @Test
@@ -78,6 +95,36 @@ public class TestDecompile extends TestSqueak {
         assertSame(send.receiverNode.getClass(), ConstantNode.class);
     }
 
+    @Test
+    public void testCascadeSourceSections() {
+        // the sends of a cascade are decompiled from the same bytecode, but each shows its own
+        // part of the source
+        CompiledCodeObject cm = makeMethod(0x76, 0x88, 0xc9, 0x87, 0x88, 0xc2, 0x87, 0xc7, 0x87, 0x78);
+        List<CascadedSend> sends = NodeUtil.findAllNodeInstances(cm.getBytecodeAST()[0], CascadedSend.class);
+        assertEquals(3, sends.size());
+        SourceSection[] sections = new SourceSection[sends.size()];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = sends.get(i).getSourceSection();
+            assertNotNull(sections[i]);
+            for (int j = 0; j < i; j++) {
+                assertFalse(sections[j].equals(sections[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testPrimitiveSourceSection() {
+        // <primitive: 'debugger' module: 'TruffleSqueak'>
+        CompiledCodeObject cm = makeMethod(139, 117, 0, 0x78);
+        cm.setLiteral(0, 0x10000);
+        cm.setLiteral(1, image.wrap(image.wrap("TruffleSqueak"), image.wrap("debugger")));
+        List<PrimDebugger> prims = NodeUtil.findAllNodeInstances(cm.getBytecodeAST()[0], PrimDebugger.class);
+        assertEquals(1, prims.size());
+        SourceSection section = prims.get(0).getSourceSection();
+        assertNotNull(section);
+        assertEquals(cm.getBytecodeAST()[0].getSourceSection(), section);
+    }
+
     @Test
     public void testNestedClosure() {
 // CompiledCodeObject cm = makeMethod(0x11, 0x43, 0xd2, 0xe1, 0x8f, 0x01, 0x00, 0x0c,
@@ -144,4 +191,141 @@ public class TestDecompile extends TestSqueak {
                         "    ].\n" +
                         "    ^ self."));
     }
+
+    private CompiledCodeObject makeNestedLoops() {
+        // [t0 < t1] whileTrue: [[t2 < t3] whileTrue: [t2 := t2 + 1]. t0 := t0 + 1]
+        // pushTemp: 0, pushTemp: 1, send: <, jumpFalse: 21, pushTemp: 2, pushTemp: 3, send: <,
+        // jumpFalse: 15, pushTemp: 2, pushConstant: 1, send: +, popIntoTemp: 2, jumpTo: 5,
+        // pushTemp: 0, pushConstant: 1, send: +, popIntoTemp: 0, jumpTo: 0, returnSelf
+        return makeMethod(0x10, 0x11, 0xb2, 0xac, 0x10, 0x12, 0x13, 0xb2, 0x9d, 0x12, 0x76, 0xb0, 0x6a, 0xa3, 0xf6,
+                        0x10, 0x76, 0xb0, 0x68, 0xa3, 0xeb, 0x78);
+    }
+
+    private CompiledCodeObject makeNestedBranches() {
+        // (t0 < t1) ifTrue: [(t2 < t3) ifTrue: [1] ifFalse: [2]] ifFalse: [nil]
+        // pushTemp: 0, pushTemp: 1, send: <, jumpFalse: 12, pushTemp: 2, pushTemp: 3, send: <,
+        // jumpFalse: 10, pushConstant: 1, jumpTo: 11, pushConstant: 2, jumpTo: 13, pushConstant:
+        // nil, pop, returnSelf
+        return makeMethod(0x10, 0x11, 0xb2, 0x9f, 0x12, 0x13, 0xb2, 0x99, 0x76, 0x90, 0x77, 0x90, 0x73, 0x87, 0x78);
+    }
+
+    @Test
+    public void testNestedLoops() {
+        CompiledCodeObject cm = makeNestedLoops();
+        SqueakNode[] bytecodeAST = cm.getBytecodeAST();
+        assertEquals(2, bytecodeAST.length);
+        assertSame(WhileNode.class, bytecodeAST[0].getClass());
+        assertSame(ReturnReceiverNode.class, bytecodeAST[1].getClass());
+        List<LoopRepeatingNode> loops = NodeUtil.findAllNodeInstances(bytecodeAST[0], LoopRepeatingNode.class);
+        assertEquals(2, loops.size());
+        assertDecompilesLikeVectorCopies(cm);
+    }
+
+    @Test
+    public void testNestedBranches() {
+        CompiledCodeObject cm = makeNestedBranches();
+        SqueakNode[] bytecodeAST = cm.getBytecodeAST();
+        assertEquals(2, bytecodeAST.length);
+        assertSame(IfThenNode.class, bytecodeAST[0].getClass());
+        IfThenNode outer = (IfThenNode) bytecodeAST[0];
+        assertSame(IfThenNode.class, outer.thenResult.getClass());
+        assertSame(ConstantNode.class, outer.elseResult.getClass());
+        assertDecompilesLikeVectorCopies(cm);
+    }
+
+    /**
+     * Decompiles again on a plain {@link java.util.Vector}, whose sub-lists are walked the way the
+     * copied branches and loop bodies used to be, and compares the rendered ASTs.
+     */
+    private static void assertDecompilesLikeVectorCopies(CompiledCodeObject cm) {
+        SqueakNode[] reference = Decompiler.blockFrom(new Decompiler(cm).decodeSequence(), new Stack<>());
+        assertEquals(render(reference), render(cm.getBytecodeAST()));
+    }
+
+    private static String render(SqueakNode[] ast) {
+        PrettyPrintVisitor visitor = new PrettyPrintVisitor();
+        visitor.visit(ast);
+        return visitor.build();
+    }
+
+    @Test
+    public void testASTCache() throws IOException {
+        File file = File.createTempFile("trufflesqueak", ".ast");
+        try {
+            CompiledCodeObject[] methods = new CompiledCodeObject[]{makeNestedLoops(), makeNestedBranches(),
+                            makeMethod(0x76, 0x88, 0xc9, 0x87, 0x88, 0xc2, 0x87, 0xc7, 0x87, 0x78)};
+            ASTCache cache = new ASTCache(file, false);
+            for (CompiledCodeObject cm : methods) {
+                cache.getAST(cm);
+            }
+            assertEquals(0, cache.getHits());
+            assertEquals(methods.length, cache.getMisses());
+            cache.save();
+
+            // a new run finds the plans and rebuilds the same ASTs from them
+            ASTCache reloaded = new ASTCache(file, true);
+            reloaded.load();
+            assertEquals(methods.length, reloaded.size());
+            for (CompiledCodeObject cm : methods) {
+                assertEquals(render(new Decompiler(cm).getAST()), render(reloaded.getAST(cm)));
+            }
+            assertEquals(methods.length, reloaded.getHits());
+            assertEquals(0, reloaded.getMisses());
+            assertEquals(0, reloaded.getMismatches());
+
+            // a changed method is a new entry
+            reloaded.getAST(makeMethod(0x76, 0x77, 0x78));
+            assertEquals(1, reloaded.getMisses());
+            assertEquals(methods.length + 1, reloaded.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBytecodeSequence() {
+        CompiledCodeObject cm = makeMethod(0x76, 0x77, 0x78);
+        SqueakBytecodeNode one = new ConstantNode(cm, 0, 1);
+        SqueakBytecodeNode two = new ConstantNode(cm, 2, 2);
+        SqueakBytecodeNode ret = new ReturnReceiverNode(cm, 3);
+        // parameter bytes leave gaps in the sequence
+        BytecodeSequence sequence = new BytecodeSequence(Arrays.asList(one, null, two, ret));
+        assertEquals(4, sequence.size());
+        assertSame(two, sequence.get(2));
+        assertNull(sequence.get(1));
+        assertEquals(0, sequence.indexOf(one));
+        assertEquals(3, sequence.indexOf(ret));
+        assertEquals(-1, sequence.indexOf(new ConstantNode(cm, 0, 1)));
+
+        List<SqueakBytecodeNode> tail = sequence.subList(2, 4);
+        assertEquals(2, tail.size());
+        assertSame(two, tail.get(0));
+        assertEquals(1, tail.indexOf(ret));
+        assertEquals(-1, tail.indexOf(one));
+        assertFalse(tail.contains(one));
+        List<SqueakBytecodeNode> nested = tail.subList(1, 2);
+        assertSame(ret, nested.get(0));
+        assertEquals(0, nested.indexOf(ret));
+        assertEquals(-1, nested.indexOf(two));
+        assertTrue(sequence.subList(4, 4).isEmpty());
+
+        try {
+            tail.get(2);
+            fail("index past the end of a sub-sequence");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            tail.get(-1);
+            fail("negative index");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            sequence.subList(3, 5);
+            fail("sub-sequence past the end");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
 }
@@ -1,12 +1,43 @@
 package de.hpi.swa.trufflesqueak.test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
 import org.junit.Test;
 
+import de.hpi.swa.trufflesqueak.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
+import de.hpi.swa.trufflesqueak.model.BlockClosure;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledBlockObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.ContextObject;
+import de.hpi.swa.trufflesqueak.model.LargeInteger;
+import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
 import de.hpi.swa.trufflesqueak.util.Chunk;
+import de.hpi.swa.trufflesqueak.util.ChunkTable;
+import de.hpi.swa.trufflesqueak.util.DecompressingInputStream;
+import de.hpi.swa.trufflesqueak.util.ImageReader;
+import de.hpi.swa.trufflesqueak.util.ImageWriter;
+import de.hpi.swa.trufflesqueak.util.SnapshotFormat;
+import de.hpi.swa.trufflesqueak.util.SnapshotReader;
+import de.hpi.swa.trufflesqueak.util.SnapshotWriter;
 
 public class TestImageReading extends TestSqueak {
-    @Test
-    public void testFloatDecoding() {
+    private Chunk floatChunk(int low, int high) {
         Chunk chunk = new Chunk(
                         null,
                         image,
@@ -16,18 +47,439 @@ public class TestImageReading extends TestSqueak {
                         3833906, // identityHash for 1.0
                         0 // position
         );
-        chunk.data().add(0);
-        chunk.data().add(1072693248);
-        assertEquals((double) chunk.asFloatObject(), 1.0);
-
-        chunk.data().removeAllElements();
-        chunk.data().add((int) 2482401462L);
-        chunk.data().add(1065322751);
-        assertEquals((double) chunk.asFloatObject(), 0.007699011184197404);
-
-        chunk.data().removeAllElements();
-        chunk.data().add(876402988);
-        chunk.data().add(1075010976);
-        assertEquals((double) chunk.asFloatObject(), 4.841431442464721);
+        chunk.append(low);
+        chunk.append(high);
+        return chunk;
+    }
+
+    @Test
+    public void testFloatDecoding() {
+        assertEquals((double) floatChunk(0, 1072693248).asFloatObject(), 1.0);
+        assertEquals((double) floatChunk((int) 2482401462L, 1065322751).asFloatObject(), 0.007699011184197404);
+        assertEquals((double) floatChunk(876402988, 1075010976).asFloatObject(), 4.841431442464721);
+    }
+
+    @Test
+    public void testChunkRemoveLast() {
+        Chunk chunk = new Chunk(null, image, 3, 2, 0, 0, 0);
+        chunk.append((1 << 1) | 1); // SmallInteger 1
+        chunk.append((2 << 1) | 1); // SmallInteger 2
+        chunk.append((3 << 1) | 1); // SmallInteger 3
+        chunk.removeLast();
+        assertEquals(2, chunk.size());
+        assertTrue(Arrays.equals(new int[]{3, 5}, chunk.data()));
+        assertTrue(Arrays.equals(new Object[]{1, 2}, chunk.getPointers()));
+        assertEquals(8, chunk.getBytes().length);
+    }
+
+    @Test
+    public void testChunkTable() {
+        ChunkTable table = new ChunkTable();
+        Chunk[] chunks = new Chunk[5000];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = floatChunk(i, i);
+            table.put(0x10000 + i * 8, chunks[i]);
+        }
+        assertEquals(chunks.length, table.size());
+        for (int i = 0; i < chunks.length; i++) {
+            assertSame(chunks[i], table.get(0x10000 + i * 8));
+        }
+        assertNull(table.get(0x10004));
+        assertNull(table.get(0));
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        ListObject array = new ListObject(image, image.arrayClass, new Object[]{1, 2.5, 1L << 40, null, '\u20ac'});
+        LargeInteger large = new LargeInteger(image, BigInteger.ONE.shiftLeft(80).negate());
+        array.atput0(3, array); // cycles must survive
+        image.specialObjectsArray.fillinPointers(new Object[]{null, false, true, array, image.wrap("hello"), large});
+
+        File file = File.createTempFile("trufflesqueak", ".snapshot");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            new SnapshotWriter(image).write(out);
+        }
+
+        SqueakImageContext restored = new SqueakImageContext(null, null, null, null, null);
+        try (FileInputStream in = new FileInputStream(file)) {
+            assertTrue(SnapshotFormat.isSnapshot(in.getChannel()));
+            SnapshotReader.readSnapshot(restored, in.getChannel());
+        }
+        ListObject specials = restored.specialObjectsArray;
+        assertNull(specials.at0(0));
+        assertEquals(false, specials.at0(1));
+        assertEquals(true, specials.at0(2));
+        ListObject restoredArray = (ListObject) specials.at0(3);
+        assertSame(restored.arrayClass, restoredArray.getSqClass());
+        assertEquals(1, restoredArray.at0(0));
+        assertEquals(2.5, restoredArray.at0(1));
+        assertEquals(1L << 40, restoredArray.at0(2));
+        assertSame(restoredArray, restoredArray.at0(3));
+        assertEquals('\u20ac', restoredArray.at0(4));
+        assertEquals(array.squeakHash(), restoredArray.squeakHash());
+        assertEquals("hello", specials.at0(4).toString());
+        assertSame(restored.stringClass, ((BaseSqueakObject) specials.at0(4)).getSqClass());
+        LargeInteger restoredLarge = (LargeInteger) specials.at0(5);
+        assertSame(restored.largeNegativeIntegerClass, restoredLarge.getSqClass());
+        assertTrue(Arrays.equals(large.getBytes(), restoredLarge.getBytes()));
+    }
+
+    @Test
+    public void testSnapshotContextRoundTrip() throws IOException {
+        CompiledCodeObject method = makeMethod(0x70, 0x7c);
+        ContextObject context = ContextObject.createWriteableContextObject(image);
+        // sender, pc, stackp, method, closureOrNil, receiver and one temp
+        context.fillinPointers(1234, new Object[]{null, 17, 1, method, null, image.smalltalk, 'x'});
+        CompiledBlockObject block = new CompiledBlockObject(method, 1, 1);
+        block.setBytes(new byte[]{0x10, 0x7d});
+        BlockClosure closure = new BlockClosure(image);
+        closure.fillinClosure(4321, context, block, image.smalltalk, new Object[]{42});
+        image.specialObjectsArray.fillinPointers(new Object[]{null, false, true, context, closure});
+
+        File file = File.createTempFile("trufflesqueak", ".snapshot");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            new SnapshotWriter(image).write(out);
+        }
+        SqueakImageContext restored = new SqueakImageContext(null, null, null, null, null);
+        try (FileInputStream in = new FileInputStream(file)) {
+            SnapshotReader.readSnapshot(restored, in.getChannel());
+        }
+
+        ContextObject restoredContext = (ContextObject) restored.specialObjectsArray.at0(3);
+        assertEquals(1234, restoredContext.squeakHash());
+        assertEquals(context.size(), restoredContext.size());
+        assertNull(restoredContext.at0(0));
+        assertEquals(17, restoredContext.at0(1));
+        assertEquals(1, restoredContext.at0(2));
+        CompiledCodeObject restoredMethod = (CompiledCodeObject) restoredContext.at0(3);
+        assertTrue(Arrays.equals(method.getBytes(), restoredMethod.getBytes()));
+        assertSame(restored.smalltalk, restoredContext.at0(5));
+        assertEquals('x', restoredContext.at0(6));
+
+        BlockClosure restoredClosure = (BlockClosure) restored.specialObjectsArray.at0(4);
+        assertEquals(4321, restoredClosure.squeakHash());
+        assertSame(restoredContext, restoredClosure.at0(0));
+        assertSame(restoredMethod, restoredClosure.getCompiledBlock().getMethod());
+        assertEquals(1, restoredClosure.getCompiledBlock().getNumArgs());
+        assertTrue(Arrays.equals(block.getBytes(), restoredClosure.getCompiledBlock().getBytes()));
+        assertSame(restored.smalltalk, restoredClosure.getReceiver());
+        assertEquals(42, restoredClosure.at0(4));
+    }
+
+    @Test
+    public void testMemoryMappedImageReading() throws IOException {
+        File file = writeImage(image.wrap(1, 2.5, image.wrap("hello"), 1L << 40));
+        for (boolean memoryMapped : new boolean[]{true, false}) {
+            SqueakImageContext restored = readImage(file, memoryMapped);
+            ListObject payload = (ListObject) restored.specialObjectsArray.at0(4);
+            assertSame(restored.arrayClass, payload.getSqClass());
+            assertEquals(1, payload.at0(0));
+            assertEquals(2.5, payload.at0(1));
+            assertEquals("hello", payload.at0(2).toString());
+            assertSame(restored.stringClass, ((BaseSqueakObject) payload.at0(2)).getSqClass());
+            assertEquals(BigInteger.ONE.shiftLeft(40), ((LargeInteger) payload.at0(3)).getValue());
+            assertEquals("Array", restored.arrayClass.getName().toString());
+        }
+    }
+
+    @Test
+    public void testImageRoundTrip() throws IOException {
+        // pushReceiver, returnTop with two literals
+        CompiledMethodObject method = new CompiledMethodObject(image, new byte[]{0x70, 0x7c}, new Object[]{2, image.wrap("literal"), 7});
+        BigInteger large = BigInteger.ONE.shiftLeft(80).negate();
+        // contexts are no SqueakObjects, they must keep their hash all the same
+        ContextObject context = ContextObject.createWriteableContextObject(image);
+        context.fillinPointers(1234, new Object[]{null, 17, 1, method, null, image.smalltalk});
+        SqueakImageContext restored = readImage(writeImage(image.wrap('a', 2.5, -0.0, image.wrap(large), 1L << 40, method, context)), true);
+        ListObject payload = (ListObject) restored.specialObjectsArray.at0(4);
+        // the reader answers immediate characters as their code point
+        assertEquals((int) 'a', payload.at0(0));
+        assertEquals(2.5, payload.at0(1));
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits((double) payload.at0(2)));
+        LargeInteger restoredLarge = (LargeInteger) payload.at0(3);
+        assertSame(restored.largeNegativeIntegerClass, restoredLarge.getSqClass());
+        assertEquals(large, restoredLarge.getValue());
+        assertSame(restored.largePositiveIntegerClass, ((LargeInteger) payload.at0(4)).getSqClass());
+        assertEquals(BigInteger.ONE.shiftLeft(40), ((LargeInteger) payload.at0(4)).getValue());
+
+        CompiledMethodObject restoredMethod = (CompiledMethodObject) payload.at0(5);
+        assertSame(restored.compiledMethodClass, restoredMethod.getSqClass());
+        assertTrue(Arrays.equals(method.getBytes(), restoredMethod.getBytes()));
+        assertEquals(3, restoredMethod.getLiterals().length);
+        assertEquals("literal", restoredMethod.getLiteral(0).toString());
+        assertEquals(7, restoredMethod.getLiteral(1));
+        assertSame(restored.smalltalk, runMethod(restoredMethod, (Object) restored.smalltalk));
+
+        ContextObject restoredContext = (ContextObject) payload.at0(6);
+        assertEquals(1234, restoredContext.squeakHash());
+        assertSame(restoredMethod, restoredContext.at0(3));
+    }
+
+    @Test
+    public void testGzipDecompression() throws IOException {
+        byte[] data = randomBytes(300000);
+        File file = gzipFile(data, data.length);
+        try (FileInputStream in = new FileInputStream(file)) {
+            DecompressingInputStream decompressor = DecompressingInputStream.forCompressed(in);
+            assertNotNull(decompressor);
+            byte[] result = new byte[data.length];
+            int read = 0;
+            while (read < result.length) {
+                int count = decompressor.read(result, read, result.length - read);
+                assertTrue(count > 0);
+                read += count;
+            }
+            assertEquals(-1, decompressor.read());
+            assertTrue(Arrays.equals(data, result));
+            assertEquals(data.length, decompressor.getBytesDecompressed());
+            decompressor.close();
+        }
+        File uncompressed = File.createTempFile("trufflesqueak", ".image");
+        uncompressed.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(uncompressed)) {
+            out.write(data);
+        }
+        try (FileInputStream in = new FileInputStream(uncompressed)) {
+            assertNull(DecompressingInputStream.forCompressed(in));
+        }
+    }
+
+    @Test
+    public void testGzipFailureMidStream() throws IOException {
+        byte[] data = randomBytes(1 << 20);
+        File file = gzipFile(data, (1 << 20) / 2); // truncated
+        try (FileInputStream in = new FileInputStream(file)) {
+            DecompressingInputStream decompressor = DecompressingInputStream.forCompressed(in);
+            byte[] buffer = new byte[4096];
+            int read = 0;
+            try {
+                while (decompressor.read(buffer, 0, buffer.length) >= 0) {
+                    read += buffer.length;
+                }
+                fail("a truncated image must not read like a complete one");
+            } catch (IOException e) {
+                // the chunks before the failure are still handed over
+                assertTrue(read > 0);
+            } finally {
+                decompressor.close();
+            }
+        }
+    }
+
+    @Test
+    public void testGzipCloseBeforeEnd() throws IOException, InterruptedException {
+        // exactly fills the chunk queue, so the decompressor blocks handing over the end marker
+        byte[] data = randomBytes(64 << 16);
+        File file = gzipFile(data, data.length);
+        try (FileInputStream in = new FileInputStream(file)) {
+            DecompressingInputStream decompressor = DecompressingInputStream.forCompressed(in);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (decompressor.getBytesDecompressed() < data.length && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(data.length, decompressor.getBytesDecompressed());
+            decompressor.close();
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals("TruffleSqueak image decompressor")) {
+                    thread.join(10000);
+                    assertFalse(thread.isAlive());
+                }
+            }
+            try {
+                decompressor.read();
+                fail("reading a closed stream must not block");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        // random bytes do not compress, so truncating the file truncates the data as well
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the data gzipped, cut off after the given number of compressed bytes.
+     */
+    private static File gzipFile(byte[] data, int compressedLength) throws IOException {
+        File file = File.createTempFile("trufflesqueak", ".image.gz");
+        file.deleteOnExit();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(data);
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(compressed.toByteArray(), 0, Math.min(compressedLength, compressed.size()));
+        }
+        return file;
+    }
+
+    @Test
+    public void testParallelImageReading() throws IOException {
+        // enough objects to split the load into several fork/join tasks
+        Object[] elements = new Object[12000];
+        for (int i = 0; i < elements.length; i++) {
+            switch (i % 4) {
+                case 0:
+                    elements[i] = image.wrap("element" + i);
+                    break;
+                case 1:
+                    elements[i] = image.wrap(i, elements[i - 1], i * 0.5);
+                    break;
+                case 2:
+                    elements[i] = new LargeInteger(image, BigInteger.ONE.shiftLeft(40 + i % 50).negate());
+                    break;
+                default:
+                    elements[i] = image.wrap(elements[i - 2], elements[i / 2], null);
+                    break;
+            }
+        }
+        File file = writeImage(image.wrap(elements));
+        SqueakImageContext sequential = readImage(file, false, false);
+        SqueakImageContext parallel = readImage(file, false, true);
+        assertSameGraph(sequential.specialObjectsArray, parallel.specialObjectsArray, new IdentityHashMap<>());
+    }
+
+    /**
+     * Walks both object graphs in lockstep and checks that they have the same shape, i.e. the same
+     * classes, formats, hashes and pointer targets.
+     */
+    private static void assertSameGraph(Object expected, Object actual, Map<Object, Object> visited) {
+        if (!(expected instanceof BaseSqueakObject)) {
+            assertEquals(expected, actual);
+            return;
+        }
+        Object seen = visited.get(expected);
+        if (seen != null) {
+            assertSame(seen, actual);
+            return;
+        }
+        visited.put(expected, actual);
+        BaseSqueakObject expectedObject = (BaseSqueakObject) expected;
+        BaseSqueakObject actualObject = (BaseSqueakObject) actual;
+        assertSame(expectedObject.getClass(), actualObject.getClass());
+        assertEquals(expectedObject.squeakHash(), actualObject.squeakHash());
+        assertSameGraph(expectedObject.getSqClass(), actualObject.getSqClass(), visited);
+        if (expectedObject instanceof ClassObject) {
+            assertEquals(((ClassObject) expectedObject).getInstSpec(), ((ClassObject) actualObject).getInstSpec());
+            assertEquals(((ClassObject) expectedObject).getBasicInstanceSize(), ((ClassObject) actualObject).getBasicInstanceSize());
+        }
+        if (expectedObject instanceof CompiledCodeObject) {
+            assertTrue(Arrays.equals(((CompiledCodeObject) expectedObject).getBytes(), ((CompiledCodeObject) actualObject).getBytes()));
+            Object[] expectedLiterals = ((CompiledCodeObject) expectedObject).getLiterals();
+            Object[] actualLiterals = ((CompiledCodeObject) actualObject).getLiterals();
+            assertEquals(expectedLiterals.length, actualLiterals.length);
+            for (int i = 0; i < expectedLiterals.length; i++) {
+                assertSameGraph(expectedLiterals[i], actualLiterals[i], visited);
+            }
+            return;
+        }
+        assertEquals(expectedObject.size(), actualObject.size());
+        for (int i = 0; i < expectedObject.size(); i++) {
+            assertSameGraph(expectedObject.at0(i), actualObject.at0(i), visited);
+        }
+    }
+
+    /**
+     * Writes an image with the payload at index 4 of the special objects array. The classes get the
+     * metaclasses, formats and names the image reader expects, and the special objects it resolves
+     * get classes.
+     */
+    private File writeImage(Object payload) throws IOException {
+        defineClass(image.metaclass, "Metaclass", 1, 6);
+        defineClass(image.nilClass, "UndefinedObject", 0, 0);
+        defineClass(image.trueClass, "True", 0, 0);
+        defineClass(image.falseClass, "False", 0, 0);
+        defineClass(image.smallIntegerClass, "SmallInteger", 7, 0);
+        defineClass(image.characterClass, "Character", 7, 0);
+        defineClass(image.arrayClass, "Array", 2, 0);
+        defineClass(image.stringClass, "ByteString", 16, 0);
+        defineClass(image.floatClass, "BoxedFloat64", 10, 0);
+        defineClass(image.largePositiveIntegerClass, "LargePositiveInteger", 16, 0);
+        defineClass(image.largeNegativeIntegerClass, "LargeNegativeInteger", 16, 0);
+        defineClass(image.compiledMethodClass, "CompiledMethod", 24, 0);
+        defineClass(image.methodContextClass, "MethodContext", 3, 6);
+        defineClass(image.blockClosureClass, "BlockClosure", 3, 3);
+        ClassObject associationClass = defineClass(new ClassObject(image), "Association", 1, 2);
+        image.schedulerAssociation.setSqClass(associationClass);
+        image.schedulerAssociation.fillinPointers(new Object[2]);
+        image.smalltalk.setSqClass(associationClass);
+        image.smalltalk.fillinPointers(new Object[2]);
+
+        NativeObject[] selectors = new NativeObject[]{
+                        image.plus, image.minus, image.lt, image.gt, image.le, image.ge,
+                        image.eq, image.ne, image.times, image.div, image.modulo, image.pointAt,
+                        image.bitShift, image.divide, image.bitAnd, image.bitOr, image.at,
+                        image.atput, image.size_, image.next, image.nextPut, image.atEnd,
+                        image.equivalent, image.klass, image.blockCopy, image.value,
+                        image.valueWithArg, image.do_, image.new_, image.newWithArg,
+                        image.x, image.y, image.doesNotUnderstand, image.mustBeBoolean
+        };
+        for (NativeObject selector : selectors) {
+            selector.setSqClass(image.stringClass);
+            selector.setBytes("selector".getBytes());
+        }
+        Object[] specialSelectors = new Object[64];
+        for (int i = 0; i < specialSelectors.length; i += 2) {
+            specialSelectors[i] = selectors[i / 2];
+            specialSelectors[i + 1] = 1;
+        }
+        image.specialSelectors.setSqClass(image.arrayClass);
+        image.specialSelectors.fillinPointers(specialSelectors);
+
+        Object[] specialObjects = new Object[43];
+        specialObjects[1] = false;
+        specialObjects[2] = true;
+        specialObjects[3] = image.schedulerAssociation;
+        specialObjects[4] = payload;
+        specialObjects[5] = image.smallIntegerClass;
+        specialObjects[6] = image.stringClass;
+        specialObjects[7] = image.arrayClass;
+        specialObjects[8] = image.smalltalk;
+        specialObjects[9] = image.floatClass;
+        specialObjects[10] = image.methodContextClass;
+        specialObjects[13] = image.largePositiveIntegerClass;
+        specialObjects[16] = image.compiledMethodClass;
+        specialObjects[19] = image.characterClass;
+        specialObjects[20] = image.doesNotUnderstand;
+        specialObjects[23] = image.specialSelectors;
+        specialObjects[25] = image.mustBeBoolean;
+        specialObjects[36] = image.blockClosureClass;
+        specialObjects[42] = image.largeNegativeIntegerClass;
+        image.specialObjectsArray.setSqClass(image.arrayClass);
+        image.specialObjectsArray.fillinPointers(specialObjects);
+
+        File file = File.createTempFile("trufflesqueak", ".image");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            ImageWriter.writeImage(image, out.getChannel());
+        }
+        return file;
+    }
+
+    private ClassObject defineClass(ClassObject sqClass, String name, int instSpec, int instSize) {
+        // metaclasses have six fields, the last one is their sole instance
+        ClassObject metaclass = new ClassObject(image, image.metaclass, 6);
+        metaclass.fillinPointers(new Object[]{null, null, (1 << 16) | 7, null, null, sqClass});
+        sqClass.setSqClass(metaclass);
+        sqClass.fillinPointers(new Object[]{null, null, (instSpec << 16) | instSize, null, null, null, image.wrap(name)});
+        return sqClass;
+    }
+
+    private static SqueakImageContext readImage(File file, boolean memoryMapped) throws IOException {
+        return readImage(file, memoryMapped, false);
+    }
+
+    private static SqueakImageContext readImage(File file, boolean memoryMapped, boolean parallelLoad) throws IOException {
+        SqueakImageContext restored = new SqueakImageContext(null, null, null, null, null);
+        try (FileInputStream in = new FileInputStream(file)) {
+            new ImageReader(in, new PrintWriter(new StringWriter()), memoryMapped).readImage(restored, parallelLoad);
+        }
+        return restored;
     }
 }
@@ -0,0 +1,173 @@
+package de.hpi.swa.trufflesqueak.test;
+
+import org.junit.Test;
+
+import com.oracle.truffle.api.Assumption;
+
+import de.hpi.swa.trufflesqueak.instrumentation.SendStatistics;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.model.MethodCache;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.model.PointersObject;
+
+public class TestLookup extends TestSqueak {
+    private static final int METHODDICT_INDEX = 1;
+
+    private ClassObject makeClass(Object superclass, Object... selectorsAndMethods) {
+        int count = selectorsAndMethods.length / 2;
+        // leave one free slot so selectors can be added in place
+        Object[] values = new Object[count + 1];
+        Object[] dict = new Object[count + 3];
+        dict[0] = count;
+        dict[1] = new ListObject(image, image.arrayClass, values);
+        for (int i = 0; i < count; i++) {
+            dict[i + 2] = selectorsAndMethods[i * 2];
+            values[i] = selectorsAndMethods[i * 2 + 1];
+        }
+        return new ClassObject(image, image.metaclass, new Object[]{superclass, new ListObject(image, null, dict), 0});
+    }
+
+    @Test
+    public void testLookupThroughSuperclasses() {
+        NativeObject foo = image.wrap("foo");
+        NativeObject bar = image.wrap("bar");
+        CompiledCodeObject dnu = makeMethod(120);
+        CompiledCodeObject fooMethod = makeMethod(120);
+        CompiledCodeObject barMethod = makeMethod(120);
+        ClassObject root = makeClass(null, image.doesNotUnderstand, dnu, foo, fooMethod);
+        ClassObject leaf = makeClass(root, bar, barMethod);
+        assertSame(barMethod, leaf.lookup(bar));
+        assertSame(fooMethod, leaf.lookup(foo));
+        assertSame(dnu, leaf.lookup(image.wrap("baz")));
+        assertSame(dnu, root.lookup(bar));
+    }
+
+    @Test
+    public void testLookupSeesMethodDictChanges() {
+        NativeObject foo = image.wrap("foo");
+        NativeObject bar = image.wrap("bar");
+        CompiledCodeObject dnu = makeMethod(120);
+        CompiledCodeObject fooMethod = makeMethod(120);
+        ClassObject root = makeClass(null, image.doesNotUnderstand, dnu, foo, fooMethod);
+        assertSame(dnu, root.lookup(bar));
+
+        ListObject dict = (ListObject) root.at0(METHODDICT_INDEX);
+        ListObject values = (ListObject) dict.at0(1);
+        CompiledCodeObject newFooMethod = makeMethod(120);
+        values.atput0(1, newFooMethod);
+        assertSame(newFooMethod, root.lookup(foo));
+
+        CompiledCodeObject barMethod = makeMethod(120);
+        dict.atput0(4, bar);
+        values.atput0(2, barMethod);
+        dict.atput0(0, 3);
+        assertSame(barMethod, root.lookup(bar));
+    }
+
+    @Test
+    public void testMethodCacheHitsAndFlushes() {
+        NativeObject foo = image.wrap("foo");
+        CompiledCodeObject dnu = makeMethod(120);
+        CompiledCodeObject fooMethod = makeMethod(120);
+        ClassObject root = makeClass(null, image.doesNotUnderstand, dnu, foo, fooMethod);
+        ClassObject leaf = makeClass(null);
+        leaf.setSuperclass(root);
+        MethodCache cache = image.methodCache;
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+        assertSame(fooMethod, cache.lookup(leaf, foo));
+        assertSame(fooMethod, cache.lookup(leaf, foo));
+        assertEquals(misses + 1, cache.getMisses());
+        assertEquals(hits + 1, cache.getHits());
+
+        long flushes = cache.getFlushes();
+        root.setSuperclass(null); // invalidates the lookups of leaf
+        assertTrue(cache.getFlushes() > flushes);
+        assertSame(fooMethod, cache.lookup(leaf, foo));
+        assertEquals(misses + 2, cache.getMisses());
+    }
+
+    @Test
+    public void testMethodDictChangeInvalidatesOnlyItsSelector() {
+        NativeObject foo = image.wrap("foo");
+        NativeObject bar = image.wrap("bar");
+        CompiledCodeObject dnu = makeMethod(120);
+        CompiledCodeObject fooMethod = makeMethod(120);
+        CompiledCodeObject barMethod = makeMethod(120);
+        ClassObject root = makeClass(null, image.doesNotUnderstand, dnu, foo, fooMethod, bar, barMethod);
+        ClassObject middle = makeClass(null);
+        ClassObject leaf = makeClass(null);
+        middle.setSuperclass(root);
+        leaf.setSuperclass(middle);
+        assertSame(fooMethod, leaf.lookup(foo));
+        assertSame(barMethod, leaf.lookup(bar));
+        Assumption classStable = leaf.getMethodLookupStable();
+        Assumption fooStable = leaf.getMethodLookupStable(foo);
+        Assumption barStable = leaf.getMethodLookupStable(bar);
+
+        ListObject values = (ListObject) ((ListObject) root.at0(METHODDICT_INDEX)).at0(1);
+        CompiledCodeObject newFooMethod = makeMethod(120);
+        values.atput0(1, newFooMethod);
+        assertFalse(fooStable.isValid());
+        assertTrue(barStable.isValid());
+        assertTrue(classStable.isValid());
+        assertSame(newFooMethod, leaf.lookup(foo));
+
+        middle.setSuperclass(root);
+        assertFalse(classStable.isValid());
+    }
+
+    private CompiledCodeObject makeSuperSend(NativeObject selector, ClassObject compiledInClass) {
+        // push self, super send literal 0 without arguments, return top
+        CompiledCodeObject cm = makeMethod(112, 133, 0, 124);
+        cm.setLiteral(1, selector);
+        cm.setLiteral(2, compiledInClass);
+        return cm;
+    }
+
+    @Test
+    public void testSuperSend() {
+        NativeObject foo = image.wrap("foo");
+        CompiledCodeObject dnu = makeMethod(117, 124);
+        CompiledCodeObject fooMethod = makeMethod(118, 124);
+        ClassObject root = makeClass(null, image.doesNotUnderstand, dnu, foo, fooMethod);
+        ClassObject leaf = makeClass(root, foo, makeMethod(119, 124));
+        PointersObject receiver = new PointersObject(image, leaf, new Object[0]);
+        CompiledCodeObject sender = makeSuperSend(foo, leaf);
+        assertEquals(1, runMethod(sender, receiver));
+        assertEquals(1, runMethod(sender, receiver));
+
+        // replacing the superclass method drops the cached one
+        ListObject values = (ListObject) ((ListObject) root.at0(METHODDICT_INDEX)).at0(1);
+        values.atput0(1, makeMethod(119, 124));
+        assertEquals(2, runMethod(sender, receiver));
+        values.atput0(1, null);
+        assertEquals(0, runMethod(sender, receiver));
+    }
+
+    @Test
+    public void testSuperSendWithoutSuperclass() {
+        NativeObject foo = image.wrap("foo");
+        ClassObject root = makeClass(null, image.doesNotUnderstand, makeMethod(117, 124), foo, makeMethod(118, 124));
+        PointersObject receiver = new PointersObject(image, root, new Object[0]);
+        CompiledCodeObject sender = makeSuperSend(foo, root);
+        assertEquals(0, runMethod(sender, receiver));
+
+        ClassObject superclass = makeClass(null, foo, makeMethod(119, 124));
+        root.setSuperclass(superclass);
+        assertEquals(2, runMethod(sender, receiver));
+    }
+
+    @Test
+    public void testSendStatisticsSitesAreKeyedByBytecode() {
+        SendStatistics statistics = new SendStatistics(2);
+        NativeObject foo = image.wrap("foo");
+        CompiledCodeObject method = makeMethod(112, 208, 124);
+        SendStatistics.Site site = statistics.register(foo, method, 1);
+        assertSame(site, statistics.register(foo, method, 1));
+        assertNotSame(site, statistics.register(foo, method, 2));
+        assertNotSame(site, statistics.register(foo, makeMethod(112, 208, 124), 1));
+    }
+}
@@ -1,11 +1,18 @@
 package de.hpi.swa.trufflesqueak.test;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 
 import org.junit.Test;
 
 import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.LargeInteger;
 import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.nodes.primitives.QuickReturn;
 
 public class TestPrimitives extends TestSqueak {
     @Test
@@ -44,6 +51,171 @@ public class TestPrimitives extends TestSqueak {
         }
     }
 
+    @Test
+    public void testPrimitiveFailureRunsBytecodes() {
+        // primitive 10 fails when the division is not exact, then the method answers 1
+        CompiledCodeObject cm = makeMethod(new int[]{139, 10, 0, 118, 124});
+        cm.setLiteral(0, 0x10000);
+        assertEquals(2, runMethod(cm, (Object) 6, 3));
+        assertEquals(1, runMethod(cm, (Object) 7, 2));
+        assertEquals(1, runMethod(cm, (Object) 7, 0));
+    }
+
+    @Test
+    public void testPrimitiveFailureOnBadOperands() {
+        // primitive 60 (at:) fails on a bad index or receiver, then the method answers 1
+        CompiledCodeObject cm = makeMethod(new int[]{139, 60, 0, 118, 124});
+        cm.setLiteral(0, 0x10000);
+        NativeObject words = new NativeObject(image, null, 2, 4);
+        words.setNativeAt0(1, 7);
+        LargeInteger large = new LargeInteger(image, BigInteger.valueOf(0x0102030405L));
+        assertEquals(7, runMethod(cm, words, 2));
+        assertEquals(1, runMethod(cm, words, 0));
+        assertEquals(1, runMethod(cm, words, 3));
+        assertEquals(1, runMethod(cm, large, 6));
+        assertEquals(1, runMethod(cm, large, image.nil));
+        assertEquals(1, runMethod(cm, image.sqTrue, 1));
+    }
+
+    @Test
+    public void testListStorageStrategies() {
+        ListObject list = new ListObject(image, image.arrayClass, 4);
+        assertSame(ListObject.StorageType.NIL, list.getStorageType());
+        list.atput0(1, 42);
+        assertSame(ListObject.StorageType.INT, list.getStorageType());
+        assertNull(list.at0(0));
+        assertEquals(42, list.at0(1));
+        list.atput0(2, Long.MAX_VALUE);
+        assertSame(ListObject.StorageType.LONG, list.getStorageType());
+        assertEquals(42, list.at0(1));
+        assertEquals(Long.MAX_VALUE, list.at0(2));
+        list.atput0(3, image.smalltalk);
+        assertSame(ListObject.StorageType.OBJECT, list.getStorageType());
+        assertEquals(42, list.at0(1));
+        assertSame(image.smalltalk, list.at0(3));
+
+        ListObject doubles = new ListObject(image, image.arrayClass, 3);
+        doubles.fillinPointers(new Object[]{1.5, null, 2.5});
+        assertSame(ListObject.StorageType.DOUBLE, doubles.getStorageType());
+        assertNull(doubles.at0(1));
+        assertEquals(3, doubles.size());
+        ListObject copy = (ListObject) doubles.shallowCopy();
+        copy.atput0(1, 'a');
+        assertSame(ListObject.StorageType.OBJECT, copy.getStorageType());
+        assertSame(ListObject.StorageType.DOUBLE, doubles.getStorageType());
+        assertNull(doubles.at0(1));
+
+        ListObject ints = new ListObject(image, image.arrayClass, 3);
+        ints.fillinPointers(new Object[]{1, 2, 3});
+        assertSame(ListObject.StorageType.INT, ints.getStorageType());
+        ListObject target = new ListObject(image, image.arrayClass, 3);
+        target.atput0(0, 0);
+        runPrim(105, target, 2, 3, ints, 1);
+        assertSame(ListObject.StorageType.INT, target.getStorageType());
+        assertEquals(0, target.at0(0));
+        assertEquals(1, target.at0(1));
+        assertEquals(2, target.at0(2));
+    }
+
+    @Test
+    public void testNativeObjectWords() {
+        NativeObject words = new NativeObject(image, null, 2, 4);
+        words.setNativeAt0(0, 0xFFFFFFFFL);
+        words.setNativeAt0(1, 0x01020304);
+        assertEquals(0xFFFFFFFFL, runPrim(60, words, 1));
+        assertEquals(0x01020304, runPrim(60, words, 2));
+
+        NativeObject copy = new NativeObject(image, (byte) 4);
+        copy.fillinBytes(words.getBytes(), (byte) 4);
+        assertEquals(2, copy.size());
+        assertEquals(0x01020304L, copy.getNativeAt0(1));
+
+        runPrim(105, copy, 1, 1, words, 2);
+        assertEquals(0x01020304L, copy.getNativeAt0(0));
+    }
+
+    @Test
+    public void testLargeIntegerDigits() {
+        LargeInteger large = new LargeInteger(image, BigInteger.valueOf(0x0102030405L));
+        assertEquals(5, large.size());
+        assertEquals(5L, runPrim(60, large, 1));
+        assertEquals(1L, runPrim(60, large, 5));
+
+        runPrim(61, large, 5, 0xFF);
+        assertEquals(BigInteger.valueOf(0xFF02030405L), large.getValue());
+
+        LargeInteger copy = new LargeInteger(image, null, 5);
+        runPrim(105, copy, 1, 5, large, 1);
+        assertEquals(large.getValue(), copy.getValue());
+    }
+
+    @Test
+    public void testDigitsOfBigInteger() {
+        assertEquals(0, LargeInteger.digitsOf(BigInteger.ZERO).length);
+        assertTrue(Arrays.equals(new int[]{0x80000000}, LargeInteger.digitsOf(BigInteger.ONE.shiftLeft(31))));
+        assertTrue(Arrays.equals(new int[]{-1}, LargeInteger.digitsOf(BigInteger.ONE.shiftLeft(32).subtract(BigInteger.ONE))));
+        assertTrue(Arrays.equals(new int[]{0x05, 0x01020304}, LargeInteger.digitsOf(BigInteger.valueOf(-0x0102030400000005L))));
+        BigInteger big = BigInteger.ONE.shiftLeft(200).add(BigInteger.valueOf(12345));
+        int[] digits = LargeInteger.digitsOf(big);
+        assertEquals(7, digits.length);
+        assertEquals(big, LargeInteger.toBigInteger(digits, false));
+        assertEquals(big.negate(), LargeInteger.toBigInteger(LargeInteger.digitsOf(big.negate()), true));
+    }
+
+    @Test
+    public void testLargeIntegersPlugin() {
+        BigInteger big = BigInteger.ONE.shiftLeft(100).add(BigInteger.valueOf(12345));
+        LargeInteger large = new LargeInteger(image, big);
+        LargeInteger negative = new LargeInteger(image, big.negate());
+        assertEquals(big.add(big), ((LargeInteger) runLargeIntegersPrim("primDigitAdd", large, large)).getValue());
+        // the digit operations take the sign of the receiver
+        assertEquals(big.add(big).negate(), ((LargeInteger) runLargeIntegersPrim("primDigitAdd", negative, large)).getValue());
+        assertEquals(0, runLargeIntegersPrim("primDigitSubtract", large, negative));
+        assertEquals(-1, runLargeIntegersPrim("primDigitCompare", 7, negative));
+        assertEquals(big.multiply(big).negate(), ((LargeInteger) runLargeIntegersPrim("primDigitMultiplyNegative", large, large, true)).getValue());
+
+        ListObject divRem = (ListObject) runLargeIntegersPrim("primDigitDivNegative", negative, 1 << 20, false);
+        assertEquals(big.shiftRight(20), ((LargeInteger) divRem.at0(0)).getValue());
+        assertEquals(-12345, divRem.at0(1));
+
+        // the first estimate of a quotient digit is one too large here, so the divisor is added back
+        BigInteger[][] addBackCases = new BigInteger[][]{
+                        {new BigInteger("7fffffff800000000000000000000000", 16), new BigInteger("800000000000000000000001", 16)},
+                        {new BigInteger("800000000000000000000003", 16), new BigInteger("200000000000000000000001", 16)},
+                        {new BigInteger("7fff000080000000000000000000", 16), new BigInteger("80000000000000000001", 16)}};
+        for (BigInteger[] operands : addBackCases) {
+            BigInteger[] expectedDivRem = operands[0].divideAndRemainder(operands[1]);
+            divRem = (ListObject) runLargeIntegersPrim("primDigitDivNegative", new LargeInteger(image, operands[0]), new LargeInteger(image, operands[1]), false);
+            assertEquals(expectedDivRem[0], toBigInteger(divRem.at0(0)));
+            assertEquals(expectedDivRem[1], toBigInteger(divRem.at0(1)));
+            divRem = (ListObject) runLargeIntegersPrim("primDigitDivNegative", new LargeInteger(image, operands[0].negate()), new LargeInteger(image, operands[1]), true);
+            assertEquals(expectedDivRem[0].negate(), toBigInteger(divRem.at0(0)));
+            assertEquals(expectedDivRem[1].negate(), toBigInteger(divRem.at0(1)));
+        }
+
+        assertEquals(12345, runLargeIntegersPrim("primDigitBitAnd", large, 0xFFFF));
+        assertEquals(1, runLargeIntegersPrim("primDigitBitShiftMagnitude", large, -100));
+
+        BigInteger modulo = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.valueOf(59));
+        BigInteger base = BigInteger.ONE.shiftLeft(32);
+        long mInv = modulo.modInverse(base).negate().mod(base).longValue();
+        BigInteger a = BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(3)).mod(modulo);
+        Object product = runLargeIntegersPrim("primMontgomeryTimesModulo", new LargeInteger(image, a), 5, new LargeInteger(image, modulo), mInv);
+        BigInteger expected = a.multiply(BigInteger.valueOf(5)).multiply(BigInteger.ONE.shiftLeft(64).modInverse(modulo)).mod(modulo);
+        assertEquals(expected, toBigInteger(product));
+    }
+
+    private static BigInteger toBigInteger(Object integer) {
+        return integer instanceof LargeInteger ? ((LargeInteger) integer).getValue() : BigInteger.valueOf(((Number) integer).longValue());
+    }
+
+    private Object runLargeIntegersPrim(String functionName, Object rcvr, Object... arguments) {
+        CompiledCodeObject cm = makeMethod(new int[]{139, 117, 0});
+        cm.setLiteral(0, 0x10000);
+        cm.setLiteral(1, image.wrap(image.wrap("LargeIntegers"), image.wrap(functionName)));
+        return runMethod(cm, rcvr, arguments);
+    }
+
     @Test
     public void testAdd() {
         Object[] calcs = new Object[]{
@@ -71,4 +243,81 @@ public class TestPrimitives extends TestSqueak {
             assertEquals(runPrim(2, calcs[i], calcs[i + 1]), calcs[i + 2]);
         }
     }
+
+    private QuickReturn quickReturn(int primCode) {
+        CompiledCodeObject cm = makeMethod(new int[]{139, primCode & 0xFF, (primCode & 0xFF00) >> 8});
+        cm.setLiteral(0, 0x10000);
+        return QuickReturn.forMethod(cm);
+    }
+
+    @Test
+    public void testQuickReturn() {
+        BaseSqueakObject rcvr = new ListObject(image, image.arrayClass, new Object[]{image.nil, image.smalltalk});
+        assertSame(rcvr, quickReturn(256).returnValue(rcvr));
+        assertTrue((boolean) quickReturn(257).returnValue(rcvr));
+        assertEquals(-1, quickReturn(260).returnValue(rcvr));
+        assertSame(image.smalltalk, quickReturn(265).returnValue(rcvr));
+        assertNull(quickReturn(110));
+    }
+
+    @Test
+    public void testPerform() {
+        NativeObject foo = image.wrap("foo:");
+        // pushTemp: 0, returnTop
+        ClassObject rcvrClass = makeClass(null, foo, makeMethodWithArgs(1, 16, 124));
+        NativeObject rcvr = new NativeObject(image, rcvrClass, new byte[0]);
+        assertEquals(42, runMethod(performMethod(83, 2), (Object) rcvr, foo, 42));
+        assertEquals(42, runMethod(performMethod(84, 2), (Object) rcvr, foo, image.wrap(new Object[]{42})));
+    }
+
+    @Test
+    public void testPerformWithWrongArity() {
+        NativeObject foo = image.wrap("foo:");
+        ClassObject rcvrClass = makeClass(null, foo, makeMethodWithArgs(1, 16, 124));
+        NativeObject rcvr = new NativeObject(image, rcvrClass, new byte[0]);
+        assertEquals(false, runMethod(performMethod(83, 1), (Object) rcvr, foo));
+        assertEquals(false, runMethod(performMethod(84, 2), (Object) rcvr, foo, image.wrap(new Object[0])));
+        assertEquals(false, runMethod(performMethod(84, 2), (Object) rcvr, foo, image.wrap(new Object[]{1, 2})));
+        assertEquals(false, runMethod(performMethod(84, 2), (Object) rcvr, 42, image.wrap(new Object[]{1})));
+    }
+
+    @Test
+    public void testPerformInSuperclass() {
+        NativeObject foo = image.wrap("foo:");
+        // returnReceiver
+        ClassObject superclass = makeClass(null, foo, makeMethodWithArgs(1, 120));
+        // pushTemp: 0, returnTop
+        ClassObject subclass = makeClass(superclass, foo, makeMethodWithArgs(1, 16, 124));
+        ClassObject otherClass = makeClass(null, foo, makeMethodWithArgs(1, 120));
+        NativeObject rcvr = new NativeObject(image, subclass, new byte[0]);
+        CompiledMethodObject perform = performMethod(100, 3);
+        assertSame(rcvr, runMethod(perform, (Object) rcvr, foo, image.wrap(new Object[]{42}), superclass));
+        assertEquals(42, runMethod(perform, (Object) rcvr, foo, image.wrap(new Object[]{42}), subclass));
+        assertEquals(false, runMethod(perform, (Object) rcvr, foo, image.wrap(new Object[]{42}), otherClass));
+        assertEquals(false, runMethod(perform, (Object) rcvr, foo, image.wrap(new Object[0]), superclass));
+        assertEquals(false, runMethod(perform, (Object) rcvr, 42, image.wrap(new Object[]{42}), superclass));
+    }
+
+    private CompiledMethodObject makeMethodWithArgs(int numArgs, int... bytes) {
+        byte[] code = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            code[i] = (byte) bytes[i];
+        }
+        CompiledMethodObject cm = new CompiledMethodObject(image);
+        cm.fillinLiteralsAndBytes(new Object[]{(numArgs << 24) | (numArgs << 18) | (bytes[0] == 139 ? 1 << 16 : 0)}, code);
+        return cm;
+    }
+
+    /**
+     * Answers false when the primitive fails.
+     */
+    private CompiledMethodObject performMethod(int primCode, int numArgs) {
+        // callPrimitive: primCode, returnFalse
+        return makeMethodWithArgs(numArgs, 139, primCode, 0, 122);
+    }
+
+    private ClassObject makeClass(Object superclass, Object selector, Object method) {
+        Object[] dict = new Object[]{1, image.wrap(new Object[]{method, null}), selector, null};
+        return new ClassObject(image, image.metaclass, new Object[]{superclass, new ListObject(image, null, dict), 0});
+    }
 }
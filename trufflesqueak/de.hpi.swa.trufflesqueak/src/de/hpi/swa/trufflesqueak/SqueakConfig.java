@@ -5,6 +5,13 @@ import java.util.Arrays;
 public class SqueakConfig {
     private final boolean verbose;
     private final boolean tracing;
+    private final boolean memoryMapped;
+    private final boolean parallelLoad;
+    private final String snapshotFile;
+    private final int picDepth;
+    private final boolean sendStatistics;
+    private final boolean astCache;
+    private final boolean validateASTCache;
     private final String receiver;
     private final String selector;
     private final String[] restArgs;
@@ -13,6 +20,13 @@ public class SqueakConfig {
     public SqueakConfig(String[] args) {
         boolean verbose = false;
         boolean tracing = false;
+        boolean memoryMapped = false;
+        boolean parallelLoad = false;
+        String snapshotFile = null;
+        int picDepth = 3;
+        boolean sendStatistics = false;
+        boolean astCache = false;
+        boolean validateASTCache = false;
         String receiver = "nil";
         String selector = "yourself";
         String[] restArgs = null;
@@ -27,6 +41,28 @@ public class SqueakConfig {
                 case "-t":
                     tracing = true;
                     break;
+                case "--mmap":
+                    memoryMapped = true;
+                    break;
+                case "--parallel-load":
+                    parallelLoad = true;
+                    break;
+                case "--write-snapshot":
+                    snapshotFile = args[++i];
+                    break;
+                case "--pic-depth":
+                    picDepth = Integer.parseInt(args[++i]);
+                    break;
+                case "--send-stats":
+                    sendStatistics = true;
+                    break;
+                case "--ast-cache":
+                    astCache = true;
+                    break;
+                case "--validate-ast-cache":
+                    astCache = true;
+                    validateASTCache = true;
+                    break;
                 case "--receiver":
                 case "-r":
                     receiver = args[++i];
@@ -45,6 +81,13 @@ public class SqueakConfig {
 
         this.verbose = verbose;
         this.tracing = tracing;
+        this.memoryMapped = memoryMapped;
+        this.parallelLoad = parallelLoad;
+        this.snapshotFile = snapshotFile;
+        this.picDepth = picDepth;
+        this.sendStatistics = sendStatistics;
+        this.astCache = astCache;
+        this.validateASTCache = validateASTCache;
         this.receiver = receiver;
         this.selector = selector;
         this.restArgs = restArgs;
@@ -58,6 +101,41 @@ public class SqueakConfig {
         return tracing;
     }
 
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    public boolean isParallelLoad() {
+        return parallelLoad;
+    }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * The number of receiver classes a send site caches before it goes megamorphic.
+     */
+    public int getPicDepth() {
+        return picDepth;
+    }
+
+    public boolean isSendStatistics() {
+        return sendStatistics;
+    }
+
+    /**
+     * Whether decompiled ASTs are cached in a file next to the image, see
+     * {@link de.hpi.swa.trufflesqueak.util.ASTCache}.
+     */
+    public boolean isASTCache() {
+        return astCache;
+    }
+
+    public boolean isValidateASTCache() {
+        return validateASTCache;
+    }
+
     public Object getReceiver() {
         if (receiver.equals("nil")) {
             return null;
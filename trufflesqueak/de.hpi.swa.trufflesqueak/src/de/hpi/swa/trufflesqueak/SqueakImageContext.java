@@ -2,14 +2,17 @@ package de.hpi.swa.trufflesqueak;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.math.BigInteger;
 
 import com.oracle.truffle.api.CallTarget;
 import com.oracle.truffle.api.CompilerAsserts;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.Truffle;
 
+import de.hpi.swa.trufflesqueak.instrumentation.SendStatistics;
 import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
 import de.hpi.swa.trufflesqueak.model.ClassObject;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
@@ -17,11 +20,16 @@ import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.model.ContextObject;
 import de.hpi.swa.trufflesqueak.model.LargeInteger;
 import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.model.MethodCache;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
 import de.hpi.swa.trufflesqueak.model.PointersObject;
 import de.hpi.swa.trufflesqueak.nodes.roots.SqueakContextNode;
 import de.hpi.swa.trufflesqueak.nodes.roots.SqueakMainNode;
+import de.hpi.swa.trufflesqueak.util.ASTCache;
 import de.hpi.swa.trufflesqueak.util.ImageReader;
+import de.hpi.swa.trufflesqueak.util.SnapshotFormat;
+import de.hpi.swa.trufflesqueak.util.SnapshotReader;
+import de.hpi.swa.trufflesqueak.util.SnapshotWriter;
 
 public class SqueakImageContext {
     // Special objects
@@ -49,11 +57,16 @@ public class SqueakImageContext {
     public final ClassObject largeNegativeIntegerClass = new ClassObject(this);
     public final ClassObject floatClass = new ClassObject(this);
 
+    public final MethodCache methodCache = new MethodCache();
+    public final SendStatistics sendStatistics;
+
     private final SqueakLanguage language;
     private final BufferedReader input;
     private final PrintWriter output;
     private final PrintWriter error;
     private final SqueakLanguage.Env env;
+    private String imagePath;
+    private ASTCache astCache;
 
     // Special selectors
     public final NativeObject plus = new NativeObject(this, (byte) 1);
@@ -113,6 +126,7 @@ public class SqueakImageContext {
         } else {
             config = new SqueakConfig(new String[0]);
         }
+        sendStatistics = config.isSendStatistics() ? new SendStatistics(config.getPicDepth()) : null;
     }
 
     public CallTarget getActiveContext() {
@@ -138,7 +152,54 @@ public class SqueakImageContext {
     }
 
     public void fillInFrom(FileInputStream inputStream) throws IOException {
-        ImageReader.readImage(this, inputStream);
+        long start = System.nanoTime();
+        boolean isSnapshot = SnapshotFormat.isSnapshot(inputStream.getChannel());
+        if (isSnapshot) {
+            SnapshotReader.readSnapshot(this, inputStream.getChannel());
+            inputStream.close();
+        } else {
+            ImageReader.readImage(this, inputStream);
+        }
+        if (config.isVerbose()) {
+            long millis = (System.nanoTime() - start) / 1000000;
+            output.println((isSnapshot ? "Snapshot" : "Image") + " loaded in " + millis + "ms");
+        }
+        if (config.isASTCache()) {
+            astCache = new ASTCache(ASTCache.fileFor(imagePath), config.isValidateASTCache());
+            astCache.load();
+        }
+        String snapshotFile = config.getSnapshotFile();
+        if (snapshotFile != null) {
+            try (FileOutputStream outputStream = new FileOutputStream(snapshotFile)) {
+                new SnapshotWriter(this).write(outputStream);
+            }
+        }
+    }
+
+    /**
+     * The cache of decompiled ASTs, or null if it is not enabled.
+     */
+    public ASTCache getASTCache() {
+        return astCache;
+    }
+
+    @TruffleBoundary
+    public void saveASTCache() {
+        if (astCache != null) {
+            try {
+                astCache.save();
+            } catch (IOException e) {
+                error.println("Could not write AST cache: " + e.getMessage());
+            }
+        }
+    }
+
+    public String getImagePath() {
+        return imagePath;
+    }
+
+    public void setImagePath(String path) {
+        imagePath = path;
     }
 
     public PrintWriter getOutput() {
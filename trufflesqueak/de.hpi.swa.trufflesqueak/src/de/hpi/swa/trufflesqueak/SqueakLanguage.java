@@ -29,6 +29,7 @@ public final class SqueakLanguage extends TruffleLanguage<SqueakImageContext> {
     @Override
     protected CallTarget parse(ParsingRequest request) throws Exception {
         SqueakImageContext image = this.getContextReference().get();
+        image.setImagePath(request.getSource().getName());
         image.fillInFrom(new FileInputStream(request.getSource().getName()));
         return image.getEntryPoint();
     }
@@ -1,5 +1,16 @@
 package de.hpi.swa.trufflesqueak.exceptions;
 
-public class PrimitiveFailed extends RuntimeException {
+import com.oracle.truffle.api.nodes.ControlFlowException;
+
+/**
+ * Signals that a primitive cannot handle its operands and the method's fallback code has to run.
+ * It carries no state and no stack trace, so a single instance is thrown everywhere, and the
+ * compiler turns throwing and catching it within one compilation unit into a jump.
+ */
+public final class PrimitiveFailed extends ControlFlowException {
     private static final long serialVersionUID = -7373781496172787180L;
+    public static final PrimitiveFailed INSTANCE = new PrimitiveFailed();
+
+    private PrimitiveFailed() {
+    }
 }
@@ -0,0 +1,164 @@
+package de.hpi.swa.trufflesqueak.instrumentation;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+
+/**
+ * Collects how send sites behave with respect to their inline caches. A site counts as
+ * monomorphic while it has seen one receiver class, polymorphic while the classes still fit into
+ * the configured cache depth, and megamorphic afterwards, which mirrors when the lookup cache falls
+ * back to its indirect specialization. Transitions count the rewrites of the cache, one for every
+ * new receiver class until the site has gone megamorphic.
+ *
+ * Sites are identified by their method and bytecode index, so send nodes that are copied or
+ * created again for the same bytecode share their site instead of adding a new one.
+ *
+ * The report is printed as tab-separated tables, so it can be sorted by any column with standard
+ * tools. Each table is sorted by number of sends.
+ */
+public final class SendStatistics {
+    private static final String[] STATE_NAMES = {"mono", "poly", "mega"};
+    private static final int MONOMORPHIC = 0;
+    private static final int POLYMORPHIC = 1;
+    private static final int MEGAMORPHIC = 2;
+
+    private final int cacheDepth;
+    private final List<Site> sites = new ArrayList<>();
+    private final Map<CompiledCodeObject, Map<Integer, Site>> sitesByMethod = new IdentityHashMap<>();
+
+    public SendStatistics(int cacheDepth) {
+        this.cacheDepth = cacheDepth;
+    }
+
+    public final class Site {
+        private final Object selector;
+        private final CompiledCodeObject method;
+        private final Map<ClassObject, long[]> receiverClasses = new IdentityHashMap<>();
+        private final long[] sendsInState = new long[STATE_NAMES.length];
+        private int state = MONOMORPHIC;
+        private int transitions;
+        private long sends;
+
+        private Site(Object selector, CompiledCodeObject method) {
+            this.selector = selector;
+            this.method = method;
+        }
+
+        @TruffleBoundary
+        public synchronized void record(ClassObject receiverClass) {
+            long[] count = receiverClasses.get(receiverClass);
+            if (count == null) {
+                count = new long[1];
+                receiverClasses.put(receiverClass, count);
+                if (state != MEGAMORPHIC) {
+                    // the cache is rewritten to add the class, or to replace the entries
+                    transitions++;
+                }
+                state = stateFor(receiverClasses.size());
+            }
+            count[0]++;
+            sendsInState[state]++;
+            sends++;
+        }
+
+        private int stateFor(int numClasses) {
+            if (numClasses <= 1) {
+                return MONOMORPHIC;
+            }
+            return numClasses <= cacheDepth ? POLYMORPHIC : MEGAMORPHIC;
+        }
+    }
+
+    @TruffleBoundary
+    public synchronized Site register(Object selector, CompiledCodeObject method, int index) {
+        Map<Integer, Site> methodSites = sitesByMethod.get(method);
+        if (methodSites == null) {
+            methodSites = new HashMap<>();
+            sitesByMethod.put(method, methodSites);
+        }
+        Site site = methodSites.get(index);
+        if (site == null) {
+            site = new Site(selector, method);
+            methodSites.put(index, site);
+            sites.add(site);
+        }
+        return site;
+    }
+
+    private static final class Histogram {
+        private final String name;
+        private long sends;
+        private int sites;
+        private int megamorphicSites;
+
+        Histogram(String name) {
+            this.name = name;
+        }
+    }
+
+    @TruffleBoundary
+    public synchronized void printReport(PrintWriter output) {
+        List<Site> executed = new ArrayList<>();
+        Map<String, Histogram> selectors = new HashMap<>();
+        Map<String, Histogram> methods = new HashMap<>();
+        Map<String, Histogram> classes = new HashMap<>();
+        for (Site site : sites) {
+            synchronized (site) {
+                if (site.sends == 0) {
+                    continue;
+                }
+                executed.add(site);
+                count(selectors, String.valueOf(site.selector), site, site.sends);
+                count(methods, String.valueOf(site.method), site, site.sends);
+                for (Map.Entry<ClassObject, long[]> entry : site.receiverClasses.entrySet()) {
+                    count(classes, entry.getKey().nameAsClass(), site, entry.getValue()[0]);
+                }
+            }
+        }
+        executed.sort(Comparator.comparingLong((Site site) -> site.sends).reversed());
+
+        output.println("# Send sites (inline cache depth " + cacheDepth + ")");
+        output.println("sends\tstate\tmono\tpoly\tmega\ttransitions\tclasses\tselector\tmethod");
+        for (Site site : executed) {
+            output.println(site.sends + "\t" + STATE_NAMES[site.state] + "\t" + site.sendsInState[MONOMORPHIC] + "\t" + site.sendsInState[POLYMORPHIC] + "\t" +
+                            site.sendsInState[MEGAMORPHIC] + "\t" + site.transitions + "\t" + site.receiverClasses.size() + "\t" + site.selector + "\t" + site.method);
+        }
+        printHistogram(output, "Selectors", "selector", selectors);
+        printHistogram(output, "Methods", "method", methods);
+        printHistogram(output, "Receiver classes", "class", classes);
+    }
+
+    private static void count(Map<String, Histogram> histograms, String name, Site site, long sends) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram(name);
+            histograms.put(name, histogram);
+        }
+        histogram.sends += sends;
+        histogram.sites++;
+        if (site.state == MEGAMORPHIC) {
+            histogram.megamorphicSites++;
+        }
+    }
+
+    private static void printHistogram(PrintWriter output, String title, String column, Map<String, Histogram> histograms) {
+        List<Histogram> sorted = new ArrayList<>(histograms.values());
+        sorted.sort(Comparator.comparingLong((Histogram histogram) -> histogram.sends).reversed());
+        output.println();
+        output.println("# " + title);
+        output.println("sends\tsites\tmegamorphic sites\t" + column);
+        for (Histogram histogram : sorted) {
+            output.println(histogram.sends + "\t" + histogram.sites + "\t" + histogram.megamorphicSites + "\t" + histogram.name);
+        }
+    }
+}
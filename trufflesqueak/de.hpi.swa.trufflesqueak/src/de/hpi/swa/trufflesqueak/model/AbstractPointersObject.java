@@ -34,7 +34,11 @@ public abstract class AbstractPointersObject extends SqueakObject {
     @Override
     public void fillin(Chunk chunk) {
         super.fillin(chunk);
-        pointers = chunk.getPointers();
+        fillinPointers(chunk.getPointers());
+    }
+
+    public void fillinPointers(Object[] ptrs) {
+        pointers = ptrs;
     }
 
     @Override
@@ -51,15 +55,27 @@ public abstract class AbstractPointersObject extends SqueakObject {
     public boolean become(BaseSqueakObject other) {
         if (other instanceof AbstractPointersObject) {
             if (super.become(other)) {
-                Object[] pointers2 = ((PointersObject) other).getPointers();
-                ((PointersObject) other).pointers = this.getPointers();
-                pointers = pointers2;
+                swapPointers((AbstractPointersObject) other);
                 return true;
             }
         }
         return false;
     }
 
+    protected void swapPointers(AbstractPointersObject other) {
+        Object[] pointers2 = other.getPointers();
+        other.setPointers(this.getPointers());
+        setPointers(pointers2);
+    }
+
+    /**
+     * Replaces the fields when swapping them with another object. Subclasses that keep their
+     * fields in a different representation convert them here.
+     */
+    protected void setPointers(Object[] ptrs) {
+        pointers = ptrs;
+    }
+
     @Override
     public int size() {
         return getPointers().length;
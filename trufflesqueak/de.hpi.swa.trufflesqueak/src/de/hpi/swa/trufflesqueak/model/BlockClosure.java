@@ -26,6 +26,7 @@ public class BlockClosure extends BaseSqueakObject {
     @CompilationFinal private Object frameMarker;
     @CompilationFinal private Object context;
     @CompilationFinal private CompiledBlockObject block;
+    private int hash;
 
     public BlockClosure(SqueakImageContext img) {
         super(img);
@@ -49,6 +50,26 @@ public class BlockClosure extends BaseSqueakObject {
         // FIXME
     }
 
+    /**
+     * Fill in a closure that is restored from a snapshot rather than an image chunk.
+     */
+    public void fillinClosure(int squeakHash, Object outerContext, CompiledBlockObject compiledBlock, Object rcvr, Object[] copied) {
+        hash = squeakHash;
+        context = outerContext;
+        frameMarker = outerContext instanceof ContextObject ? ((ContextObject) outerContext).getFrameMarker() : null;
+        block = compiledBlock;
+        receiver = rcvr;
+        stack = copied;
+    }
+
+    @Override
+    public int squeakHash() {
+        if (hash == 0) {
+            hash = super.squeakHash();
+        }
+        return hash;
+    }
+
     private Object getOrPrepareContext() {
         if (context == null) {
             return Truffle.getRuntime().iterateFrames(new FrameInstanceVisitor<Object>() {
@@ -93,7 +114,7 @@ public class BlockClosure extends BaseSqueakObject {
             case BLKCLSR_COMPILEDBLOCK:
                 block = (CompiledBlockObject) obj;
             case BLKCLSR_NUMARGS:
-                throw new PrimitiveFailed();
+                throw PrimitiveFailed.INSTANCE;
             case BLKCLSR_RECEIVER:
                 receiver = obj;
             default:
@@ -154,7 +175,7 @@ public class BlockClosure extends BaseSqueakObject {
 
     public Object[] getFrameArguments(Object... objects) {
         if (block.getNumArgs() != objects.length) {
-            throw new PrimitiveFailed();
+            throw PrimitiveFailed.INSTANCE;
         }
         Object[] arguments = new Object[1 /* receiver */ +
                         objects.length +
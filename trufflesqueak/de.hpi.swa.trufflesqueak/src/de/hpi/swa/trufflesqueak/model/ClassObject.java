@@ -1,6 +1,8 @@
 package de.hpi.swa.trufflesqueak.model;
 
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
 
@@ -10,11 +12,10 @@ import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.utilities.CyclicAssumption;
 
 import de.hpi.swa.trufflesqueak.SqueakImageContext;
-import de.hpi.swa.trufflesqueak.util.Chunk;
 
 public class ClassObject extends AbstractPointersObject {
     private static final int METHODDICT_NAMES_INDEX = 2;
-    private static final int METHODDICT_VALUES_INDEX = 1;
+    static final int METHODDICT_VALUES_INDEX = 1;
     private static final int NAME_INDEX = 6;
     private static final int FORMAT_INDEX = 2;
     private static final int METHODDICT_INDEX = 1;
@@ -25,6 +26,9 @@ public class ClassObject extends AbstractPointersObject {
     @CompilationFinal private int instanceSize;
     private final CyclicAssumption methodLookupStable = new CyclicAssumption("Class lookup stability");
     private final CyclicAssumption classFormatStable = new CyclicAssumption("Class format stability");
+    private final Map<Object, CyclicAssumption> selectorLookupStable = new IdentityHashMap<>();
+    private MethodDictionaryIndex methodDictIndex;
+    private ObjectLayout instanceLayout;
 
     public ClassObject(SqueakImageContext img) {
         super(img);
@@ -82,8 +86,12 @@ public class ClassObject extends AbstractPointersObject {
     }
 
     @Override
-    public void fillin(Chunk chunk) {
-        super.fillin(chunk);
+    public void fillinPointers(Object[] ptrs) {
+        super.fillinPointers(ptrs);
+        initializeFromPointers();
+    }
+
+    private void initializeFromPointers() {
         // initialize the subclasses set
         setFormat((int) at0(FORMAT_INDEX));
         setSuperclass(getSuperclass());
@@ -94,6 +102,10 @@ public class ClassObject extends AbstractPointersObject {
         instSpec = (format >> 16) & 0x1f;
         instanceSize = format & 0xffff;
         classFormatStable.invalidate();
+        if (instanceLayout != null) {
+            instanceLayout.getValid().invalidate();
+            instanceLayout = null;
+        }
     }
 
     public void setSuperclass(Object superclass) {
@@ -105,13 +117,73 @@ public class ClassObject extends AbstractPointersObject {
         if (superclass instanceof ClassObject) {
             ((ClassObject) superclass).attachSubclass(this);
         }
-        for (ClassObject subclass : subclasses) {
-            subclass.invalidateMethodLookup();
-        }
+        invalidateMethodLookup();
     }
 
+    /**
+     * Invalidates all lookups of this class and its transitive subclasses.
+     */
     private void invalidateMethodLookup() {
+        invalidateMethodLookupInHierarchy();
+        image.methodCache.flush();
+    }
+
+    private void invalidateMethodLookupInHierarchy() {
         methodLookupStable.invalidate();
+        methodDictIndex = null;
+        for (ClassObject subclass : subclasses) {
+            subclass.invalidateMethodLookupInHierarchy();
+        }
+    }
+
+    /**
+     * Invalidates only the lookups of the selector in this class and its transitive subclasses, so
+     * inline caches for other selectors stay valid.
+     */
+    private void invalidateSelectorLookup(Object selector) {
+        if (selector instanceof BaseSqueakObject) {
+            methodDictIndex = null;
+            invalidateSelectorLookupInHierarchy(selector);
+            image.methodCache.flush();
+        }
+    }
+
+    private void invalidateSelectorLookupInHierarchy(Object selector) {
+        CyclicAssumption selectorStable = selectorLookupStable.get(selector);
+        if (selectorStable != null) {
+            selectorStable.invalidate();
+        }
+        for (ClassObject subclass : subclasses) {
+            subclass.invalidateSelectorLookupInHierarchy(selector);
+        }
+    }
+
+    /**
+     * Called by the method dictionary of this class, or its method array, after a slot changed.
+     */
+    @TruffleBoundary
+    void methodDictChanged(ListObject changed, int index, Object oldValue) {
+        Object methodDict = getMethodDict();
+        if (!(methodDict instanceof ListObject)) {
+            return;
+        }
+        ListObject dict = (ListObject) methodDict;
+        if (changed == dict) {
+            if (index == METHODDICT_VALUES_INDEX) {
+                invalidateMethodLookup();
+            } else if (index >= METHODDICT_NAMES_INDEX) {
+                invalidateSelectorLookup(oldValue);
+                invalidateSelectorLookup(dict.at0(index));
+            }
+            // the tally does not affect lookups
+        } else if (changed == dict.at0(METHODDICT_VALUES_INDEX)) {
+            invalidateSelectorLookup(dict.at0(index + METHODDICT_NAMES_INDEX));
+        }
+    }
+
+    @TruffleBoundary
+    void methodDictReplaced() {
+        invalidateMethodLookup();
     }
 
     private void attachSubclass(ClassObject classObject) {
@@ -126,6 +198,21 @@ public class ClassObject extends AbstractPointersObject {
         return at0(SUPERCLASS_INDEX);
     }
 
+    /**
+     * Answers whether this class is the given class or one of its subclasses.
+     */
+    @TruffleBoundary
+    public boolean includesBehavior(ClassObject other) {
+        Object sqClass = this;
+        while (sqClass instanceof ClassObject) {
+            if (sqClass == other) {
+                return true;
+            }
+            sqClass = ((ClassObject) sqClass).getSuperclass();
+        }
+        return false;
+    }
+
     public Object getMethodDict() {
         return at0(METHODDICT_INDEX);
     }
@@ -140,6 +227,9 @@ public class ClassObject extends AbstractPointersObject {
             setFormat((int) obj);
         } else if (idx == SUPERCLASS_INDEX) {
             setSuperclass(obj);
+        } else if (idx == METHODDICT_INDEX) {
+            super.atput0(idx, obj);
+            invalidateMethodLookup();
         } else {
             super.atput0(idx, obj);
         }
@@ -149,12 +239,46 @@ public class ClassObject extends AbstractPointersObject {
         return methodLookupStable.getAssumption();
     }
 
+    /**
+     * Unlike {@link #getMethodLookupStable()}, this is only invalidated when the method dictionary
+     * of this class or one of its superclasses changes the entry for the selector.
+     */
+    @TruffleBoundary
+    public Assumption getMethodLookupStable(Object selector) {
+        CyclicAssumption selectorStable = selectorLookupStable.get(selector);
+        if (selectorStable == null) {
+            selectorStable = new CyclicAssumption("Method lookup stability of a selector");
+            selectorLookupStable.put(selector, selectorStable);
+        }
+        return selectorStable.getAssumption();
+    }
+
     public Assumption getClassFormatStable() {
         return classFormatStable.getAssumption();
     }
 
-    // TODO: cache the methoddict in a better structure than what Squeak provides
-    // ... or use the Squeak hash to decide where to put stuff
+    /**
+     * Returns the current layout of instances with fixed fields, or null if the instances have a
+     * different number of fields.
+     */
+    ObjectLayout getInstanceLayout(int numSlots) {
+        if (numSlots != instanceSize) {
+            return null;
+        }
+        if (instanceLayout == null) {
+            instanceLayout = ObjectLayout.initial(instanceSize);
+        }
+        return instanceLayout;
+    }
+
+    /**
+     * Called when an instance stores a value that its current layout cannot hold.
+     */
+    ObjectLayout generalizeInstanceLayout(int index, Object value) {
+        instanceLayout = instanceLayout.generalize(index, value);
+        return instanceLayout;
+    }
+
     public Object lookup(Predicate<Object> test) {
         Object lookupClass = this;
         while (lookupClass instanceof ClassObject) {
@@ -175,12 +299,50 @@ public class ClassObject extends AbstractPointersObject {
         return null;
     }
 
+    /**
+     * Looks the selector up through the hashed index of each class in the superclass chain, so a
+     * lookup costs one probe per class instead of a scan of every method dictionary.
+     */
+    @TruffleBoundary
     public Object lookup(Object selector) {
-        Object result = lookup(methodSelector -> methodSelector == selector);
-        if (result == null) {
-            return doesNotUnderstand();
+        Object lookupClass = this;
+        while (lookupClass instanceof ClassObject) {
+            ClassObject sqClass = (ClassObject) lookupClass;
+            Object methodDict = sqClass.getMethodDict();
+            if (methodDict instanceof ListObject) {
+                ListObject dict = (ListObject) methodDict;
+                Object values = dict.at0(METHODDICT_VALUES_INDEX);
+                if (values instanceof BaseSqueakObject) {
+                    int slot = sqClass.getMethodDictIndex(dict).slotOf(selector);
+                    if (slot != MethodDictionaryIndex.NOT_FOUND) {
+                        Object result = ((BaseSqueakObject) values).at0(slot - METHODDICT_NAMES_INDEX);
+                        return result == null ? doesNotUnderstand() : result;
+                    }
+                }
+            }
+            lookupClass = sqClass.getSuperclass();
         }
-        return result;
+        return doesNotUnderstand();
+    }
+
+    /**
+     * The index is rebuilt lazily after an entry of the dictionary changed, when
+     * {@link #getMethodLookupStable()} was invalidated, or when the dictionary changed shape since it
+     * was built.
+     */
+    private MethodDictionaryIndex getMethodDictIndex(ListObject methodDict) {
+        MethodDictionaryIndex index = methodDictIndex;
+        if (index == null || !index.isValidFor(methodDict)) {
+            index = new MethodDictionaryIndex(methodDict, METHODDICT_NAMES_INDEX, METHODDICT_VALUES_INDEX, methodLookupStable.getAssumption());
+            methodDictIndex = index;
+            // from now on, changes to the dictionary invalidate the lookups that depend on it
+            methodDict.setMethodDictOwner(this);
+            Object values = methodDict.at0(METHODDICT_VALUES_INDEX);
+            if (values instanceof ListObject) {
+                ((ListObject) values).setMethodDictOwner(this);
+            }
+        }
+        return index;
     }
 
     public Object lookup(String selector) {
@@ -227,6 +389,9 @@ public class ClassObject extends AbstractPointersObject {
                 // TODO: Float
                 return new NativeObject(image, this, size, 4);
             case 16: case 17: case 18: case 19: case 20: case 21: case 22: case 23:
+                if (this == image.largePositiveIntegerClass || this == image.largeNegativeIntegerClass) {
+                    return new LargeInteger(image, this, size);
+                }
                 return new NativeObject(image, this, size, 1);
             default:
                 // FIXME: ignore the size?
@@ -239,6 +404,10 @@ public class ClassObject extends AbstractPointersObject {
         return instanceSize;
     }
 
+    public int getInstSpec() {
+        return instSpec;
+    }
+
     @Override
     public BaseSqueakObject shallowCopy() {
         return new ClassObject(this);
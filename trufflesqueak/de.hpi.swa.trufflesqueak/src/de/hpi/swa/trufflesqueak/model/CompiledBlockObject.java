@@ -4,6 +4,7 @@ import java.util.Arrays;
 
 import com.oracle.truffle.api.frame.FrameSlot;
 import com.oracle.truffle.api.frame.FrameSlotKind;
+import com.oracle.truffle.api.source.Source;
 
 public class CompiledBlockObject extends CompiledCodeObject {
     final CompiledMethodObject outerMethod;
@@ -51,6 +52,14 @@ public class CompiledBlockObject extends CompiledCodeObject {
         return outerMethod;
     }
 
+    /**
+     * Blocks are rendered inline in their outer method, which also annotates the block's nodes.
+     */
+    @Override
+    public Source getSource() {
+        return outerMethod.getSource();
+    }
+
     /**
      * We override this, because the old inline compiled blocks in Squeak 5 and 6 make it very hard
      * to determine the correct number of temps that will be used. This way, for blocks we allow for
@@ -1,6 +1,6 @@
 package de.hpi.swa.trufflesqueak.model;
 
-import java.util.Vector;
+import java.util.Arrays;
 
 import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CompilerDirectives;
@@ -14,6 +14,7 @@ import com.oracle.truffle.api.frame.FrameSlotKind;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.interop.ForeignAccess;
 import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.source.SourceSection;
 import com.oracle.truffle.api.utilities.CyclicAssumption;
 
 import de.hpi.swa.trufflesqueak.SqueakImageContext;
@@ -22,6 +23,7 @@ import de.hpi.swa.trufflesqueak.instrumentation.PrettyPrintVisitor;
 import de.hpi.swa.trufflesqueak.instrumentation.SourceVisitor;
 import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
 import de.hpi.swa.trufflesqueak.nodes.roots.SqueakMethodNode;
+import de.hpi.swa.trufflesqueak.util.ASTCache;
 import de.hpi.swa.trufflesqueak.util.BitSplitter;
 import de.hpi.swa.trufflesqueak.util.Chunk;
 import de.hpi.swa.trufflesqueak.util.Decompiler;
@@ -39,6 +41,7 @@ public abstract class CompiledCodeObject extends SqueakObject {
     protected byte[] bytes;
     private SqueakNode[] ast;
     Source source;
+    private SourceSection[] sourceSections;
     // frame info
     private FrameDescriptor frameDescriptor;
     @CompilationFinal public FrameSlot receiverSlot;
@@ -77,23 +80,61 @@ public abstract class CompiledCodeObject extends SqueakObject {
         setBytesAndLiterals(original.literals, original.bytes);
     }
 
+    /**
+     * Only decodes the header and prepares the frame layout. The AST, its source and the call target
+     * are derived lazily on first use, so methods that never run are never decompiled.
+     */
     @TruffleBoundary
     protected void setBytesAndLiterals(Object[] lits, byte[] bc) {
         literals = lits;
         bytes = bc;
         decodeHeader();
         prepareFrameDescriptor();
-        ast = new Decompiler(this).getAST();
-        source = Source.newBuilder(prettyPrint()).mimeType(SqueakLanguage.MIME_TYPE).name(toString()).build();
-        new SourceVisitor(source).visit(this);
-        callTarget = Truffle.getRuntime().createCallTarget(new SqueakMethodNode(image.getLanguage(), this));
+        ast = null;
+        source = null;
+        sourceSections = null;
+        callTarget = null;
         callTargetStable.invalidate();
     }
 
+    /**
+     * Renders the decompiled method and annotates its AST with source sections. This only happens
+     * when someone asks for source sections, usually an attached instrument, so the rendered text
+     * is not kept around for methods nobody looks at.
+     */
+    @TruffleBoundary
     public Source getSource() {
+        if (source == null) {
+            source = Source.newBuilder(prettyPrint()).mimeType(SqueakLanguage.MIME_TYPE).name(toString()).build();
+            new SourceVisitor(source).visit(this);
+        }
         return source;
     }
 
+    /**
+     * Returns the section of the rendered source that shows the bytecode at the given index, or null
+     * if no node was decompiled from it.
+     */
+    @TruffleBoundary
+    public SourceSection getSourceSection(int bytecodeIndex) {
+        getSource();
+        if (sourceSections == null || bytecodeIndex >= sourceSections.length) {
+            return null;
+        }
+        return sourceSections[bytecodeIndex];
+    }
+
+    /**
+     * Called while the source is rendered, see {@link SourceVisitor}.
+     */
+    public void setSourceSection(int bytecodeIndex, SourceSection section) {
+        if (sourceSections == null || bytecodeIndex >= sourceSections.length) {
+            int length = Math.max(bytecodeIndex + 1, bytes == null ? 0 : bytes.length);
+            sourceSections = sourceSections == null ? new SourceSection[length] : Arrays.copyOf(sourceSections, length);
+        }
+        sourceSections[bytecodeIndex] = section;
+    }
+
     private void prepareFrameDescriptor() {
         frameDescriptor = new FrameDescriptor(null);
         int squeakFrameSize = 16;
@@ -122,17 +163,22 @@ public abstract class CompiledCodeObject extends SqueakObject {
         for (Object o : arguments) {
             args[i++] = o;
         }
-        return Truffle.getRuntime().createVirtualFrame(args, frameDescriptor);
+        return Truffle.getRuntime().createVirtualFrame(args, getFrameDescriptor());
     }
 
     public RootCallTarget getCallTarget() {
         if (callTarget == null) {
             CompilerDirectives.transferToInterpreter();
-            setBytesAndLiterals(literals, bytes);
+            createCallTarget();
         }
         return callTarget;
     }
 
+    @TruffleBoundary
+    private void createCallTarget() {
+        callTarget = Truffle.getRuntime().createCallTarget(new SqueakMethodNode(image.getLanguage(), this));
+    }
+
     public Assumption getCallTargetStable() {
         return callTargetStable.getAssumption();
     }
@@ -158,9 +204,18 @@ public abstract class CompiledCodeObject extends SqueakObject {
     }
 
     public SqueakNode[] getBytecodeAST() {
+        if (ast == null) {
+            decompile();
+        }
         return ast;
     }
 
+    @TruffleBoundary
+    private void decompile() {
+        ASTCache astCache = image.getASTCache();
+        ast = astCache == null ? new Decompiler(this).getAST() : astCache.getAST(this);
+    }
+
     public FrameDescriptor getFrameDescriptor() {
         return frameDescriptor;
     }
@@ -196,12 +251,15 @@ public abstract class CompiledCodeObject extends SqueakObject {
     @Override
     public void fillin(Chunk chunk) {
         super.fillin(chunk);
-        Vector<Integer> data = chunk.data();
-        int header = data.get(0) >> 1; // header is a tagged small integer
+        int header = chunk.data()[0] >> 1; // header is a tagged small integer
         int literalsize = header & 0x7fff;
         Object[] ptrs = chunk.getPointers(literalsize + 1);
-        literals = ptrs;
-        bytes = chunk.getBytes(ptrs.length);
+        // decoding the header is cheap, only decompilation is deferred
+        setBytesAndLiterals(ptrs, chunk.getBytes(ptrs.length));
+    }
+
+    public void fillinLiteralsAndBytes(Object[] lits, byte[] bc) {
+        setBytesAndLiterals(lits, bc);
     }
 
     void decodeHeader() {
@@ -13,6 +13,7 @@ import de.hpi.swa.trufflesqueak.util.Chunk;
 
 public class ContextObject extends BaseSqueakObject {
     private ActualContextObject actualContext;
+    private int hash;
 
     private ContextObject(SqueakImageContext img, ActualContextObject context) {
         super(img);
@@ -38,9 +39,27 @@ public class ContextObject extends BaseSqueakObject {
     @Override
     public void fillin(Chunk chunk) {
         assert actualContext instanceof WriteableContextObject;
+        hash = chunk.getHash();
         actualContext.fillin(chunk);
     }
 
+    /**
+     * Fill in a context that is restored from a snapshot rather than an image chunk.
+     */
+    public void fillinPointers(int squeakHash, Object[] pointers) {
+        assert actualContext instanceof WriteableContextObject;
+        hash = squeakHash;
+        ((WriteableContextObject) actualContext).fillinPointers(pointers);
+    }
+
+    @Override
+    public int squeakHash() {
+        if (hash == 0) {
+            hash = super.squeakHash();
+        }
+        return hash;
+    }
+
     @Override
     public ClassObject getSqClass() {
         return image.methodContextClass;
@@ -2,10 +2,21 @@ package de.hpi.swa.trufflesqueak.model;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+
 import de.hpi.swa.trufflesqueak.SqueakImageContext;
 import de.hpi.swa.trufflesqueak.util.Chunk;
 
+/**
+ * Large integers keep their magnitude as little-endian 32-bit digits, like the LargeIntegers plugin
+ * of the VM, and their sign in their class. The size is tracked in bytes, because the image creates
+ * large integers with leading zero bytes and normalizes them later. Byte accesses are plain digit
+ * accesses, the {@link BigInteger} value is only computed when arithmetic needs it and is cached
+ * until the next change.
+ */
 public class LargeInteger extends SqueakObject {
+    private int[] digits;
+    private int size;
     private BigInteger integer;
 
     public LargeInteger(SqueakImageContext img) {
@@ -23,7 +34,7 @@ public class LargeInteger extends SqueakObject {
             liKlass = img.largeNegativeIntegerClass;
         }
         setSqClass(liKlass);
-        integer = i;
+        setValue(i);
     }
 
     public LargeInteger(SqueakImageContext img, ClassObject klass, byte[] bytes) {
@@ -31,6 +42,26 @@ public class LargeInteger extends SqueakObject {
         setBytes(bytes);
     }
 
+    public LargeInteger(SqueakImageContext img, ClassObject klass, int size) {
+        this(img, klass);
+        this.digits = new int[digitLengthFor(size)];
+        this.size = size;
+    }
+
+    /**
+     * Creates a large integer with the given digits, which are not copied.
+     */
+    public LargeInteger(SqueakImageContext img, ClassObject klass, int[] digits, int size) {
+        this(img, klass);
+        this.digits = digits;
+        this.size = size;
+    }
+
+    private LargeInteger(LargeInteger original) {
+        this(original.image, original.getSqClass(), original.digits.clone(), original.size);
+        integer = original.integer;
+    }
+
     @Override
     public void fillin(Chunk chunk) {
         super.fillin(chunk);
@@ -38,44 +69,73 @@ public class LargeInteger extends SqueakObject {
         setBytes(bytes);
     }
 
+    @Override
+    public void setSqClass(ClassObject newCls) {
+        super.setSqClass(newCls);
+        // the class determines the sign
+        integer = null;
+    }
+
     @Override
     public Object at0(int l) {
-        return byteAt0(integer.abs(), l);
+        return byteAt0(l);
     }
 
     @Override
     public void atput0(int idx, Object object) {
-        byte b = (byte) object;
-        setBytesNative(byteAtPut0(integer, idx, b));
+        byteAtPut0(idx, ((Number) object).intValue());
+    }
+
+    public int byteAt0(int index) {
+        if (index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return (digits[index >> 2] >>> ((index & 3) * 8)) & 0xFF;
+    }
+
+    public void byteAtPut0(int index, int value) {
+        if (index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        int shift = (index & 3) * 8;
+        int digitIndex = index >> 2;
+        digits[digitIndex] = (digits[digitIndex] & ~(0xFF << shift)) | ((value & 0xFF) << shift);
+        integer = null;
     }
 
     public void setBytes(byte[] bytes) {
-        byte[] bigEndianBytes = new byte[bytes.length + 1];
-        bigEndianBytes[0] = 0;
+        int[] newDigits = new int[digitLengthFor(bytes.length)];
         for (int i = 0; i < bytes.length; i++) {
-            bigEndianBytes[bytes.length - i] = bytes[i];
+            newDigits[i >> 2] |= (bytes[i] & 0xFF) << ((i & 3) * 8);
         }
-        setBytesNative(bigEndianBytes);
+        digits = newDigits;
+        size = bytes.length;
+        integer = null;
     }
 
-    private void setBytesNative(byte[] bigEndianBytes) {
-        integer = new BigInteger(bigEndianBytes);
-        if (isNegative()) {
-            integer = integer.negate();
+    public byte[] getBytes() {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (digits[i >> 2] >>> ((i & 3) * 8));
         }
+        return bytes;
     }
 
-    public byte[] getBytes() {
-        return getSqueakBytes(integer);
+    /**
+     * Returns the magnitude as little-endian 32-bit digits. The last digit may be partially or
+     * entirely unused, see {@link #size()}.
+     */
+    public int[] getDigits() {
+        return digits;
     }
 
-    private boolean isNegative() {
+    public boolean isNegative() {
         return getSqClass() == image.largeNegativeIntegerClass;
     }
 
     @Override
     public int size() {
-        return byteSize(integer);
+        return size;
     }
 
     @Override
@@ -84,18 +144,64 @@ public class LargeInteger extends SqueakObject {
     }
 
     public BigInteger getValue() {
+        if (integer == null) {
+            integer = toBigInteger(digits, isNegative());
+        }
         return integer;
     }
 
-    public static long byteAt0(BigInteger receiver, int idx) {
-        byte[] byteArray = receiver.toByteArray();
-        return byteArray[byteArray.length - idx - 1] & 0xFF;
+    private void setValue(BigInteger i) {
+        digits = digitsOf(i);
+        size = byteSize(i);
+        integer = i;
     }
 
-    public static byte[] byteAtPut0(BigInteger receiver, int idx, long value) {
-        byte[] bytes = receiver.toByteArray();
-        bytes[bytes.length - idx - 1] = (byte) value;
-        return bytes;
+    public static int digitLengthFor(int byteSize) {
+        return (byteSize + 3) / 4;
+    }
+
+    /**
+     * Returns the magnitude of the value as little-endian 32-bit digits.
+     */
+    @TruffleBoundary
+    public static int[] digitsOf(BigInteger value) {
+        BigInteger magnitude = value.abs();
+        int[] result = new int[(magnitude.bitLength() + 31) / 32];
+        // big-endian, possibly with a leading sign byte that does not fit into the digits
+        byte[] bytes = magnitude.toByteArray();
+        int numBytes = Math.min(bytes.length, result.length * 4);
+        for (int i = 0; i < numBytes; i++) {
+            result[i >> 2] |= (bytes[bytes.length - 1 - i] & 0xFF) << ((i & 3) * 8);
+        }
+        return result;
+    }
+
+    @TruffleBoundary
+    public static BigInteger toBigInteger(int[] digits, boolean negative) {
+        byte[] bigEndianBytes = new byte[digits.length * 4];
+        for (int i = 0; i < digits.length; i++) {
+            int digit = digits[i];
+            int offset = bigEndianBytes.length - i * 4;
+            bigEndianBytes[offset - 1] = (byte) digit;
+            bigEndianBytes[offset - 2] = (byte) (digit >>> 8);
+            bigEndianBytes[offset - 3] = (byte) (digit >>> 16);
+            bigEndianBytes[offset - 4] = (byte) (digit >>> 24);
+        }
+        return new BigInteger(negative ? -1 : 1, bigEndianBytes);
+    }
+
+    /**
+     * Returns a byte of the magnitude. Only negative values are copied, to negate them.
+     */
+    public static long byteAt0(BigInteger receiver, int idx) {
+        BigInteger magnitude = receiver.signum() < 0 ? receiver.negate() : receiver;
+        int result = 0;
+        for (int bit = 0; bit < 8; bit++) {
+            if (magnitude.testBit(idx * 8 + bit)) {
+                result |= 1 << bit;
+            }
+        }
+        return result;
     }
 
     public static byte[] getSqueakBytes(BigInteger repl) {
@@ -115,9 +221,28 @@ public class LargeInteger extends SqueakObject {
         return (i.abs().bitLength() + 7) / 8;
     }
 
+    @Override
+    public boolean become(BaseSqueakObject other) {
+        if (other instanceof LargeInteger) {
+            if (super.become(other)) {
+                LargeInteger otherInteger = (LargeInteger) other;
+                int[] digits2 = otherInteger.digits;
+                int size2 = otherInteger.size;
+                otherInteger.digits = this.digits;
+                otherInteger.size = this.size;
+                otherInteger.integer = null;
+                this.digits = digits2;
+                this.size = size2;
+                this.integer = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public String toString() {
-        return integer.toString();
+        return getValue().toString();
     }
 
     public BigInteger unwrapBigInt() {
@@ -134,6 +259,6 @@ public class LargeInteger extends SqueakObject {
 
     @Override
     public BaseSqueakObject shallowCopy() {
-        return new LargeInteger(image, integer);
+        return new LargeInteger(this);
     }
 }
@@ -2,25 +2,493 @@ package de.hpi.swa.trufflesqueak.model;
 
 import java.util.Arrays;
 
+import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.interop.TruffleObject;
 
 import de.hpi.swa.trufflesqueak.SqueakImageContext;
 
+/**
+ * Lists keep their elements in a storage strategy instead of always boxing them into an Object[].
+ * A list starts out empty or all nil and specializes to an int[], long[], double[] or char[] on the
+ * first store, as long as it only holds SmallIntegers, Floats or Characters. Nil is encoded as a
+ * reserved value of the primitive array, storing that value itself or any other object generalizes
+ * the list to an Object[]. Lists never go back to a more specific storage.
+ */
 public class ListObject extends AbstractPointersObject implements TruffleObject {
+    public enum StorageType {
+        EMPTY,
+        NIL,
+        INT,
+        LONG,
+        DOUBLE,
+        CHAR,
+        OBJECT
+    }
+
+    public static final int INT_NIL = Integer.MIN_VALUE;
+    public static final long LONG_NIL = Long.MIN_VALUE;
+    public static final long DOUBLE_NIL_BITS = 0x7ff8dead00000000L;
+    public static final double DOUBLE_NIL = Double.longBitsToDouble(DOUBLE_NIL_BITS);
+    public static final char CHAR_NIL = Character.MAX_VALUE;
+
+    private StorageType storageType;
+    private Object storage;
+    private int nilSize;
+    private ClassObject methodDictOwner;
+
     public ListObject(SqueakImageContext img) {
         super(img);
     }
 
+    /**
+     * Uses the array as generic storage, so changes to it stay visible in the list.
+     */
     public ListObject(SqueakImageContext img, ClassObject klass, Object[] objects) {
-        super(img, klass, objects);
+        super(img, klass);
+        setObjectStorage(objects);
     }
 
     public ListObject(SqueakImageContext image, ClassObject classObject, int size) {
-        super(image, classObject, size);
+        super(image, classObject);
+        setNilStorage(size);
+    }
+
+    private ListObject(ListObject original) {
+        super(original.image, original.getSqClass());
+        storageType = original.storageType;
+        nilSize = original.nilSize;
+        storage = copyOf(original.storage);
+    }
+
+    /**
+     * Method dictionaries and their method arrays tell the class they belong to about every change,
+     * so that lookups of the affected selectors can be invalidated.
+     */
+    void setMethodDictOwner(ClassObject owner) {
+        // only the generic storage notifies the owner, the typed accessors store directly
+        generalize();
+        methodDictOwner = owner;
+    }
+
+    public boolean hasMethodDictOwner() {
+        return methodDictOwner != null;
+    }
+
+    @Override
+    public void fillinPointers(Object[] ptrs) {
+        StorageType type = storageTypeFor(ptrs);
+        if (type == StorageType.EMPTY || type == StorageType.NIL) {
+            setNilStorage(ptrs.length);
+        } else if (type == StorageType.OBJECT) {
+            setObjectStorage(ptrs);
+        } else {
+            storageType = type;
+            storage = newStorage(type, ptrs.length);
+            for (int i = 0; i < ptrs.length; i++) {
+                atputTyped(i, ptrs[i]);
+            }
+        }
+    }
+
+    public StorageType getStorageType() {
+        return storageType;
+    }
+
+    public boolean isIntStorage() {
+        return storageType == StorageType.INT;
+    }
+
+    public boolean isLongStorage() {
+        return storageType == StorageType.LONG;
+    }
+
+    public boolean isDoubleStorage() {
+        return storageType == StorageType.DOUBLE;
+    }
+
+    public boolean isCharStorage() {
+        return storageType == StorageType.CHAR;
+    }
+
+    public boolean isObjectStorage() {
+        return storageType == StorageType.OBJECT;
+    }
+
+    public int[] getIntStorage() {
+        return (int[]) storage;
+    }
+
+    public long[] getLongStorage() {
+        return (long[]) storage;
+    }
+
+    public double[] getDoubleStorage() {
+        return (double[]) storage;
+    }
+
+    public char[] getCharStorage() {
+        return (char[]) storage;
+    }
+
+    public Object[] getObjectStorage() {
+        return (Object[]) storage;
+    }
+
+    @Override
+    public Object at0(int idx) {
+        switch (storageType) {
+            case EMPTY:
+            case NIL:
+                checkNilIndex(idx);
+                return null;
+            case INT:
+                return intAt0(idx);
+            case LONG:
+                return longAt0(idx);
+            case DOUBLE:
+                return doubleAt0(idx);
+            case CHAR:
+                return charAt0(idx);
+            default:
+                return getObjectStorage()[idx];
+        }
+    }
+
+    public Object intAt0(int idx) {
+        int value = getIntStorage()[idx];
+        return value == INT_NIL ? null : value;
+    }
+
+    public Object longAt0(int idx) {
+        long value = getLongStorage()[idx];
+        if (value == LONG_NIL) {
+            return null;
+        }
+        // SmallIntegers that fit are always represented as int
+        int intValue = (int) value;
+        return intValue == value ? (Object) intValue : (Object) value;
+    }
+
+    public Object doubleAt0(int idx) {
+        double value = getDoubleStorage()[idx];
+        return Double.doubleToRawLongBits(value) == DOUBLE_NIL_BITS ? null : value;
+    }
+
+    public Object charAt0(int idx) {
+        char value = getCharStorage()[idx];
+        return value == CHAR_NIL ? null : value;
+    }
+
+    @Override
+    public void atput0(int idx, Object obj) {
+        if (methodDictOwner == null) {
+            setStorageAt(idx, obj);
+        } else {
+            Object oldValue = at0(idx);
+            setStorageAt(idx, obj);
+            methodDictOwner.methodDictChanged(this, idx, oldValue);
+        }
+    }
+
+    public void intAtPut0(int idx, int value) {
+        if (value == INT_NIL) {
+            atput0(idx, value);
+        } else {
+            getIntStorage()[idx] = value;
+        }
+    }
+
+    public void longAtPut0(int idx, long value) {
+        if (value == LONG_NIL) {
+            atput0(idx, value);
+        } else {
+            getLongStorage()[idx] = value;
+        }
+    }
+
+    public void doubleAtPut0(int idx, double value) {
+        if (Double.doubleToRawLongBits(value) == DOUBLE_NIL_BITS) {
+            atput0(idx, value);
+        } else {
+            getDoubleStorage()[idx] = value;
+        }
+    }
+
+    public void charAtPut0(int idx, char value) {
+        if (value == CHAR_NIL) {
+            atput0(idx, value);
+        } else {
+            getCharStorage()[idx] = value;
+        }
+    }
+
+    private void setStorageAt(int idx, Object obj) {
+        if (storageType == StorageType.OBJECT) {
+            getObjectStorage()[idx] = obj;
+        } else if (storageType == StorageType.EMPTY || storageType == StorageType.NIL) {
+            checkNilIndex(idx);
+            if (obj != null) {
+                CompilerDirectives.transferToInterpreter();
+                storageType = storageTypeFor(obj);
+                storage = newStorage(storageType, nilSize);
+                setStorageAt(idx, obj);
+            }
+        } else if (!atputTyped(idx, obj)) {
+            CompilerDirectives.transferToInterpreter();
+            if (storageType == StorageType.INT && (obj instanceof Integer || obj instanceof Long && (long) obj != LONG_NIL)) {
+                // an int[] can only overflow into a long[]
+                toLongStorage();
+                getLongStorage()[idx] = ((Number) obj).longValue();
+            } else {
+                generalize();
+                getObjectStorage()[idx] = obj;
+            }
+        }
+    }
+
+    /**
+     * Stores the object into the typed storage if it can be represented there.
+     */
+    private boolean atputTyped(int idx, Object obj) {
+        switch (storageType) {
+            case INT:
+                if (obj == null) {
+                    getIntStorage()[idx] = INT_NIL;
+                    return true;
+                } else if (obj instanceof Integer && (int) obj != INT_NIL) {
+                    getIntStorage()[idx] = (int) obj;
+                    return true;
+                }
+                return false;
+            case LONG:
+                if (obj == null) {
+                    getLongStorage()[idx] = LONG_NIL;
+                    return true;
+                } else if (obj instanceof Integer) {
+                    getLongStorage()[idx] = (int) obj;
+                    return true;
+                } else if (obj instanceof Long && (long) obj != LONG_NIL) {
+                    getLongStorage()[idx] = (long) obj;
+                    return true;
+                }
+                return false;
+            case DOUBLE:
+                if (obj == null) {
+                    getDoubleStorage()[idx] = DOUBLE_NIL;
+                    return true;
+                } else if (obj instanceof Double && Double.doubleToRawLongBits((double) obj) != DOUBLE_NIL_BITS) {
+                    getDoubleStorage()[idx] = (double) obj;
+                    return true;
+                }
+                return false;
+            case CHAR:
+                if (obj == null) {
+                    getCharStorage()[idx] = CHAR_NIL;
+                    return true;
+                } else if (obj instanceof Character && (char) obj != CHAR_NIL) {
+                    getCharStorage()[idx] = (char) obj;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void checkNilIndex(int idx) {
+        if (idx < 0 || idx >= nilSize) {
+            throw new ArrayIndexOutOfBoundsException(idx);
+        }
+    }
+
+    private void setNilStorage(int size) {
+        storageType = size == 0 ? StorageType.EMPTY : StorageType.NIL;
+        storage = null;
+        nilSize = size;
+    }
+
+    private void setObjectStorage(Object[] objects) {
+        storageType = StorageType.OBJECT;
+        storage = objects;
+        nilSize = 0;
+    }
+
+    private void toLongStorage() {
+        int[] ints = getIntStorage();
+        long[] longs = new long[ints.length];
+        for (int i = 0; i < ints.length; i++) {
+            longs[i] = ints[i] == INT_NIL ? LONG_NIL : ints[i];
+        }
+        storageType = StorageType.LONG;
+        storage = longs;
+    }
+
+    /**
+     * Switches to generic storage, which can hold any object.
+     */
+    private void generalize() {
+        if (storageType != null && storageType != StorageType.OBJECT) {
+            setObjectStorage(getPointers());
+        }
+    }
+
+    private static StorageType storageTypeFor(Object[] objects) {
+        StorageType type = objects.length == 0 ? StorageType.EMPTY : StorageType.NIL;
+        for (Object obj : objects) {
+            if (obj == null) {
+                continue;
+            }
+            StorageType objType = storageTypeFor(obj);
+            if (type == StorageType.NIL || type == objType) {
+                type = objType;
+            } else if (type == StorageType.INT && objType == StorageType.LONG || type == StorageType.LONG && objType == StorageType.INT) {
+                type = StorageType.LONG;
+            } else {
+                return StorageType.OBJECT;
+            }
+        }
+        return type;
+    }
+
+    private static StorageType storageTypeFor(Object obj) {
+        if (obj instanceof Integer) {
+            return (int) obj == INT_NIL ? StorageType.LONG : StorageType.INT;
+        } else if (obj instanceof Long) {
+            return (long) obj == LONG_NIL ? StorageType.OBJECT : StorageType.LONG;
+        } else if (obj instanceof Double) {
+            return Double.doubleToRawLongBits((double) obj) == DOUBLE_NIL_BITS ? StorageType.OBJECT : StorageType.DOUBLE;
+        } else if (obj instanceof Character) {
+            return (char) obj == CHAR_NIL ? StorageType.OBJECT : StorageType.CHAR;
+        }
+        return StorageType.OBJECT;
+    }
+
+    private static Object newStorage(StorageType type, int size) {
+        switch (type) {
+            case INT:
+                int[] ints = new int[size];
+                Arrays.fill(ints, INT_NIL);
+                return ints;
+            case LONG:
+                long[] longs = new long[size];
+                Arrays.fill(longs, LONG_NIL);
+                return longs;
+            case DOUBLE:
+                double[] doubles = new double[size];
+                Arrays.fill(doubles, DOUBLE_NIL);
+                return doubles;
+            case CHAR:
+                char[] chars = new char[size];
+                Arrays.fill(chars, CHAR_NIL);
+                return chars;
+            default:
+                return new Object[size];
+        }
+    }
+
+    private static Object copyOf(Object array) {
+        if (array instanceof int[]) {
+            return ((int[]) array).clone();
+        } else if (array instanceof long[]) {
+            return ((long[]) array).clone();
+        } else if (array instanceof double[]) {
+            return ((double[]) array).clone();
+        } else if (array instanceof char[]) {
+            return ((char[]) array).clone();
+        } else if (array instanceof Object[]) {
+            return ((Object[]) array).clone();
+        }
+        return array;
+    }
+
+    @Override
+    public int size() {
+        switch (storageType) {
+            case EMPTY:
+            case NIL:
+                return nilSize;
+            case INT:
+                return getIntStorage().length;
+            case LONG:
+                return getLongStorage().length;
+            case DOUBLE:
+                return getDoubleStorage().length;
+            case CHAR:
+                return getCharStorage().length;
+            default:
+                return getObjectStorage().length;
+        }
+    }
+
+    /**
+     * Returns the elements as objects. Unless the list uses generic storage, this is a copy, so
+     * changes have to go through {@link #atput0(int, Object)}.
+     */
+    @Override
+    public Object[] getPointers() {
+        if (storageType == null) {
+            return null;
+        } else if (storageType == StorageType.OBJECT) {
+            return getObjectStorage();
+        }
+        Object[] objects = new Object[size()];
+        if (storageType != StorageType.EMPTY && storageType != StorageType.NIL) {
+            for (int i = 0; i < objects.length; i++) {
+                objects[i] = at0(i);
+            }
+        }
+        return objects;
+    }
+
+    @Override
+    protected void swapPointers(AbstractPointersObject other) {
+        if (other instanceof ListObject) {
+            ListObject otherList = (ListObject) other;
+            StorageType otherType = otherList.storageType;
+            Object otherStorage = otherList.storage;
+            int otherNilSize = otherList.nilSize;
+            otherList.storageType = storageType;
+            otherList.storage = storage;
+            otherList.nilSize = nilSize;
+            storageType = otherType;
+            storage = otherStorage;
+            nilSize = otherNilSize;
+            if (otherList.methodDictOwner != null) {
+                otherList.generalize();
+            }
+            if (methodDictOwner != null) {
+                generalize();
+            }
+        } else {
+            super.swapPointers(other);
+        }
+    }
+
+    @Override
+    protected void setPointers(Object[] ptrs) {
+        fillinPointers(ptrs);
+        if (methodDictOwner != null) {
+            generalize();
+        }
+    }
+
+    @Override
+    public boolean become(BaseSqueakObject other) {
+        if (super.become(other)) {
+            // growing a method dictionary swaps it with a larger copy
+            if (methodDictOwner != null) {
+                methodDictOwner.methodDictReplaced();
+            }
+            if (other instanceof ListObject && ((ListObject) other).methodDictOwner != null) {
+                ((ListObject) other).methodDictOwner.methodDictReplaced();
+            }
+            return true;
+        }
+        return false;
     }
 
     @Override
     public BaseSqueakObject shallowCopy() {
-        return new ListObject(image, getSqClass(), getPointers().clone());
+        return new ListObject(this);
     }
 }
@@ -0,0 +1,86 @@
+package de.hpi.swa.trufflesqueak.model;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+
+/**
+ * VM-wide method cache for sends whose inline caches went megamorphic, keyed by (class, selector)
+ * like the method cache of the classic Smalltalk interpreter. The table has a fixed size and is read
+ * and written without locks: entries are immutable, and a racing write at worst replaces another
+ * valid entry. Every entry records the epoch it was looked up in, so flushing the whole cache is a
+ * single increment of the epoch. The cache is flushed whenever a method lookup assumption of any
+ * class is invalidated.
+ */
+public final class MethodCache {
+    private static final int SIZE = 4096;
+    private static final int MASK = SIZE - 1;
+
+    private final Entry[] entries = new Entry[SIZE];
+    private final AtomicInteger epoch = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    private static final class Entry {
+        private final ClassObject sqClass;
+        private final Object selector;
+        private final Object method;
+        private final int epoch;
+
+        Entry(ClassObject sqClass, Object selector, Object method, int epoch) {
+            this.sqClass = sqClass;
+            this.selector = selector;
+            this.method = method;
+            this.epoch = epoch;
+        }
+    }
+
+    @TruffleBoundary
+    public Object lookup(ClassObject sqClass, Object selector) {
+        int index = indexOf(sqClass, selector);
+        // read the epoch before looking up, so a concurrent flush also discards this result
+        int currentEpoch = epoch.get();
+        Entry entry = entries[index];
+        if (entry != null && entry.epoch == currentEpoch && entry.sqClass == sqClass && entry.selector == selector) {
+            hits.increment();
+            return entry.method;
+        }
+        misses.increment();
+        Object method = sqClass.lookup(selector);
+        entries[index] = new Entry(sqClass, selector, method, currentEpoch);
+        return method;
+    }
+
+    public void flush() {
+        epoch.incrementAndGet();
+        flushes.increment();
+    }
+
+    private static int indexOf(ClassObject sqClass, Object selector) {
+        int hash = System.identityHashCode(sqClass) * 31 + System.identityHashCode(selector);
+        return (hash ^ (hash >>> 12)) & MASK;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    @TruffleBoundary
+    public void printStatistics(PrintWriter output) {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        double hitRate = total == 0 ? 0 : hitCount * 100.0 / total;
+        output.println(String.format("Method cache: %d lookups, %.2f%% hits, %d flushes", total, hitRate, getFlushes()));
+    }
+}
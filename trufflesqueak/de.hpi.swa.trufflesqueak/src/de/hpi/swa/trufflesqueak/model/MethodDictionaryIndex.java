@@ -0,0 +1,76 @@
+package de.hpi.swa.trufflesqueak.model;
+
+import java.util.Objects;
+
+import com.oracle.truffle.api.Assumption;
+
+/**
+ * Open-addressing index from selectors to slots of a class's own MethodDictionary, hashed by the
+ * selector's identity hash. The index only stores slot positions, methods are always read from the
+ * dictionary itself, so replacing a method in place needs no rebuild. Adding or removing selectors
+ * changes the tally, growing the dictionary replaces its arrays, and both are noticed by
+ * {@link #isValidFor(ListObject)}.
+ */
+final class MethodDictionaryIndex {
+    static final int NOT_FOUND = -1;
+
+    private final ListObject methodDict;
+    private final Object values;
+    private final Object tally;
+    private final int dictSize;
+    private final Assumption methodLookupStable;
+    private final Object[] selectors;
+    private final int[] slots;
+    private final int mask;
+
+    MethodDictionaryIndex(ListObject methodDict, int firstSelectorIndex, int valuesIndex, Assumption methodLookupStable) {
+        this.methodDict = methodDict;
+        this.values = methodDict.at0(valuesIndex);
+        this.tally = methodDict.at0(0);
+        this.dictSize = methodDict.size();
+        this.methodLookupStable = methodLookupStable;
+        int capacity = Integer.highestOneBit(Math.max(dictSize - firstSelectorIndex, 1)) * 4;
+        this.selectors = new Object[capacity];
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        for (int i = firstSelectorIndex; i < dictSize; i++) {
+            Object selector = methodDict.at0(i);
+            if (selector instanceof BaseSqueakObject) {
+                int probe = hash(selector) & mask;
+                while (selectors[probe] != null) {
+                    probe = (probe + 1) & mask;
+                }
+                selectors[probe] = selector;
+                slots[probe] = i;
+            }
+        }
+    }
+
+    boolean isValidFor(ListObject dict) {
+        return dict == methodDict && methodLookupStable.isValid() && dict.size() == dictSize &&
+                        Objects.equals(dict.at0(0), tally) && dict.at0(ClassObject.METHODDICT_VALUES_INDEX) == values;
+    }
+
+    /**
+     * Returns the dictionary slot of the selector, or {@link #NOT_FOUND}.
+     */
+    int slotOf(Object selector) {
+        if (!(selector instanceof BaseSqueakObject)) {
+            return NOT_FOUND;
+        }
+        int probe = hash(selector) & mask;
+        Object candidate;
+        while ((candidate = selectors[probe]) != null) {
+            if (candidate == selector) {
+                return slots[probe];
+            }
+            probe = (probe + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    private static int hash(Object selector) {
+        // identity hashes have 22 bits, spread them over the whole table
+        return ((BaseSqueakObject) selector).squeakHash() * 0x9E3779B9 >>> 10;
+    }
+}
@@ -2,7 +2,6 @@ package de.hpi.swa.trufflesqueak.model;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.CharBuffer;
 
 import com.oracle.truffle.api.interop.ForeignAccess;
 import com.oracle.truffle.api.interop.TruffleObject;
@@ -10,8 +9,13 @@ import com.oracle.truffle.api.interop.TruffleObject;
 import de.hpi.swa.trufflesqueak.SqueakImageContext;
 import de.hpi.swa.trufflesqueak.util.Chunk;
 
+/**
+ * Byte and word objects keep their elements in a byte[], short[], int[] or long[], depending on
+ * the element size, so that element accesses are plain array accesses. The byte representation
+ * used when loading and saving lays out the elements in native byte order, like in VM memory.
+ */
 public class NativeObject extends SqueakObject implements TruffleObject {
-    private ByteBuffer content;
+    private Object storage;
     private byte elementSize;
 
     public NativeObject(SqueakImageContext img, byte elementSz) {
@@ -32,41 +36,61 @@ public class NativeObject extends SqueakObject implements TruffleObject {
     private NativeObject(NativeObject original) {
         this(original.image, original.elementSize);
         setSqClass(original.getSqClass());
-        setBytes(original.getBytes());
-        elementSize = original.elementSize;
+        storage = copyOf(original.storage);
     }
 
     public NativeObject(SqueakImageContext img, ClassObject klass, byte[] bytes) {
-        this(img, klass, bytes.length, 1);
-        content.rewind();
-        content.put(bytes);
+        super(img, klass);
+        setBytes(bytes.clone());
     }
 
     public void setBytes(byte[] bytes) {
-        content = ByteBuffer.allocate(bytes.length);
-        content.order(ByteOrder.nativeOrder());
-        content.put(bytes);
+        storage = bytes;
         elementSize = 1;
     }
 
     public void setWords(int[] words) {
-        content = ByteBuffer.allocate(words.length * 4);
-        content.asIntBuffer().put(words);
+        storage = words;
         elementSize = 4;
     }
 
     @Override
     public void fillin(Chunk chunk) {
         super.fillin(chunk);
-        byte[] bytes = chunk.getBytes();
-        content = ByteBuffer.allocate(bytes.length);
-        content.put(bytes);
-        elementSize = chunk.getElementSize();
+        fillinBytes(chunk.getBytes(), chunk.getElementSize());
+    }
+
+    public void fillinBytes(byte[] bytes, byte elementSz) {
+        elementSize = elementSz;
+        if (elementSz == 1) {
+            storage = bytes;
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder());
+        switch (elementSz) {
+            case 2:
+                short[] shorts = new short[bytes.length / 2];
+                buffer.asShortBuffer().get(shorts);
+                storage = shorts;
+                break;
+            case 4:
+                int[] ints = new int[bytes.length / 4];
+                buffer.asIntBuffer().get(ints);
+                storage = ints;
+                break;
+            case 8:
+                long[] longs = new long[bytes.length / 8];
+                buffer.asLongBuffer().get(longs);
+                storage = longs;
+                break;
+            default:
+                throw new RuntimeException("invalid native object size");
+        }
     }
 
     @Override
     public String toString() {
-        return new String(content.array());
+        return new String(getBytes());
     }
 
     public ForeignAccess getForeignAccess() {
@@ -88,16 +112,58 @@ public class NativeObject extends SqueakObject implements TruffleObject {
         setNativeAt0(index, value);
     }
 
+    public boolean isByteStorage() {
+        return elementSize == 1;
+    }
+
+    public boolean isShortStorage() {
+        return elementSize == 2;
+    }
+
+    public boolean isIntStorage() {
+        return elementSize == 4;
+    }
+
+    public boolean isLongStorage() {
+        return elementSize == 8;
+    }
+
+    /**
+     * Returns the backing array, whose type is determined by the element size.
+     */
+    public Object getStorage() {
+        return storage;
+    }
+
+    public byte[] getByteStorage() {
+        return (byte[]) storage;
+    }
+
+    public short[] getShortStorage() {
+        return (short[]) storage;
+    }
+
+    public int[] getIntStorage() {
+        return (int[]) storage;
+    }
+
+    public long[] getLongStorage() {
+        return (long[]) storage;
+    }
+
+    /**
+     * Elements are unsigned, except for 64-bit elements, which do not fit into a long otherwise.
+     */
     public long getNativeAt0(int index) {
         switch (elementSize) {
             case 1:
-                return content.get(index) & 0xFF;
+                return getByteStorage()[index] & 0xFF;
             case 2:
-                return content.asShortBuffer().get(index) & 0xFFFF;
+                return getShortStorage()[index] & 0xFFFF;
             case 4:
-                return content.asIntBuffer().get(index) & 0xFFFFFFFF;
+                return getIntStorage()[index] & 0xFFFFFFFFL;
             case 8:
-                return content.asLongBuffer().get(index);
+                return getLongStorage()[index];
             default:
                 throw new RuntimeException("invalid native object size");
         }
@@ -106,16 +172,16 @@ public class NativeObject extends SqueakObject implements TruffleObject {
     public void setNativeAt0(int index, long value) {
         switch (elementSize) {
             case 1:
-                content.put(index, (byte) value);
+                getByteStorage()[index] = (byte) value;
                 break;
             case 2:
-                content.asShortBuffer().put(index, (short) value);
+                getShortStorage()[index] = (short) value;
                 break;
             case 4:
-                content.asIntBuffer().put(index, (int) value);
+                getIntStorage()[index] = (int) value;
                 break;
             case 8:
-                content.asLongBuffer().put(index, value);
+                getLongStorage()[index] = value;
                 break;
             default:
                 throw new RuntimeException("invalid native object size");
@@ -126,9 +192,13 @@ public class NativeObject extends SqueakObject implements TruffleObject {
     public boolean become(BaseSqueakObject other) {
         if (other instanceof NativeObject) {
             if (super.become(other)) {
-                ByteBuffer content2 = ((NativeObject) other).content;
-                ((NativeObject) other).content = this.content;
-                this.content = content2;
+                NativeObject otherNative = (NativeObject) other;
+                Object storage2 = otherNative.storage;
+                byte elementSize2 = otherNative.elementSize;
+                otherNative.storage = this.storage;
+                otherNative.elementSize = this.elementSize;
+                this.storage = storage2;
+                this.elementSize = elementSize2;
                 return true;
             }
         }
@@ -137,7 +207,18 @@ public class NativeObject extends SqueakObject implements TruffleObject {
 
     @Override
     public int size() {
-        return content.limit() / elementSize;
+        switch (elementSize) {
+            case 1:
+                return getByteStorage().length;
+            case 2:
+                return getShortStorage().length;
+            case 4:
+                return getIntStorage().length;
+            case 8:
+                return getLongStorage().length;
+            default:
+                throw new RuntimeException("invalid native object size");
+        }
     }
 
     @Override
@@ -145,18 +226,48 @@ public class NativeObject extends SqueakObject implements TruffleObject {
         return 0;
     }
 
+    /**
+     * Returns the elements as bytes in native byte order. For byte objects these are the contents
+     * themselves, for word objects a copy.
+     */
     public byte[] getBytes() {
-        return content.array();
-    }
-
-    public CharBuffer getCharBuffer() {
-        return content.asCharBuffer();
+        if (elementSize == 1) {
+            return getByteStorage();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size() * elementSize).order(ByteOrder.nativeOrder());
+        switch (elementSize) {
+            case 2:
+                buffer.asShortBuffer().put(getShortStorage());
+                break;
+            case 4:
+                buffer.asIntBuffer().put(getIntStorage());
+                break;
+            case 8:
+                buffer.asLongBuffer().put(getLongStorage());
+                break;
+            default:
+                throw new RuntimeException("invalid native object size");
+        }
+        return buffer.array();
     }
 
     public byte getElementSize() {
         return elementSize;
     }
 
+    private static Object copyOf(Object array) {
+        if (array instanceof byte[]) {
+            return ((byte[]) array).clone();
+        } else if (array instanceof short[]) {
+            return ((short[]) array).clone();
+        } else if (array instanceof int[]) {
+            return ((int[]) array).clone();
+        } else if (array instanceof long[]) {
+            return ((long[]) array).clone();
+        }
+        return array;
+    }
+
     @Override
     public BaseSqueakObject shallowCopy() {
         return new NativeObject(this);
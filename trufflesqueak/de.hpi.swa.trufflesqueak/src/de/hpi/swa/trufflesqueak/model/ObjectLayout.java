@@ -0,0 +1,208 @@
+package de.hpi.swa.trufflesqueak.model;
+
+import java.util.Arrays;
+
+import com.oracle.truffle.api.Assumption;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.Truffle;
+
+/**
+ * The shape of the instances of a class with fixed fields. Each instance variable has a kind, which
+ * only ever gets more general: a variable that only held nil so far needs no storage, SmallIntegers
+ * and Floats are kept unboxed in the primitive fields of the object, everything else in its object
+ * fields. Storing a value that does not fit the kind of its variable replaces the layout of the
+ * class with a more general one and invalidates the old layout, so instances still using it migrate
+ * the next time they are accessed.
+ *
+ * Layouts are immutable, so nodes that cached one read and write instance variables with the kind
+ * and location folded into constants.
+ */
+public final class ObjectLayout {
+    public enum SlotKind {
+        NIL,
+        LONG,
+        DOUBLE,
+        OBJECT
+    }
+
+    public static final long LONG_NIL = Long.MIN_VALUE;
+    public static final long DOUBLE_NIL_BITS = 0x7ff8dead00000000L;
+
+    @CompilationFinal(dimensions = 1) private final SlotKind[] kinds;
+    @CompilationFinal(dimensions = 1) private final int[] locations;
+    private final int numObjects;
+    private final int numPrimitives;
+    private final Assumption valid;
+
+    private ObjectLayout(SlotKind[] kinds) {
+        this.kinds = kinds;
+        this.locations = new int[kinds.length];
+        int objects = 0;
+        int primitives = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case LONG:
+                case DOUBLE:
+                    locations[i] = primitives++;
+                    break;
+                case OBJECT:
+                    locations[i] = objects++;
+                    break;
+                default:
+                    locations[i] = -1;
+                    break;
+            }
+        }
+        this.numObjects = objects;
+        this.numPrimitives = primitives;
+        this.valid = Truffle.getRuntime().createAssumption("Object layout");
+    }
+
+    /**
+     * The layout of new instances of a class, before any of their variables has been assigned.
+     */
+    public static ObjectLayout initial(int numSlots) {
+        SlotKind[] kinds = new SlotKind[numSlots];
+        Arrays.fill(kinds, SlotKind.NIL);
+        return new ObjectLayout(kinds);
+    }
+
+    /**
+     * A layout that can hold any value. It is used for objects whose size does not match their
+     * class and never changes.
+     */
+    public static ObjectLayout generic(int numSlots) {
+        SlotKind[] kinds = new SlotKind[numSlots];
+        Arrays.fill(kinds, SlotKind.OBJECT);
+        return new ObjectLayout(kinds);
+    }
+
+    public Assumption getValid() {
+        return valid;
+    }
+
+    public boolean isValid() {
+        return valid.isValid();
+    }
+
+    public int getNumSlots() {
+        return kinds.length;
+    }
+
+    int getNumObjects() {
+        return numObjects;
+    }
+
+    int getNumPrimitives() {
+        return numPrimitives;
+    }
+
+    public SlotKind getKind(int index) {
+        return kinds[index];
+    }
+
+    public int getLocation(int index) {
+        return locations[index];
+    }
+
+    public boolean isLong(int index) {
+        return kinds[index] == SlotKind.LONG;
+    }
+
+    public boolean isDouble(int index) {
+        return kinds[index] == SlotKind.DOUBLE;
+    }
+
+    public boolean isObject(int index) {
+        return kinds[index] == SlotKind.OBJECT;
+    }
+
+    public boolean accepts(int index, Object value) {
+        return kindFor(kinds[index], value) == kinds[index];
+    }
+
+    public Object read(PointersObject object, int index) {
+        switch (kinds[index]) {
+            case NIL:
+                return null;
+            case LONG:
+                long value = object.getPrimitives()[locations[index]];
+                if (value == LONG_NIL) {
+                    return null;
+                }
+                // SmallIntegers that fit are always represented as int
+                int intValue = (int) value;
+                return intValue == value ? (Object) intValue : (Object) value;
+            case DOUBLE:
+                long bits = object.getPrimitives()[locations[index]];
+                return bits == DOUBLE_NIL_BITS ? null : (Object) Double.longBitsToDouble(bits);
+            default:
+                return object.getObjects()[locations[index]];
+        }
+    }
+
+    /**
+     * Stores a value that this layout {@link #accepts(int, Object)}.
+     */
+    public void write(PointersObject object, int index, Object value) {
+        switch (kinds[index]) {
+            case NIL:
+                assert value == null;
+                break;
+            case LONG:
+                object.getPrimitives()[locations[index]] = value == null ? LONG_NIL : ((Number) value).longValue();
+                break;
+            case DOUBLE:
+                object.getPrimitives()[locations[index]] = value == null ? DOUBLE_NIL_BITS : Double.doubleToRawLongBits((double) value);
+                break;
+            default:
+                object.getObjects()[locations[index]] = value;
+                break;
+        }
+    }
+
+    /**
+     * Stores into a variable of kind long, the value must not be {@link #LONG_NIL}.
+     */
+    public void writeLong(PointersObject object, int index, long value) {
+        object.getPrimitives()[locations[index]] = value;
+    }
+
+    /**
+     * Stores into a variable of kind double, the value must not have the bits of nil.
+     */
+    public void writeDouble(PointersObject object, int index, double value) {
+        object.getPrimitives()[locations[index]] = Double.doubleToRawLongBits(value);
+    }
+
+    public void writeObject(PointersObject object, int index, Object value) {
+        object.getObjects()[locations[index]] = value;
+    }
+
+    /**
+     * Returns the layout that also accepts the value in the variable, and invalidates this one.
+     */
+    ObjectLayout generalize(int index, Object value) {
+        SlotKind[] newKinds = kinds.clone();
+        newKinds[index] = kindFor(kinds[index], value);
+        valid.invalidate();
+        return new ObjectLayout(newKinds);
+    }
+
+    private static SlotKind kindFor(SlotKind kind, Object value) {
+        if (kind == SlotKind.OBJECT) {
+            return SlotKind.OBJECT;
+        } else if (value == null) {
+            return kind;
+        }
+        SlotKind valueKind;
+        if (value instanceof Integer || value instanceof Long && (long) value != LONG_NIL) {
+            valueKind = SlotKind.LONG;
+        } else if (value instanceof Double && Double.doubleToRawLongBits((double) value) != DOUBLE_NIL_BITS) {
+            valueKind = SlotKind.DOUBLE;
+        } else {
+            valueKind = SlotKind.OBJECT;
+        }
+        return kind == SlotKind.NIL || kind == valueKind ? valueKind : SlotKind.OBJECT;
+    }
+}
@@ -1,10 +1,22 @@
 package de.hpi.swa.trufflesqueak.model;
 
+import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.interop.TruffleObject;
 
 import de.hpi.swa.trufflesqueak.SqueakImageContext;
 
+/**
+ * Objects with fixed fields are laid out according to the {@link ObjectLayout} of their class. Until
+ * an object is accessed for the first time, for example while the image is loaded and the classes
+ * are not filled in yet, all of its fields are kept in the pointers array. Afterwards the pointers
+ * array only holds the fields of kind object, SmallIntegers and Floats are stored in the primitives
+ * array. New instances start out with the current layout of their class, so the field accesses they
+ * meet are already cached for that layout.
+ */
 public class PointersObject extends AbstractPointersObject implements TruffleObject {
+    private ObjectLayout layout;
+    private long[] primitives;
+
     public PointersObject(SqueakImageContext img) {
         super(img);
     }
@@ -15,10 +27,163 @@ public class PointersObject extends AbstractPointersObject implements TruffleObj
 
     public PointersObject(SqueakImageContext image, ClassObject classObject, int size) {
         super(image, classObject, size);
+        layOutEmpty(size);
+    }
+
+    private PointersObject(PointersObject original) {
+        super(original.image, original.getSqClass(), original.pointers.clone());
+        layout = original.layout;
+        primitives = original.primitives == null ? null : original.primitives.clone();
+    }
+
+    @Override
+    public void fillinPointers(Object[] ptrs) {
+        pointers = ptrs;
+        layout = null;
+        primitives = null;
+    }
+
+    @Override
+    protected void setPointers(Object[] ptrs) {
+        fillinPointers(ptrs);
+    }
+
+    /**
+     * Returns the layout the object currently uses, which may be null or outdated.
+     */
+    public ObjectLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Migrates the object to the current layout of its class, if necessary, and returns it.
+     */
+    public ObjectLayout getUpdatedLayout() {
+        if (layout == null || !layout.isValid()) {
+            CompilerDirectives.transferToInterpreter();
+            layOut(getPointers());
+        }
+        return layout;
+    }
+
+    Object[] getObjects() {
+        return pointers;
+    }
+
+    long[] getPrimitives() {
+        return primitives;
+    }
+
+    @Override
+    public Object at0(int i) {
+        return getUpdatedLayout().read(this, i);
+    }
+
+    @Override
+    public void atput0(int i, Object obj) {
+        ObjectLayout currentLayout = getUpdatedLayout();
+        if (currentLayout.accepts(i, obj)) {
+            currentLayout.write(this, i, obj);
+        } else {
+            CompilerDirectives.transferToInterpreter();
+            Object[] values = getPointers();
+            values[i] = obj;
+            layOut(values);
+        }
+    }
+
+    @Override
+    public int size() {
+        return layout == null ? pointers.length : layout.getNumSlots();
+    }
+
+    /**
+     * Returns the fields as objects. Once the object has been laid out, this is a copy, so changes
+     * have to go through {@link #atput0(int, Object)}.
+     */
+    @Override
+    public Object[] getPointers() {
+        if (layout == null) {
+            return pointers;
+        }
+        Object[] values = new Object[layout.getNumSlots()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = layout.read(this, i);
+        }
+        return values;
+    }
+
+    /**
+     * Stores the values with the current layout of the class, generalizing it until it can hold all
+     * of them.
+     */
+    private void layOut(Object[] values) {
+        ObjectLayout newLayout = currentLayoutFor(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (!newLayout.accepts(i, values[i])) {
+                newLayout = generalizeLayout(newLayout, i, values[i]);
+            }
+        }
+        layout = newLayout;
+        pointers = new Object[newLayout.getNumObjects()];
+        primitives = newLayout.getNumPrimitives() == 0 ? null : new long[newLayout.getNumPrimitives()];
+        for (int i = 0; i < values.length; i++) {
+            newLayout.write(this, i, values[i]);
+        }
+    }
+
+    /**
+     * Like {@link #layOut(Object[])} for an object whose fields are all nil.
+     */
+    private void layOutEmpty(int numSlots) {
+        ObjectLayout newLayout = currentLayoutFor(numSlots);
+        layout = newLayout;
+        if (newLayout.getNumObjects() != pointers.length) {
+            pointers = new Object[newLayout.getNumObjects()];
+        }
+        if (newLayout.getNumPrimitives() > 0) {
+            primitives = new long[newLayout.getNumPrimitives()];
+            for (int i = 0; i < numSlots; i++) {
+                newLayout.write(this, i, null);
+            }
+        }
+    }
+
+    private ObjectLayout currentLayoutFor(int numSlots) {
+        ClassObject sqClass = getSqClass();
+        ObjectLayout classLayout = sqClass == null ? null : sqClass.getInstanceLayout(numSlots);
+        return classLayout == null ? ObjectLayout.generic(numSlots) : classLayout;
+    }
+
+    private ObjectLayout generalizeLayout(ObjectLayout oldLayout, int index, Object value) {
+        ClassObject sqClass = getSqClass();
+        if (sqClass != null && sqClass.getInstanceLayout(oldLayout.getNumSlots()) == oldLayout) {
+            return sqClass.generalizeInstanceLayout(index, value);
+        }
+        // the object no longer shares the layout of its class
+        return ObjectLayout.generic(oldLayout.getNumSlots());
+    }
+
+    @Override
+    protected void swapPointers(AbstractPointersObject other) {
+        if (other instanceof PointersObject) {
+            PointersObject otherObject = (PointersObject) other;
+            Object[] otherPointers = otherObject.pointers;
+            ObjectLayout otherLayout = otherObject.layout;
+            long[] otherPrimitives = otherObject.primitives;
+            otherObject.pointers = pointers;
+            otherObject.layout = layout;
+            otherObject.primitives = primitives;
+            pointers = otherPointers;
+            layout = otherLayout;
+            primitives = otherPrimitives;
+        } else {
+            super.swapPointers(other);
+        }
     }
 
     @Override
     public BaseSqueakObject shallowCopy() {
-        return new PointersObject(image, getSqClass(), getPointers().clone());
+        return new PointersObject(this);
     }
 }
@@ -24,6 +24,14 @@ public abstract class SqueakObject extends BaseSqueakObject {
         sqClass = chunk.getSqClass();
     }
 
+    /**
+     * Fill in the header of an object that is restored from a snapshot rather than an image chunk.
+     */
+    public void fillinHeader(int squeakHash, ClassObject klass) {
+        hash = squeakHash;
+        sqClass = klass;
+    }
+
     @Override
     public ClassObject getSqClass() {
         return sqClass;
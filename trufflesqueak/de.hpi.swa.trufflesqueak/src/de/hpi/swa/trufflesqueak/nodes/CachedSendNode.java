@@ -0,0 +1,117 @@
+package de.hpi.swa.trufflesqueak.nodes;
+
+import com.oracle.truffle.api.Assumption;
+import com.oracle.truffle.api.RootCallTarget;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.DirectCallNode;
+import com.oracle.truffle.api.nodes.IndirectCallNode;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.api.nodes.UnexpectedResultException;
+
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+import de.hpi.swa.trufflesqueak.model.SqueakObject;
+import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNode;
+import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNodeGen;
+import de.hpi.swa.trufflesqueak.nodes.primitives.QuickReturn;
+
+/**
+ * Inline cache for a send with a constant selector. Each cache entry checks the receiver class and
+ * holds the call node of the method found for it, so a send that hits the cache does a single class
+ * check before the call instead of going through the lookup and dispatch caches. Objects carry their
+ * class in a field, all other receivers are resolved through the lookup class node, which folds the
+ * class of immediate values such as SmallIntegers into a constant. Cached methods that only answer a
+ * constant or a receiver variable are evaluated in place without a call.
+ */
+public abstract class CachedSendNode extends Node {
+    protected final Object selector;
+    protected final int cacheLimit;
+    @Child protected SqueakLookupClassNode lookupClassNode;
+
+    protected CachedSendNode(CompiledCodeObject method, Object selector) {
+        this.selector = selector;
+        this.cacheLimit = method.image.config.getPicDepth();
+        this.lookupClassNode = SqueakLookupClassNodeGen.create(method);
+    }
+
+    public static CachedSendNode create(CompiledCodeObject method, Object selector) {
+        return CachedSendNodeGen.create(method, selector);
+    }
+
+    /**
+     * @param arguments the receiver followed by the arguments of the send
+     */
+    public abstract Object executeSend(Object receiver, Object[] arguments);
+
+    @SuppressWarnings("unused")
+    @Specialization(limit = "cacheLimit", guards = {"receiver.getSqClass() == cachedClass"}, assumptions = {"methodLookupStable", "selectorLookupStable",
+                    "callTargetStable"})
+    protected Object doObject(SqueakObject receiver, Object[] arguments,
+                    @Cached("receiver.getSqClass()") ClassObject cachedClass,
+                    @Cached("cachedClass.getMethodLookupStable()") Assumption methodLookupStable,
+                    @Cached("cachedClass.getMethodLookupStable(selector)") Assumption selectorLookupStable,
+                    @Cached("lookupMethod(cachedClass)") CompiledCodeObject cachedMethod,
+                    @Cached("cachedMethod.getCallTarget()") RootCallTarget cachedTarget,
+                    @Cached("cachedMethod.getCallTargetStable()") Assumption callTargetStable,
+                    @Cached("create(cachedTarget)") DirectCallNode callNode,
+                    @Cached("quickReturnOf(cachedMethod)") QuickReturn quickReturn) {
+        if (quickReturn != null) {
+            return quickReturn.returnValue(receiver);
+        }
+        return callNode.call(arguments);
+    }
+
+    @SuppressWarnings("unused")
+    @Specialization(limit = "cacheLimit", guards = {"!isSqueakObject(receiver)", "lookupClass(receiver) == cachedClass"}, assumptions = {"methodLookupStable",
+                    "selectorLookupStable", "callTargetStable"})
+    protected Object doOther(Object receiver, Object[] arguments,
+                    @Cached("lookupClass(receiver)") ClassObject cachedClass,
+                    @Cached("cachedClass.getMethodLookupStable()") Assumption methodLookupStable,
+                    @Cached("cachedClass.getMethodLookupStable(selector)") Assumption selectorLookupStable,
+                    @Cached("lookupMethod(cachedClass)") CompiledCodeObject cachedMethod,
+                    @Cached("cachedMethod.getCallTarget()") RootCallTarget cachedTarget,
+                    @Cached("cachedMethod.getCallTargetStable()") Assumption callTargetStable,
+                    @Cached("create(cachedTarget)") DirectCallNode callNode,
+                    @Cached("quickReturnOf(cachedMethod)") QuickReturn quickReturn) {
+        if (quickReturn != null) {
+            return quickReturn.returnValue(receiver);
+        }
+        return callNode.call(arguments);
+    }
+
+    @Specialization(replaces = {"doObject", "doOther"})
+    protected Object doIndirect(Object receiver, Object[] arguments,
+                    @Cached("create()") IndirectCallNode callNode) {
+        ClassObject sqClass = lookupClass(receiver);
+        Object method = sqClass.image.methodCache.lookup(sqClass, selector);
+        return callNode.call(asMethod(method).getCallTarget(), arguments);
+    }
+
+    protected static boolean isSqueakObject(Object receiver) {
+        return receiver instanceof SqueakObject;
+    }
+
+    protected ClassObject lookupClass(Object receiver) {
+        try {
+            return SqueakTypesGen.expectClassObject(lookupClassNode.executeLookup(receiver));
+        } catch (UnexpectedResultException e) {
+            throw new RuntimeException("receiver has no class");
+        }
+    }
+
+    protected CompiledCodeObject lookupMethod(ClassObject sqClass) {
+        return asMethod(sqClass.lookup(selector));
+    }
+
+    protected static QuickReturn quickReturnOf(CompiledCodeObject method) {
+        return QuickReturn.forMethod(method);
+    }
+
+    private static CompiledCodeObject asMethod(Object method) {
+        if (method instanceof CompiledCodeObject) {
+            return (CompiledCodeObject) method;
+        }
+        throw new RuntimeException("failed to lookup generic selector object on generic class");
+    }
+}
@@ -0,0 +1,115 @@
+package de.hpi.swa.trufflesqueak.nodes;
+
+import com.oracle.truffle.api.Assumption;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.RootCallTarget;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Fallback;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.DirectCallNode;
+import com.oracle.truffle.api.nodes.IndirectCallNode;
+import com.oracle.truffle.api.nodes.Node;
+
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNode;
+import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNodeGen;
+import de.hpi.swa.trufflesqueak.nodes.primitives.QuickReturn;
+
+/**
+ * Super send cache. The method a super send finds only depends on the class the sending method was
+ * compiled in and on the selector, never on the receiver, so it is looked up once and called
+ * directly without any class check. The compiled-in class is fixed for the lifetime of this node,
+ * because changing the method's literals replaces its AST. The entry is dropped when the superclass
+ * chain of the compiled-in class changes or when a superclass changes its method for the selector.
+ * If the lookup finds no method, e.g. because the compiled-in class has no superclass, every send
+ * looks the selector up again and sends doesNotUnderstand: to the receiver while it is not found.
+ */
+public abstract class CachedSuperSendNode extends Node {
+    protected final CompiledCodeObject method;
+    protected final Object selector;
+    @Child protected SqueakLookupClassNode lookupClassNode;
+    @Child private IndirectCallNode indirectCallNode = IndirectCallNode.create();
+
+    protected CachedSuperSendNode(CompiledCodeObject method, Object selector) {
+        this.method = method;
+        this.selector = selector;
+        this.lookupClassNode = SqueakLookupClassNodeGen.create(method);
+    }
+
+    public static CachedSuperSendNode create(CompiledCodeObject method, Object selector) {
+        return CachedSuperSendNodeGen.create(method, selector);
+    }
+
+    /**
+     * @param arguments the receiver followed by the arguments of the send
+     */
+    public abstract Object executeSend(Object[] arguments);
+
+    @SuppressWarnings("unused")
+    @Specialization(guards = "cachedMethod != null", assumptions = {"methodLookupStable", "selectorLookupStable", "callTargetStable"})
+    protected Object doCached(Object[] arguments,
+                    @Cached("method.getCompiledInClass()") ClassObject compiledInClass,
+                    @Cached("compiledInClass.getMethodLookupStable()") Assumption methodLookupStable,
+                    @Cached("selectorLookupStableOf(compiledInClass)") Assumption selectorLookupStable,
+                    @Cached("lookupMethod(compiledInClass)") CompiledCodeObject cachedMethod,
+                    @Cached("cachedMethod.getCallTarget()") RootCallTarget cachedTarget,
+                    @Cached("cachedMethod.getCallTargetStable()") Assumption callTargetStable,
+                    @Cached("create(cachedTarget)") DirectCallNode callNode,
+                    @Cached("quickReturnOf(cachedMethod)") QuickReturn quickReturn) {
+        if (quickReturn != null) {
+            return quickReturn.returnValue(arguments[0]);
+        }
+        return callNode.call(arguments);
+    }
+
+    @Fallback
+    protected Object doUncached(Object[] arguments) {
+        CompiledCodeObject lookupResult = lookupMethod(method.getCompiledInClass());
+        if (lookupResult == null) {
+            lookupResult = doesNotUnderstandOf(lookupClassNode.executeLookup(arguments[0]));
+        }
+        return indirectCallNode.call(lookupResult.getCallTarget(), arguments);
+    }
+
+    /**
+     * Without a superclass, only a change of the superclass chain can make the lookup succeed.
+     */
+    protected Assumption selectorLookupStableOf(ClassObject compiledInClass) {
+        Object superclass = compiledInClass.getSuperclass();
+        if (superclass instanceof ClassObject) {
+            return ((ClassObject) superclass).getMethodLookupStable(selector);
+        }
+        return compiledInClass.getMethodLookupStable();
+    }
+
+    /**
+     * Answers the method the selector finds in the superclass of the compiled-in class, or null.
+     */
+    protected CompiledCodeObject lookupMethod(ClassObject compiledInClass) {
+        Object superclass = compiledInClass.getSuperclass();
+        if (!(superclass instanceof ClassObject)) {
+            return null;
+        }
+        Object lookupResult = ((ClassObject) superclass).lookup(selector);
+        if (lookupResult instanceof CompiledCodeObject) {
+            return (CompiledCodeObject) lookupResult;
+        }
+        return null;
+    }
+
+    @TruffleBoundary
+    private static CompiledCodeObject doesNotUnderstandOf(Object receiverClass) {
+        if (receiverClass instanceof ClassObject) {
+            Object dnu = ((ClassObject) receiverClass).doesNotUnderstand();
+            if (dnu instanceof CompiledCodeObject) {
+                return (CompiledCodeObject) dnu;
+            }
+        }
+        throw new RuntimeException("doesNotUnderstand missing!");
+    }
+
+    protected static QuickReturn quickReturnOf(CompiledCodeObject cachedMethod) {
+        return QuickReturn.forMethod(cachedMethod);
+    }
+}
@@ -9,19 +9,35 @@ import com.oracle.truffle.api.nodes.DirectCallNode;
 import com.oracle.truffle.api.nodes.IndirectCallNode;
 import com.oracle.truffle.api.nodes.Node;
 
+import de.hpi.swa.trufflesqueak.SqueakImageContext;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.nodes.primitives.QuickReturn;
 
 public abstract class DispatchNode extends Node {
+    protected final int cacheLimit;
+
+    protected DispatchNode(int cacheLimit) {
+        this.cacheLimit = cacheLimit;
+    }
+
+    public static DispatchNode create(SqueakImageContext image) {
+        return DispatchNodeGen.create(image.config.getPicDepth());
+    }
+
     public abstract Object executeDispatch(Object method, Object[] arguments);
 
     @SuppressWarnings("unused")
-    @Specialization(guards = {"method == cachedMethod"}, assumptions = {"callTargetStable"})
+    @Specialization(limit = "cacheLimit", guards = {"method == cachedMethod"}, assumptions = {"callTargetStable"})
     protected static Object doDirect(CompiledMethodObject method, Object[] arguments,
                     @Cached("method") CompiledMethodObject cachedMethod,
                     @Cached("method.getCallTarget()") RootCallTarget cachedTarget,
                     @Cached("method.getCallTargetStable()") Assumption callTargetStable,
-                    @Cached("create(cachedTarget)") DirectCallNode callNode) {
+                    @Cached("create(cachedTarget)") DirectCallNode callNode,
+                    @Cached("quickReturnOf(cachedMethod)") QuickReturn quickReturn) {
+        if (quickReturn != null) {
+            return quickReturn.returnValue(arguments[0]);
+        }
         return callNode.call(arguments);
     }
 
@@ -31,6 +47,10 @@ public abstract class DispatchNode extends Node {
         return callNode.call(method.getCallTarget(), arguments);
     }
 
+    protected static QuickReturn quickReturnOf(CompiledCodeObject method) {
+        return QuickReturn.forMethod(method);
+    }
+
     @SuppressWarnings("unused")
     @Fallback
     protected static Object fail(Object method, Object[] arguments) {
@@ -6,28 +6,38 @@ import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.nodes.Node;
 
+import de.hpi.swa.trufflesqueak.SqueakImageContext;
 import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
 import de.hpi.swa.trufflesqueak.model.ClassObject;
 
 public abstract class LookupNode extends Node {
-    protected static final int LOOKUP_CACHE_SIZE = 3;
+    protected final int cacheLimit;
+
+    protected LookupNode(int cacheLimit) {
+        this.cacheLimit = cacheLimit;
+    }
+
+    public static LookupNode create(SqueakImageContext image) {
+        return LookupNodeGen.create(image.config.getPicDepth());
+    }
 
     public abstract Object executeLookup(Object sqClass, Object selector);
 
     @SuppressWarnings("unused")
-    @Specialization(limit = "LOOKUP_CACHE_SIZE", guards = {"sqClass == cachedSqClass",
-                    "selector == cachedSelector"}, assumptions = {"methodLookupStable"})
+    @Specialization(limit = "cacheLimit", guards = {"sqClass == cachedSqClass",
+                    "selector == cachedSelector"}, assumptions = {"methodLookupStable", "selectorLookupStable"})
     protected static Object doDirect(ClassObject sqClass, BaseSqueakObject selector,
                     @Cached("sqClass") ClassObject cachedSqClass,
                     @Cached("selector") BaseSqueakObject cachedSelector,
                     @Cached("cachedSqClass.getMethodLookupStable()") Assumption methodLookupStable,
+                    @Cached("cachedSqClass.getMethodLookupStable(cachedSelector)") Assumption selectorLookupStable,
                     @Cached("cachedSqClass.lookup(cachedSelector)") Object cachedMethod) {
         return cachedMethod;
     }
 
     @Specialization(replaces = "doDirect")
     protected static Object doIndirect(ClassObject sqClass, BaseSqueakObject selector) {
-        return sqClass.lookup(selector);
+        return sqClass.image.methodCache.lookup(sqClass, selector);
     }
 
     @SuppressWarnings("unused")
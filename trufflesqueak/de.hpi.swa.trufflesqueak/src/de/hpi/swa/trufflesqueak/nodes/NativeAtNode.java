@@ -0,0 +1,38 @@
+package de.hpi.swa.trufflesqueak.nodes;
+
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.Node;
+
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+
+/**
+ * Reads an element of a byte or word object directly from its backing array. Elements are
+ * unsigned, except for 64-bit elements.
+ */
+public abstract class NativeAtNode extends Node {
+    public static NativeAtNode create() {
+        return NativeAtNodeGen.create();
+    }
+
+    public abstract long executeAt(NativeObject receiver, int index);
+
+    @Specialization(guards = "receiver.isByteStorage()")
+    protected static long doBytes(NativeObject receiver, int index) {
+        return receiver.getByteStorage()[index] & 0xFF;
+    }
+
+    @Specialization(guards = "receiver.isShortStorage()")
+    protected static long doShorts(NativeObject receiver, int index) {
+        return receiver.getShortStorage()[index] & 0xFFFF;
+    }
+
+    @Specialization(guards = "receiver.isIntStorage()")
+    protected static long doInts(NativeObject receiver, int index) {
+        return receiver.getIntStorage()[index] & 0xFFFFFFFFL;
+    }
+
+    @Specialization(guards = "receiver.isLongStorage()")
+    protected static long doLongs(NativeObject receiver, int index) {
+        return receiver.getLongStorage()[index];
+    }
+}
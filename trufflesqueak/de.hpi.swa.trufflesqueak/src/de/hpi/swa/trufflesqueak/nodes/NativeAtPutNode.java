@@ -0,0 +1,38 @@
+package de.hpi.swa.trufflesqueak.nodes;
+
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.Node;
+
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+
+/**
+ * Writes an element of a byte or word object directly into its backing array, truncating the
+ * value to the element size.
+ */
+public abstract class NativeAtPutNode extends Node {
+    public static NativeAtPutNode create() {
+        return NativeAtPutNodeGen.create();
+    }
+
+    public abstract void executeAtPut(NativeObject receiver, int index, long value);
+
+    @Specialization(guards = "receiver.isByteStorage()")
+    protected static void doBytes(NativeObject receiver, int index, long value) {
+        receiver.getByteStorage()[index] = (byte) value;
+    }
+
+    @Specialization(guards = "receiver.isShortStorage()")
+    protected static void doShorts(NativeObject receiver, int index, long value) {
+        receiver.getShortStorage()[index] = (short) value;
+    }
+
+    @Specialization(guards = "receiver.isIntStorage()")
+    protected static void doInts(NativeObject receiver, int index, long value) {
+        receiver.getIntStorage()[index] = (int) value;
+    }
+
+    @Specialization(guards = "receiver.isLongStorage()")
+    protected static void doLongs(NativeObject receiver, int index, long value) {
+        receiver.getLongStorage()[index] = value;
+    }
+}
@@ -0,0 +1,103 @@
+package de.hpi.swa.trufflesqueak.nodes;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.IndirectCallNode;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.api.nodes.UnexpectedResultException;
+
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNode;
+import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNodeGen;
+
+/**
+ * Send with a selector that is only known at run time, as done by the perform primitives. Each
+ * selector a site sees gets its own {@link CachedSendNode}, so a perform site behaves like a set of
+ * ordinary send sites, cached by selector and then by receiver class. Sites that see too many
+ * selectors look up through the global method cache. The primitive fails when the number of
+ * arguments does not match the selector.
+ */
+public abstract class PerformNode extends Node {
+    protected final CompiledCodeObject method;
+    protected final int cacheLimit;
+    @Child private SqueakLookupClassNode lookupClassNode;
+
+    protected PerformNode(CompiledCodeObject method) {
+        this.method = method;
+        this.cacheLimit = method.image.config.getPicDepth();
+        this.lookupClassNode = SqueakLookupClassNodeGen.create(method);
+    }
+
+    public static PerformNode create(CompiledCodeObject method) {
+        return PerformNodeGen.create(method);
+    }
+
+    /**
+     * @param arguments the receiver followed by the arguments of the send
+     */
+    public abstract Object executePerform(Object receiver, Object selector, Object[] arguments);
+
+    @SuppressWarnings("unused")
+    @Specialization(limit = "cacheLimit", guards = {"selector == cachedSelector"})
+    protected Object doCached(Object receiver, Object selector, Object[] arguments,
+                    @Cached("selector") Object cachedSelector,
+                    @Cached("numArgsOf(cachedSelector)") int numArgs,
+                    @Cached("createSendNode(cachedSelector)") CachedSendNode sendNode) {
+        if (arguments.length - 1 != numArgs) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        return sendNode.executeSend(receiver, arguments);
+    }
+
+    @Specialization(replaces = "doCached")
+    protected Object doIndirect(Object receiver, Object selector, Object[] arguments,
+                    @Cached("create()") IndirectCallNode callNode) {
+        if (arguments.length - 1 != numArgsOf(selector)) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        ClassObject sqClass;
+        try {
+            sqClass = SqueakTypesGen.expectClassObject(lookupClassNode.executeLookup(receiver));
+        } catch (UnexpectedResultException e) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        Object lookupResult = method.image.methodCache.lookup(sqClass, selector);
+        if (!(lookupResult instanceof CompiledCodeObject)) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        return callNode.call(((CompiledCodeObject) lookupResult).getCallTarget(), arguments);
+    }
+
+    /**
+     * Returns the number of arguments a selector takes, like Symbol>>numArgs, or -1 if the selector
+     * is not a symbol.
+     */
+    @TruffleBoundary
+    public static int numArgsOf(Object selector) {
+        if (!(selector instanceof NativeObject) || !((NativeObject) selector).isByteStorage()) {
+            return -1;
+        }
+        byte[] name = ((NativeObject) selector).getBytes();
+        if (name.length == 0) {
+            return 0;
+        }
+        if (!Character.isLetter(name[0]) && name[0] != '_') {
+            return 1; // binary selector
+        }
+        int numArgs = 0;
+        for (byte b : name) {
+            if (b == ':') {
+                numArgs++;
+            }
+        }
+        return numArgs;
+    }
+
+    protected CachedSendNode createSendNode(Object selector) {
+        return CachedSendNode.create(method, selector);
+    }
+}
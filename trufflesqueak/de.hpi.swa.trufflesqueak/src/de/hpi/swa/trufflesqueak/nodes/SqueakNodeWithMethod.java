@@ -1,5 +1,6 @@
 package de.hpi.swa.trufflesqueak.nodes;
 
+import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.dsl.TypeSystemReference;
 import com.oracle.truffle.api.frame.FrameSlotTypeException;
@@ -13,8 +14,8 @@ import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
  */
 @TypeSystemReference(SqueakTypes.class)
 public abstract class SqueakNodeWithMethod extends SqueakNode {
-    @CompilationFinal SourceSection sourceSection;
     protected final CompiledCodeObject method;
+    @CompilationFinal private SourceSection sourceSection;
 
     public SqueakNodeWithMethod(CompiledCodeObject method2) {
         method = method2;
@@ -33,8 +34,21 @@ public abstract class SqueakNodeWithMethod extends SqueakNode {
         sourceSection = section;
     }
 
+    /**
+     * The method source is only rendered when a section is first requested, which sets the
+     * sections of all nodes in the method's AST.
+     */
     @Override
     public SourceSection getSourceSection() {
+        if (sourceSection == null && method != null) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            method.getSource();
+        }
         return sourceSection;
     }
+
+    protected final boolean hasAvailableSourceSection() {
+        SourceSection section = getSourceSection();
+        return section != null && section.isAvailable();
+    }
 }
@@ -3,9 +3,9 @@ package de.hpi.swa.trufflesqueak.nodes.bytecodes;
 import java.util.List;
 import java.util.Stack;
 
-import com.oracle.truffle.api.dsl.UnsupportedSpecializationException;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.instrumentation.StandardTags.StatementTag;
+import com.oracle.truffle.api.profiles.BranchProfile;
 import com.oracle.truffle.api.source.SourceSection;
 
 import de.hpi.swa.trufflesqueak.exceptions.LocalReturn;
@@ -16,9 +16,12 @@ import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveNodeFactory;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveQuickReturnNode;
+import de.hpi.swa.trufflesqueak.util.Decompiler;
 
 public class CallPrimitiveNode extends SqueakBytecodeNode {
+    public static final Object FAILED = new Object();
     @Child PrimitiveNode primitive;
+    private final BranchProfile failedProfile = BranchProfile.create();
 
     @SuppressWarnings("unused")
     public CallPrimitiveNode(CompiledCodeObject method, int idx, int i, int j) {
@@ -26,16 +29,28 @@ public class CallPrimitiveNode extends SqueakBytecodeNode {
         primitive = PrimitiveNodeFactory.forIdx(method, method.primitiveIndex());
     }
 
+    /**
+     * Runs the primitive and answers its result, or {@link #FAILED} if the method's fallback code
+     * has to run. Primitive methods call this before their bytecodes, so a successful primitive
+     * returns without unwinding.
+     */
+    public Object executePrimitive(VirtualFrame frame) {
+        try {
+            return primitive.executeGeneric(frame);
+        } catch (PrimitiveFailed e) {
+            failedProfile.enter();
+            return FAILED;
+        }
+    }
+
     @Override
     public Object executeGeneric(VirtualFrame frame) {
         assert index == 0;
-        try {
-            throw new LocalReturn(primitive.executeGeneric(frame));
-        } catch (UnsupportedSpecializationException
-                        | PrimitiveFailed
-                        | IndexOutOfBoundsException e) {
+        Object result = executePrimitive(frame);
+        if (result == FAILED) {
             return null;
         }
+        throw new LocalReturn(result);
     }
 
     @Override
@@ -52,23 +67,24 @@ public class CallPrimitiveNode extends SqueakBytecodeNode {
     @Override
     public int interpretOn(Stack<SqueakNode> stack, Stack<SqueakNode> statements, List<SqueakBytecodeNode> sequence) {
         super.interpretOn(stack, statements, sequence);
-        if (index == 0) {
-            for (int i = sequence.indexOf(this) + 1; i < sequence.size(); i++) {
-                SqueakBytecodeNode node = sequence.get(i);
-                if (node != null) {
-                    if (node instanceof ExtendedStoreNode) {
-                        // an error code is requested, we'll handle that
-                        // eventually TODO: FIXME
-                        stack.push(new ConstantNode(method, index,
-                                        method.image.wrap("prim error codes not supported")));
-                        break;
-                    }
-                }
-            }
+        if (index == 0 && Decompiler.decide(sequence, () -> requestsErrorCode(sequence) ? 1 : 0) == 1) {
+            // an error code is requested, we'll handle that
+            // eventually TODO: FIXME
+            stack.push(new ConstantNode(method, index,
+                            method.image.wrap("prim error codes not supported")));
         }
         return sequence.indexOf(this) + 1;
     }
 
+    private boolean requestsErrorCode(List<SqueakBytecodeNode> sequence) {
+        for (int i = sequence.indexOf(this) + 1; i < sequence.size(); i++) {
+            if (sequence.get(i) instanceof ExtendedStoreNode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void accept(PrettyPrintVisitor b) {
         b.visit(primitive);
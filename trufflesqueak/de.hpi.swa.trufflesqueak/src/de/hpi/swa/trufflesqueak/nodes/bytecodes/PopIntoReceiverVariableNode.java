@@ -33,7 +33,7 @@ public class PopIntoReceiverVariableNode extends SqueakBytecodeNode {
     @Override
     protected boolean isTaggedWith(Class<?> tag) {
         if (tag == StandardTags.StatementTag.class) {
-            return getSourceSection().isAvailable();
+            return hasAvailableSourceSection();
         }
         return false;
     }
@@ -34,7 +34,7 @@ public class PopIntoTemporaryVariable extends SqueakBytecodeNode {
     @Override
     protected boolean isTaggedWith(Class<?> tag) {
         if (tag == StandardTags.StatementTag.class) {
-            return getSourceSection().isAvailable();
+            return hasAvailableSourceSection();
         }
         return false;
     }
@@ -55,7 +55,7 @@ public class PushNewArrayNode extends SqueakBytecodeNode {
     @Override
     protected boolean isTaggedWith(Class<?> tag) {
         if (tag == StandardTags.StatementTag.class) {
-            return getSourceSection().isAvailable();
+            return hasAvailableSourceSection();
         }
         return false;
     }
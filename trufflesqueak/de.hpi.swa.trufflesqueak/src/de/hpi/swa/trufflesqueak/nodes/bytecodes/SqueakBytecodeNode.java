@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Stack;
 
 import com.oracle.truffle.api.instrumentation.Instrumentable;
+import com.oracle.truffle.api.source.SourceSection;
 
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
@@ -16,7 +17,6 @@ public abstract class SqueakBytecodeNode extends SqueakNodeWithMethod {
     protected SqueakBytecodeNode(SqueakBytecodeNode original) {
         super(original.method);
         index = original.index;
-        setSourceSection(original.getSourceSection());
     }
 
     public SqueakBytecodeNode(CompiledCodeObject method, int idx) {
@@ -24,6 +24,25 @@ public abstract class SqueakBytecodeNode extends SqueakNodeWithMethod {
         index = idx;
     }
 
+    @Override
+    public void setSourceSection(SourceSection section) {
+        super.setSourceSection(section);
+        method.setSourceSection(index, section);
+    }
+
+    /**
+     * Copies of this node made before the method source was rendered, e.g. after splitting, don't
+     * get a section of their own and fall back to the one recorded for their bytecode index.
+     */
+    @Override
+    public SourceSection getSourceSection() {
+        SourceSection section = super.getSourceSection();
+        if (section == null) {
+            return method.getSourceSection(index);
+        }
+        return section;
+    }
+
     @SuppressWarnings("unused")
     public void interpretOn(Stack<SqueakNode> stack, Stack<SqueakNode> sequence) {
         throw new RuntimeException("my subclass should implement interpretOn");
@@ -27,7 +27,7 @@ public class StoreRemoteTempNode extends RemoteTempBytecodeNode {
     @Override
     protected boolean isTaggedWith(Class<?> tag) {
         if (tag == StandardTags.StatementTag.class) {
-            return getSourceSection().isAvailable();
+            return hasAvailableSourceSection();
         }
         return false;
     }
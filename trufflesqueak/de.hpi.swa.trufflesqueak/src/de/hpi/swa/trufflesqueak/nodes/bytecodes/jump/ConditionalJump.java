@@ -2,7 +2,6 @@ package de.hpi.swa.trufflesqueak.nodes.bytecodes.jump;
 
 import java.util.List;
 import java.util.Stack;
-import java.util.Vector;
 
 import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.frame.VirtualFrame;
@@ -16,6 +15,11 @@ import de.hpi.swa.trufflesqueak.nodes.bytecodes.jump.LoopRepeatingNode.WhileNode
 import de.hpi.swa.trufflesqueak.util.Decompiler;
 
 public class ConditionalJump extends AbstractJump {
+    // how a conditional jump decompiles, see interpretOn
+    private static final int IF_THEN = 0;
+    private static final int LOOP = 1;
+    private static final int IF_NIL = 2;
+
     protected final int offset;
     public final boolean isIfTrue;
 
@@ -106,18 +110,28 @@ public class ConditionalJump extends AbstractJump {
 
     @Override
     public int interpretOn(Stack<SqueakNode> stack, Stack<SqueakNode> statements, List<SqueakBytecodeNode> sequence) {
+        switch (Decompiler.decide(sequence, () -> jumpKind(stack, sequence))) {
+            case LOOP:
+                return interpretAsLoop(stack, statements, sequence);
+            case IF_NIL:
+                return interpretAsIfNil(stack, sequence);
+            default:
+                return interpretAsIfTrueIfFalse(stack, statements, sequence);
+        }
+    }
+
+    private int jumpKind(Stack<SqueakNode> stack, List<SqueakBytecodeNode> sequence) {
         if (isLoop(sequence)) {
-            return interpretAsLoop(stack, statements, sequence);
+            return LOOP;
         } else if (isIfNil(stack)) {
-            return interpretAsIfNil(stack, sequence);
+            return IF_NIL;
         } else {
-            return interpretAsIfTrueIfFalse(stack, statements, sequence);
+            return IF_THEN;
         }
     }
 
     private int interpretAsIfNil(Stack<SqueakNode> stack, List<SqueakBytecodeNode> sequence) {
-        Vector<SqueakBytecodeNode> thenBranchNodes = new Vector<>(sequence.subList(firstBranchBC(sequence),
-                        lastBranchBC(sequence) + 1));
+        List<SqueakBytecodeNode> thenBranchNodes = sequence.subList(firstBranchBC(sequence), lastBranchBC(sequence) + 1);
         Stack<SqueakNode> subStack = new Stack<>();
         SqueakNode[] thenStatements = Decompiler.blockFrom(thenBranchNodes, subStack);
         SqueakNode thenResult = subStack.empty() ? null : subStack.pop();
@@ -133,17 +147,16 @@ public class ConditionalJump extends AbstractJump {
         SqueakNode branchCondition = branchCondition(stack);
 
         // the nodes making up our branch
-        Vector<SqueakBytecodeNode> thenBranchNodes = new Vector<>(sequence.subList(firstBranchBC(sequence),
-                        lastBranchBC(sequence) + 1));
-        Vector<SqueakBytecodeNode> elseBranchNodes = null;
+        List<SqueakBytecodeNode> thenBranchNodes = sequence.subList(firstBranchBC(sequence), lastBranchBC(sequence) + 1);
+        List<SqueakBytecodeNode> elseBranchNodes = null;
 
         SqueakBytecodeNode lastNode = thenBranchNodes.get(thenBranchNodes.size() - 1);
-        if (lastNode instanceof UnconditionalJump && ((UnconditionalJump) lastNode).offset > 0) {
-            // else branch
-            thenBranchNodes.remove(lastNode);
+        if (Decompiler.decide(sequence, () -> isJumpOverElseBranch(lastNode) ? 1 : 0) == 1) {
+            // else branch, drop the jump over it from the then branch
+            thenBranchNodes = thenBranchNodes.subList(0, thenBranchNodes.size() - 1);
             int firstElseBranchBC = firstBranchBC(sequence) + offset;
             skip = firstElseBranchBC + ((UnconditionalJump) lastNode).offset;
-            elseBranchNodes = new Vector<>(sequence.subList(firstElseBranchBC, skip));
+            elseBranchNodes = sequence.subList(firstElseBranchBC, skip);
         }
         Stack<SqueakNode> subStack = new Stack<>();
         SqueakNode[] thenStatements = Decompiler.blockFrom(thenBranchNodes, subStack);
@@ -165,6 +178,11 @@ public class ConditionalJump extends AbstractJump {
         return skip;
     }
 
+    @SuppressWarnings("static-method")
+    private boolean isJumpOverElseBranch(SqueakBytecodeNode lastNode) {
+        return lastNode instanceof UnconditionalJump && ((UnconditionalJump) lastNode).offset > 0;
+    }
+
     private SqueakNode branchCondition(Stack<SqueakNode> stack) {
         SqueakNode branchCondition;
         if (isIfTrue) {
@@ -11,12 +11,10 @@ import com.oracle.truffle.api.nodes.ExplodeLoop;
 import com.oracle.truffle.api.nodes.UnexpectedResultException;
 
 import de.hpi.swa.trufflesqueak.instrumentation.PrettyPrintVisitor;
+import de.hpi.swa.trufflesqueak.instrumentation.SendStatistics;
 import de.hpi.swa.trufflesqueak.model.ClassObject;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
-import de.hpi.swa.trufflesqueak.nodes.DispatchNode;
-import de.hpi.swa.trufflesqueak.nodes.DispatchNodeGen;
-import de.hpi.swa.trufflesqueak.nodes.LookupNode;
-import de.hpi.swa.trufflesqueak.nodes.LookupNodeGen;
+import de.hpi.swa.trufflesqueak.nodes.CachedSendNode;
 import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
 import de.hpi.swa.trufflesqueak.nodes.SqueakTypesGen;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.DupNode;
@@ -25,22 +23,31 @@ import de.hpi.swa.trufflesqueak.nodes.bytecodes.jump.ConditionalJump;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.jump.IfNilCheck;
 import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNode;
 import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNodeGen;
+import de.hpi.swa.trufflesqueak.util.Decompiler;
 
 public abstract class AbstractSend extends SqueakBytecodeNode {
+    // how a send decompiles, see interpretOn
+    private static final int PLAIN_SEND = 0;
+    private static final int CASE_MACRO = 1;
+    private static final int IF_NIL = 2;
+    private static final int IF_NOT_NIL = 3;
+    private static final int CASCADE = 4;
+    private static final int LAST_CASCADE = 5;
+
     public final Object selector;
     @Child public SqueakNode receiverNode;
     @Child protected SqueakLookupClassNode lookupClassNode;
     @Children public final SqueakNode[] argumentNodes;
-    @Child private LookupNode lookupNode;
-    @Child private DispatchNode dispatchNode;
+    @Child private CachedSendNode sendNode;
+    private final SendStatistics.Site statistics;
 
     public AbstractSend(CompiledCodeObject method, int idx, Object sel, int argcount) {
         super(method, idx);
         selector = sel;
         argumentNodes = new SqueakNode[argcount];
         lookupClassNode = SqueakLookupClassNodeGen.create(method);
-        dispatchNode = DispatchNodeGen.create();
-        lookupNode = LookupNodeGen.create();
+        sendNode = CachedSendNode.create(method, selector);
+        statistics = registerStatistics();
     }
 
     protected AbstractSend(CompiledCodeObject method, int idx, Object sel, SqueakNode[] argNodes) {
@@ -48,8 +55,13 @@ public abstract class AbstractSend extends SqueakBytecodeNode {
         selector = sel;
         argumentNodes = argNodes;
         lookupClassNode = SqueakLookupClassNodeGen.create(method);
-        dispatchNode = DispatchNodeGen.create();
-        lookupNode = LookupNodeGen.create();
+        sendNode = CachedSendNode.create(method, selector);
+        statistics = registerStatistics();
+    }
+
+    private SendStatistics.Site registerStatistics() {
+        SendStatistics sendStatistics = method.image.sendStatistics;
+        return sendStatistics == null ? null : sendStatistics.register(selector, method, index);
     }
 
     @Override
@@ -61,21 +73,35 @@ public abstract class AbstractSend extends SqueakBytecodeNode {
 
     @ExplodeLoop
     public Object executeSend(VirtualFrame frame, Object receiver) {
-        ClassObject rcvrClass;
-        try {
-            rcvrClass = SqueakTypesGen.expectClassObject(lookupClassNode.executeLookup(receiver));
-        } catch (UnexpectedResultException e) {
-            throw new RuntimeException("receiver has no class");
-        }
         CompilerAsserts.compilationConstant(argumentNodes.length);
         Object[] arguments = new Object[argumentNodes.length + 1];
         arguments[0] = receiver;
         for (int i = 0; i < argumentNodes.length; i++) {
             arguments[i + 1] = argumentNodes[i].executeGeneric(frame);
         }
-        CompilerAsserts.compilationConstant(argumentNodes.length);
-        Object lookupResult = lookupNode.executeLookup(rcvrClass, selector);
-        return dispatchNode.executeDispatch(lookupResult, arguments);
+        return send(receiver, arguments);
+    }
+
+    /**
+     * @param arguments the receiver followed by the evaluated arguments
+     */
+    protected final Object send(Object receiver, Object[] arguments) {
+        if (statistics != null) {
+            statistics.record(lookupClass(receiver));
+        }
+        return dispatchSend(receiver, arguments);
+    }
+
+    protected Object dispatchSend(Object receiver, Object[] arguments) {
+        return sendNode.executeSend(receiver, arguments);
+    }
+
+    protected ClassObject lookupClass(Object receiver) {
+        try {
+            return SqueakTypesGen.expectClassObject(lookupClassNode.executeLookup(receiver));
+        } catch (UnexpectedResultException e) {
+            throw new RuntimeException("receiver has no class");
+        }
     }
 
     @SuppressWarnings("static-method")
@@ -113,28 +139,46 @@ public abstract class AbstractSend extends SqueakBytecodeNode {
         return false;
     }
 
+    private int sendKind(Stack<SqueakNode> stack, List<SqueakBytecodeNode> sequence) {
+        if (isCaseMacro(receiverNode, sequence)) {
+            return CASE_MACRO;
+        } else if (isIfNil(receiverNode, sequence)) {
+            return IF_NIL;
+        } else if (isIfNotNil(receiverNode, sequence)) {
+            return IF_NOT_NIL;
+        } else if (mayBeCascade(receiverNode)) {
+            // unless we're the last cascade message, the cascade flag is still on the stack
+            return isCascadeFlag(stack.peek()) ? CASCADE : LAST_CASCADE;
+        } else {
+            return PLAIN_SEND;
+        }
+    }
+
     @Override
     public int interpretOn(Stack<SqueakNode> stack, Stack<SqueakNode> statements, List<SqueakBytecodeNode> sequence) {
         for (int i = argumentNodes.length - 1; i >= 0; i--) {
             argumentNodes[i] = stack.pop();
         }
         receiverNode = stack.pop();
-        if (isCaseMacro(receiverNode, sequence)) {
-            statements.push(argumentNodes[0]);
-            stack.push(receiverNode); // restore cascade flag
-        } else if (isIfNil(receiverNode, sequence)) {
-            stack.pop(); // remove duplicate cascade flag
-            receiverNode = stack.pop();
-            stack.push(new IfNilCheck(method, receiverNode, true));
-        } else if (isIfNotNil(receiverNode, sequence)) {
-            stack.pop(); // remove duplicate cascade flag
-            receiverNode = stack.pop();
-            stack.push(new IfNilCheck(method, receiverNode, false));
-        } else if (mayBeCascade(receiverNode)) {
-            if (isCascadeFlag(stack.peek())) {
-                // we're not the last cascade message
+        switch (Decompiler.decide(sequence, () -> sendKind(stack, sequence))) {
+            case CASE_MACRO:
+                statements.push(argumentNodes[0]);
+                stack.push(receiverNode); // restore cascade flag
+                break;
+            case IF_NIL:
+                stack.pop(); // remove duplicate cascade flag
+                receiverNode = stack.pop();
+                stack.push(new IfNilCheck(method, receiverNode, true));
+                break;
+            case IF_NOT_NIL:
+                stack.pop(); // remove duplicate cascade flag
+                receiverNode = stack.pop();
+                stack.push(new IfNilCheck(method, receiverNode, false));
+                break;
+            case CASCADE:
                 stack.push(this);
-            } else {
+                break;
+            case LAST_CASCADE:
                 int preCascadeStatementIdx = ((DupNode) receiverNode).getStatementsIdx();
                 List<SqueakNode> cascadedSends = new Vector<>(statements.subList(preCascadeStatementIdx,
                                 statements.size()));
@@ -146,9 +190,9 @@ public abstract class AbstractSend extends SqueakBytecodeNode {
                                 selector,
                                 argumentNodes,
                                 cascadedSends.toArray(new SqueakNode[0])));
-            }
-        } else {
-            interpretOn(stack, statements);
+                break;
+            default:
+                interpretOn(stack, statements);
         }
         return sequence.indexOf(this) + 1;
     }
@@ -165,6 +209,6 @@ public abstract class AbstractSend extends SqueakBytecodeNode {
 
     @Override
     protected boolean isTaggedWith(Class<?> tag) {
-        return ((tag == StandardTags.StatementTag.class) || (tag == StandardTags.CallTag.class)) && getSourceSection().isAvailable();
+        return ((tag == StandardTags.StatementTag.class) || (tag == StandardTags.CallTag.class)) && hasAvailableSourceSection();
     }
 }
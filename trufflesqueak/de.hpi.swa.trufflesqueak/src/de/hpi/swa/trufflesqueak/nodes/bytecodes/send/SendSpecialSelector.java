@@ -0,0 +1,53 @@
+package de.hpi.swa.trufflesqueak.nodes.bytecodes.send;
+
+import java.math.BigInteger;
+
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.profiles.BranchProfile;
+
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
+import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+import de.hpi.swa.trufflesqueak.model.LargeInteger;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveNodeFactory;
+
+/**
+ * Send of an arithmetic or comparison special selector. The primitive the receiver's method would
+ * run is tried inline first, using the same specializations, and a real send only happens when the
+ * primitive fails, e.g. because the operands have other types or the result overflows. Except for
+ * ==, the primitive is only tried for numbers, other receivers go straight to a send instead of
+ * failing the primitive on every execution.
+ */
+public class SendSpecialSelector extends SendSelector {
+    private static final int EQUIVALENT_PRIMITIVE = 110;
+
+    @Child private PrimitiveBinaryOperation primitive;
+    private final boolean inlineForAllReceivers;
+    private final BranchProfile sendProfile = BranchProfile.create();
+
+    public SendSpecialSelector(CompiledCodeObject cm, int idx, BaseSqueakObject sel, int primitiveIdx) {
+        super(cm, idx, sel, 1);
+        primitive = PrimitiveNodeFactory.forSpecialSelector(cm.getMethod(), primitiveIdx);
+        // only == is answered by a primitive for objects that are not numbers (points, fractions, ...)
+        inlineForAllReceivers = primitiveIdx == EQUIVALENT_PRIMITIVE;
+    }
+
+    @Override
+    public Object executeSend(VirtualFrame frame, Object receiver) {
+        Object argument = argumentNodes[0].executeGeneric(frame);
+        if (primitive != null && (inlineForAllReceivers || isNumber(receiver))) {
+            try {
+                return primitive.executeWithArguments(frame, receiver, argument);
+            } catch (PrimitiveFailed e) {
+                // fall through to a real send
+            }
+        }
+        sendProfile.enter();
+        return send(receiver, new Object[]{receiver, argument});
+    }
+
+    private static boolean isNumber(Object receiver) {
+        return receiver instanceof Integer || receiver instanceof Long || receiver instanceof Double || receiver instanceof BigInteger || receiver instanceof LargeInteger;
+    }
+}
@@ -3,6 +3,7 @@ package de.hpi.swa.trufflesqueak.nodes.bytecodes.send;
 import java.util.Stack;
 
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+import de.hpi.swa.trufflesqueak.nodes.CachedSuperSendNode;
 import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
 import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNode;
 
@@ -18,13 +19,22 @@ public class SingleExtendedSuperNode extends AbstractSend {
         }
     }
 
+    @Child private CachedSuperSendNode superSendNode;
+
     public SingleExtendedSuperNode(CompiledCodeObject method, int idx, int selectorLiteralIdx, int numArgs) {
         super(method, idx, method.getLiteral(selectorLiteralIdx), numArgs);
+        superSendNode = CachedSuperSendNode.create(method, selector);
+    }
+
+    @Override
+    protected Object dispatchSend(Object receiver, Object[] arguments) {
+        return superSendNode.executeSend(arguments);
     }
 
     @Override
     public void interpretOn(Stack<SqueakNode> stack, Stack<SqueakNode> sequence) {
         super.interpretOn(stack, sequence);
+        // only used to attribute send statistics to the class the lookup starts in
         lookupClassNode = new SqueakLookupClassSuperNode(method);
     }
 }
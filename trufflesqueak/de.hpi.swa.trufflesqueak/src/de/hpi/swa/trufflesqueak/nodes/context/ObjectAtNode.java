@@ -1,11 +1,14 @@
 package de.hpi.swa.trufflesqueak.nodes.context;
 
+import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.NodeChild;
 import com.oracle.truffle.api.dsl.NodeChildren;
 import com.oracle.truffle.api.dsl.Specialization;
 
 import de.hpi.swa.trufflesqueak.instrumentation.PrettyPrintVisitor;
 import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
+import de.hpi.swa.trufflesqueak.model.ObjectLayout;
+import de.hpi.swa.trufflesqueak.model.PointersObject;
 import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
 
 @NodeChildren({@NodeChild(value = "objectNode", type = SqueakNode.class)})
@@ -16,6 +19,12 @@ public abstract class ObjectAtNode extends SqueakNode {
         index = variableIndex;
     }
 
+    @Specialization(guards = "object.getLayout() == cachedLayout", assumptions = "cachedLayout.getValid()", limit = "3")
+    protected Object readPointers(PointersObject object,
+                    @Cached("object.getUpdatedLayout()") ObjectLayout cachedLayout) {
+        return cachedLayout.read(object, index);
+    }
+
     @Specialization
     protected Object readObject(BaseSqueakObject object) {
         return object.at0(index);
@@ -2,6 +2,7 @@ package de.hpi.swa.trufflesqueak.nodes.context;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.NodeChild;
 import com.oracle.truffle.api.dsl.NodeChildren;
 import com.oracle.truffle.api.dsl.Specialization;
@@ -10,6 +11,9 @@ import de.hpi.swa.trufflesqueak.instrumentation.PrettyPrintVisitor;
 import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.model.ObjectLayout;
+import de.hpi.swa.trufflesqueak.model.PointersObject;
+import de.hpi.swa.trufflesqueak.nodes.NativeAtPutNode;
 import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
 import de.hpi.swa.trufflesqueak.nodes.SqueakNodeWithMethod;
 
@@ -28,8 +32,37 @@ public abstract class ObjectAtPutNode extends SqueakNodeWithMethod {
     }
 
     @Specialization
-    protected Object write(NativeObject object, int value) {
-        object.setNativeAt0(index, value);
+    protected Object write(NativeObject object, int value,
+                    @Cached("create()") NativeAtPutNode atPutNode) {
+        atPutNode.executeAtPut(object, index, value);
+        return value;
+    }
+
+    @Specialization(guards = {"object.getLayout() == cachedLayout", "cachedLayout.isLong(index)"}, assumptions = "cachedLayout.getValid()", limit = "3")
+    protected Object writeInt(PointersObject object, int value,
+                    @Cached("object.getUpdatedLayout()") ObjectLayout cachedLayout) {
+        cachedLayout.writeLong(object, index, value);
+        return value;
+    }
+
+    @Specialization(guards = {"object.getLayout() == cachedLayout", "cachedLayout.isLong(index)", "!isLongNil(value)"}, assumptions = "cachedLayout.getValid()", limit = "3")
+    protected Object writeLong(PointersObject object, long value,
+                    @Cached("object.getUpdatedLayout()") ObjectLayout cachedLayout) {
+        cachedLayout.writeLong(object, index, value);
+        return value;
+    }
+
+    @Specialization(guards = {"object.getLayout() == cachedLayout", "cachedLayout.isDouble(index)", "!isDoubleNil(value)"}, assumptions = "cachedLayout.getValid()", limit = "3")
+    protected Object writeDouble(PointersObject object, double value,
+                    @Cached("object.getUpdatedLayout()") ObjectLayout cachedLayout) {
+        cachedLayout.writeDouble(object, index, value);
+        return value;
+    }
+
+    @Specialization(guards = {"object.getLayout() == cachedLayout", "cachedLayout.isObject(index)", "!isBigInteger(value)"}, assumptions = "cachedLayout.getValid()", limit = "3")
+    protected Object writeObject(PointersObject object, Object value,
+                    @Cached("object.getUpdatedLayout()") ObjectLayout cachedLayout) {
+        cachedLayout.writeObject(object, index, value);
         return value;
     }
 
@@ -57,6 +90,18 @@ public abstract class ObjectAtPutNode extends SqueakNodeWithMethod {
         return value;
     }
 
+    protected static boolean isLongNil(long value) {
+        return value == ObjectLayout.LONG_NIL;
+    }
+
+    protected static boolean isDoubleNil(double value) {
+        return Double.doubleToRawLongBits(value) == ObjectLayout.DOUBLE_NIL_BITS;
+    }
+
+    protected static boolean isBigInteger(Object value) {
+        return value instanceof BigInteger;
+    }
+
     @Override
     public void accept(PrettyPrintVisitor b) {
         b.visit(this);
@@ -2,14 +2,21 @@ package de.hpi.swa.trufflesqueak.nodes.primitives;
 
 import com.oracle.truffle.api.dsl.NodeChild;
 import com.oracle.truffle.api.dsl.NodeChildren;
+import com.oracle.truffle.api.frame.VirtualFrame;
 
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
 
 @NodeChildren({@NodeChild(value = "receiver", type = SqueakNode.class),
                 @NodeChild(value = "argument", type = SqueakNode.class)})
-public class PrimitiveBinaryOperation extends PrimitiveNode {
+public abstract class PrimitiveBinaryOperation extends PrimitiveNode {
     public PrimitiveBinaryOperation(CompiledMethodObject cm) {
         super(cm);
     }
-}
\ No newline at end of file
+
+    /**
+     * Run the primitive on operands that were already evaluated, e.g. by a send site that inlines
+     * the primitive.
+     */
+    public abstract Object executeWithArguments(VirtualFrame frame, Object receiver, Object argument);
+}
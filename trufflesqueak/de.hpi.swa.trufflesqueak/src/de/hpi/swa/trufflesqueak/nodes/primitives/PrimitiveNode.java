@@ -11,6 +11,17 @@ public class PrimitiveNode extends SqueakNodeWithMethod {
         return obj == null;
     }
 
+    /**
+     * Converts a one-based index into a zero-based one, failing the primitive unless it lies within
+     * 1 to size.
+     */
+    protected static int checkIndex(int idx, int size) {
+        if (idx < 1 || idx > size) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        return idx - 1;
+    }
+
     public PrimitiveNode(CompiledMethodObject cm) {
         super(cm);
     }
@@ -20,6 +31,6 @@ public class PrimitiveNode extends SqueakNodeWithMethod {
         if (method.image.config.isVerbose()) {
             System.out.println("Primitive not yet written: " + method.toString());
         }
-        throw new PrimitiveFailed();
+        throw PrimitiveFailed.INSTANCE;
     }
 }
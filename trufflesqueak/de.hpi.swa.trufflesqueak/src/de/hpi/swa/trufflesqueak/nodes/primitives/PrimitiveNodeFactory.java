@@ -29,7 +29,6 @@ import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimClosureValueFactory;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimCompiledCodeAtNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimCompiledCodeAtPutNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimDebugger;
-import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimDigitDivNegativeNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimDivNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimDivideNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimEqualNodeGen;
@@ -46,6 +45,7 @@ import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimGreaterThanNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimIdentityHashNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimIndexAtNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimIndexAtPutNodeGen;
+import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimLargeIntegersFactory;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimLessOrEqualNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimLessThanNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimLogNNodeGen;
@@ -54,9 +54,10 @@ import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimMulNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimNewArgNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimNewNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimNextHandlerContextNodeGen;
-import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimNormalizeNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimNotEqualNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimPerform;
+import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimPerformInSuperclass;
+import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimPerformWithArguments;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimPrintArgs;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimPushFalse;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimPushMinusOne;
@@ -73,6 +74,7 @@ import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimReplaceFromToNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimShallowCopyNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimSinNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimSizeNodeGen;
+import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimSnapshot;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimSquareRootNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimStringAtNodeGen;
 import de.hpi.swa.trufflesqueak.nodes.primitives.impl.PrimStringAtPutNodeGen;
@@ -163,6 +165,11 @@ public abstract class PrimitiveNodeFactory {
         BLOCK_COPY(PrimitiveNode.class, 80),
         //
         PERFORM(PrimPerform.class, 83),
+        PERFORM_WITH_ARGS(PrimPerformWithArguments.class, 84),
+        //
+        SNAPSHOT(PrimSnapshot.class, 97),
+        //
+        PERFORM_IN_SUPERCLASS(PrimPerformInSuperclass.class, 100),
         //
         REPLACE_FROM_TO(PrimReplaceFromToNodeGen.class, 105),
         //
@@ -221,15 +228,23 @@ public abstract class PrimitiveNodeFactory {
     }
 
     public static enum NamedPrimitives {
-        LARGE_ADD(PrimAddNodeGen.class, "LargeIntegers", "primDigitAdd"),
-        LARGE_SUB(PrimSubNodeGen.class, "LargeIntegers", "primDigitSubtract"),
-        LARGE_MUL(PrimMulNodeGen.class, "LargeIntegers", "primDigitMultiplyNegative"),
-        LARGE_DIV(PrimDigitDivNegativeNodeGen.class, "LargeIntegers", "primDigitDivNegative"),
-        LARGE_BIT_AND(PrimBitAndNodeGen.class, "LargeIntegers", "primDigitBitAnd"),
-        LARGE_BIT_OR(PrimBitOrNodeGen.class, "LargeIntegers", "primDigitBitOr"),
-        LARGE_BIT_SHIFT(PrimBitShiftNodeGen.class, "LargeIntegers", "primDigitBitShiftMagnitude"),
-        LARGE_POS_NORMALIZE(PrimNormalizeNodeGen.class, "LargeIntegers", "primNormalizePositive"),
-        LARGE_NEG_NORMALIZE(PrimNormalizeNodeGen.class, "LargeIntegers", "primNormalizeNegative"),
+        LARGE_ADD(PrimLargeIntegersFactory.PrimDigitAddNodeGen.class, "LargeIntegers", "primDigitAdd"),
+        LARGE_SUB(PrimLargeIntegersFactory.PrimDigitSubtractNodeGen.class, "LargeIntegers", "primDigitSubtract"),
+        LARGE_MUL(PrimLargeIntegersFactory.PrimDigitMultiplyNegativeNodeGen.class, "LargeIntegers", "primDigitMultiplyNegative"),
+        LARGE_DIV(PrimLargeIntegersFactory.PrimDigitDivNegativeNodeGen.class, "LargeIntegers", "primDigitDivNegative"),
+        LARGE_BIT_AND(PrimLargeIntegersFactory.PrimDigitBitAndNodeGen.class, "LargeIntegers", "primDigitBitAnd"),
+        LARGE_BIT_OR(PrimLargeIntegersFactory.PrimDigitBitOrNodeGen.class, "LargeIntegers", "primDigitBitOr"),
+        LARGE_BIT_XOR(PrimLargeIntegersFactory.PrimDigitBitXorNodeGen.class, "LargeIntegers", "primDigitBitXor"),
+        LARGE_BIT_SHIFT(PrimLargeIntegersFactory.PrimDigitBitShiftMagnitudeNodeGen.class, "LargeIntegers", "primDigitBitShiftMagnitude"),
+        LARGE_COMPARE(PrimLargeIntegersFactory.PrimDigitCompareNodeGen.class, "LargeIntegers", "primDigitCompare"),
+        LARGE_ANY_BIT(PrimLargeIntegersFactory.PrimAnyBitFromToNodeGen.class, "LargeIntegers", "primAnyBitFromTo"),
+        LARGE_POS_NORMALIZE(PrimLargeIntegersFactory.PrimNormalizeMagnitudeNodeGen.class, "LargeIntegers", "primNormalizePositive"),
+        LARGE_NEG_NORMALIZE(PrimLargeIntegersFactory.PrimNormalizeMagnitudeNodeGen.class, "LargeIntegers", "primNormalizeNegative"),
+        LARGE_MONTGOMERY_TIMES(PrimLargeIntegersFactory.PrimMontgomeryTimesModuloNodeGen.class, "LargeIntegers", "primMontgomeryTimesModulo"),
+        LARGE_MONTGOMERY_DIGIT_LENGTH(PrimLargeIntegersFactory.PrimMontgomeryDigitLengthNodeGen.class, "LargeIntegers", "primMontgomeryDigitLength"),
+        LARGE_AS_LARGE_INTEGER(PrimLargeIntegersFactory.PrimAsLargeIntegerNodeGen.class, "LargeIntegers", "primAsLargeInteger"),
+        LARGE_MODULE_NAME(PrimLargeIntegersFactory.PrimGetModuleNameNodeGen.class, "LargeIntegers", "primGetModuleName"),
+        LARGE_MODULE_EXISTS(PrimLargeIntegersFactory.PrimCheckIfCModuleExistsNodeGen.class, "LargeIntegers", "primCheckIfCModuleExists"),
         //
         FILE_WRITE(PrimFileWriteNodeGen.class, "FilePlugin", "primitiveFileWrite"),
         FILE_SIZE(PrimFileSizeNodeGen.class, "FilePlugin", "primitiveFileSize"),
@@ -310,6 +325,29 @@ public abstract class PrimitiveNodeFactory {
         return createInstance(method, primClass);
     }
 
+    /**
+     * Create a binary primitive that a send of a special selector can run inline, or null if the
+     * primitive is not implemented. The primitive has no child nodes, it must be run with
+     * {@link PrimitiveBinaryOperation#executeWithArguments}.
+     */
+    @TruffleBoundary
+    public static PrimitiveBinaryOperation forSpecialSelector(CompiledMethodObject method, int primitiveIdx) {
+        Class<? extends PrimitiveNode> primClass = indexPrims[primitiveIdx];
+        if (primClass == null || !PrimitiveBinaryOperation.class.isAssignableFrom(primClass)) {
+            return null;
+        }
+        try {
+            Method factoryMethod = primClass.getMethod("create", CompiledMethodObject.class, SqueakNode.class, SqueakNode.class);
+            return (PrimitiveBinaryOperation) factoryMethod.invoke(null, method, null, null);
+        } catch (NoSuchMethodException
+                        | SecurityException
+                        | IllegalAccessException
+                        | IllegalArgumentException
+                        | InvocationTargetException e) {
+            throw new RuntimeException("Internal error in creating primitive", e);
+        }
+    }
+
     @TruffleBoundary
     public static PrimitiveNode forName(CompiledMethodObject method, String modulename, String functionname) {
         Class<? extends PrimitiveNode> primClass = namedPrims.getOrDefault(modulename, new HashMap<>()).get(functionname);
@@ -2,7 +2,6 @@ package de.hpi.swa.trufflesqueak.nodes.primitives;
 
 import com.oracle.truffle.api.frame.VirtualFrame;
 
-import de.hpi.swa.trufflesqueak.exceptions.LocalReturn;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 
 public abstract class PrimitiveQuickReturnNode extends PrimitiveNode {
@@ -13,7 +12,7 @@ public abstract class PrimitiveQuickReturnNode extends PrimitiveNode {
     abstract protected Object getConstant(VirtualFrame frame);
 
     @Override
-    public Object executeGeneric(VirtualFrame frame) throws LocalReturn {
-        throw new LocalReturn(getConstant(frame));
+    public Object executeGeneric(VirtualFrame frame) {
+        return getConstant(frame);
     }
 }
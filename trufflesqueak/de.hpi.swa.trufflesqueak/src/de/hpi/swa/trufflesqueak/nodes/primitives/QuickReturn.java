@@ -0,0 +1,53 @@
+package de.hpi.swa.trufflesqueak.nodes.primitives;
+
+import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+
+/**
+ * The effect of a quick return primitive (256-520), which answers the receiver, a constant or an
+ * instance variable of the receiver. Send sites that cache such a method evaluate it directly on the
+ * receiver instead of calling the method. Instances are immutable, so once a send site caches one,
+ * the compiler folds {@link #returnValue(Object)} to the single case that applies.
+ */
+public final class QuickReturn {
+    private static final int PUSH_SELF = 256;
+    private static final int PUSH_TWO = 263;
+    private static final int FIRST_RECEIVER_VARIABLE = 264;
+    private static final int LAST_RECEIVER_VARIABLE = 520;
+    private static final Object[] CONSTANTS = {true, false, null, -1, 0, 1, 2};
+
+    private final boolean isSelf;
+    private final int variableIndex;
+    private final Object constant;
+
+    private QuickReturn(boolean isSelf, int variableIndex, Object constant) {
+        this.isSelf = isSelf;
+        this.variableIndex = variableIndex;
+        this.constant = constant;
+    }
+
+    /**
+     * Returns the quick return the method consists of, or null if it is an ordinary method.
+     */
+    public static QuickReturn forMethod(CompiledCodeObject method) {
+        int primitiveIdx = method.primitiveIndex();
+        if (primitiveIdx == PUSH_SELF) {
+            return new QuickReturn(true, -1, null);
+        } else if (primitiveIdx > PUSH_SELF && primitiveIdx <= PUSH_TWO) {
+            return new QuickReturn(false, -1, CONSTANTS[primitiveIdx - PUSH_SELF - 1]);
+        } else if (primitiveIdx >= FIRST_RECEIVER_VARIABLE && primitiveIdx <= LAST_RECEIVER_VARIABLE) {
+            return new QuickReturn(false, primitiveIdx - FIRST_RECEIVER_VARIABLE, null);
+        }
+        return null;
+    }
+
+    public Object returnValue(Object receiver) {
+        if (isSelf) {
+            return receiver;
+        } else if (variableIndex >= 0) {
+            return ((BaseSqueakObject) receiver).at0(variableIndex);
+        } else {
+            return constant;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveUnaryOperation;
 
@@ -14,4 +16,10 @@ public class PrimArcTan extends PrimitiveUnaryOperation {
     double arctan(double a) {
         return Math.atan(a);
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
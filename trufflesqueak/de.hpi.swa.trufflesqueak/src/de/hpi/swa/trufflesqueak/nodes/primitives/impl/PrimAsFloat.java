@@ -1,7 +1,9 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveUnaryOperation;
 
@@ -19,4 +21,10 @@ public class PrimAsFloat extends PrimitiveUnaryOperation {
     double asFloat(long v) {
         return v;
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
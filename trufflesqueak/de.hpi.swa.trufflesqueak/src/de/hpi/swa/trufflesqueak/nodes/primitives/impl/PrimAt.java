@@ -2,6 +2,8 @@ package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
 import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
@@ -13,9 +15,10 @@ import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.model.EmptyObject;
 import de.hpi.swa.trufflesqueak.model.LargeInteger;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.nodes.NativeAtNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimAt extends PrimitiveBinaryOperation {
+public abstract class PrimAt extends PrimitiveBinaryOperation {
     public PrimAt(CompiledMethodObject cm) {
         super(cm);
     }
@@ -25,18 +28,18 @@ public class PrimAt extends PrimitiveBinaryOperation {
         if (idx == 1) {
             return receiver;
         } else {
-            throw new PrimitiveFailed();
+            throw PrimitiveFailed.INSTANCE;
         }
     }
 
     @Specialization
-    protected Object at(LargeInteger receiver, int idx) {
-        return receiver.at0(idx - 1);
+    protected long at(LargeInteger receiver, int idx) {
+        return receiver.byteAt0(checkIndex(idx, receiver.size()));
     }
 
     @Specialization
     protected long intAt(BigInteger receiver, int idx) {
-        return LargeInteger.byteAt0(receiver, idx - 1);
+        return LargeInteger.byteAt0(receiver, checkIndex(idx, LargeInteger.byteSize(receiver)));
     }
 
     @Specialization
@@ -47,42 +50,50 @@ public class PrimAt extends PrimitiveBinaryOperation {
         } else if (idx == 2) {
             return 0xFFFFFFFF & doubleBits;
         } else {
-            throw new PrimitiveFailed();
+            throw PrimitiveFailed.INSTANCE;
         }
     }
 
     @Specialization(rewriteOn = ArithmeticException.class)
-    protected int intAt(NativeObject receiver, int idx) throws ArithmeticException {
-        return Math.toIntExact(receiver.getNativeAt0(idx - 1));
+    protected int intAt(NativeObject receiver, int idx,
+                    @Cached("create()") NativeAtNode atNode) throws ArithmeticException {
+        return Math.toIntExact(atNode.executeAt(receiver, checkIndex(idx, receiver.size())));
     }
 
     @Specialization
-    protected long longAt(NativeObject receiver, int idx) {
-        return receiver.getNativeAt0(idx - 1);
+    protected long longAt(NativeObject receiver, int idx,
+                    @Cached("create()") NativeAtNode atNode) {
+        return atNode.executeAt(receiver, checkIndex(idx, receiver.size()));
     }
 
     @Specialization
     protected Object at(BlockClosure receiver, int idx) {
-        return receiver.at0(idx - 1);
+        return receiver.at0(checkIndex(idx, receiver.size()));
     }
 
     @Specialization
     protected Object at(CompiledCodeObject receiver, int idx) {
-        return receiver.at0(idx - 1);
+        return receiver.at0(checkIndex(idx, receiver.size()));
     }
 
     @Specialization
     protected Object at(EmptyObject receiver, int idx) {
-        return receiver.at0(idx - 1);
+        return receiver.at0(checkIndex(idx, receiver.size()));
     }
 
     @Specialization
     protected Object at(AbstractPointersObject receiver, int idx) {
-        return receiver.at0(idx - 1);
+        return receiver.at0(checkIndex(idx, receiver.size()));
     }
 
     @Specialization
     protected Object at(BaseSqueakObject receiver, int idx) {
-        return receiver.at0(idx - 1);
+        return receiver.at0(checkIndex(idx, receiver.size()));
+    }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
     }
 }
@@ -1,5 +1,7 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
 import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
@@ -12,6 +14,7 @@ import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.model.EmptyObject;
 import de.hpi.swa.trufflesqueak.model.LargeInteger;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.nodes.NativeAtPutNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveTernaryOperation;
 
 public class PrimAtPut extends PrimitiveTernaryOperation {
@@ -21,67 +24,76 @@ public class PrimAtPut extends PrimitiveTernaryOperation {
 
     @Specialization
     protected char atput(LargeInteger receiver, int idx, char value) {
-        receiver.atput0(idx - 1, value);
+        receiver.byteAtPut0(checkIndex(idx, receiver.size()), value);
         return value;
     }
 
     @Specialization
     protected int atput(LargeInteger receiver, int idx, int value) {
-        receiver.atput0(idx - 1, value);
+        receiver.byteAtPut0(checkIndex(idx, receiver.size()), value);
         return value;
     }
 
     @Specialization
-    protected char atput(NativeObject receiver, int idx, char value) {
-        receiver.setNativeAt0(idx - 1, value);
+    protected char atput(NativeObject receiver, int idx, char value,
+                    @Cached("create()") NativeAtPutNode atPutNode) {
+        atPutNode.executeAtPut(receiver, checkIndex(idx, receiver.size()), value);
         return value;
     }
 
     @Specialization
-    protected int atput(NativeObject receiver, int idx, int value) {
-        receiver.setNativeAt0(idx - 1, value);
+    protected int atput(NativeObject receiver, int idx, int value,
+                    @Cached("create()") NativeAtPutNode atPutNode) {
+        atPutNode.executeAtPut(receiver, checkIndex(idx, receiver.size()), value);
         return value;
     }
 
     @Specialization
-    protected long atput(NativeObject receiver, int idx, long value) {
-        receiver.setNativeAt0(idx - 1, value);
+    protected long atput(NativeObject receiver, int idx, long value,
+                    @Cached("create()") NativeAtPutNode atPutNode) {
+        atPutNode.executeAtPut(receiver, checkIndex(idx, receiver.size()), value);
         return value;
     }
 
     @Specialization
     protected Object atput(BlockClosure receiver, int idx, Object value) {
-        receiver.atput0(idx - 1, value);
+        receiver.atput0(checkIndex(idx, receiver.size()), value);
         return value;
     }
 
     @Specialization
     protected Object atput(ClassObject receiver, int idx, Object value) {
-        receiver.atput0(idx - 1, value);
+        receiver.atput0(checkIndex(idx, receiver.size()), value);
         return value;
     }
 
     @Specialization
     protected Object atput(CompiledCodeObject receiver, int idx, Object value) {
-        receiver.atput0(idx - 1, value);
+        receiver.atput0(checkIndex(idx, receiver.size()), value);
         return value;
     }
 
     @SuppressWarnings("unused")
     @Specialization
     protected Object atput(EmptyObject receiver, int idx, Object value) {
-        throw new PrimitiveFailed();
+        throw PrimitiveFailed.INSTANCE;
     }
 
     @Specialization
     protected Object atput(AbstractPointersObject receiver, int idx, Object value) {
-        receiver.atput0(idx - 1, value);
+        receiver.atput0(checkIndex(idx, receiver.size()), value);
         return value;
     }
 
     @Specialization
     protected Object atput(BaseSqueakObject receiver, int idx, Object value) {
-        receiver.atput0(idx - 1, value);
+        receiver.atput0(checkIndex(idx, receiver.size()), value);
         return value;
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument1, Object argument2) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
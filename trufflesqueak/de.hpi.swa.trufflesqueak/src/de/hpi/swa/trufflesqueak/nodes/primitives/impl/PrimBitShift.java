@@ -2,13 +2,15 @@ package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimBitShift extends PrimitiveBinaryOperation {
+public abstract class PrimBitShift extends PrimitiveBinaryOperation {
     @Child PrimNormalize normalizeNode;
 
     public PrimBitShift(CompiledMethodObject cm) {
@@ -79,4 +81,10 @@ public class PrimBitShift extends PrimitiveBinaryOperation {
             return integer.shiftLeft(arg);
         }
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
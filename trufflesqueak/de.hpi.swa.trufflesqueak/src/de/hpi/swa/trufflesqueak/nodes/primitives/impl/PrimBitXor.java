@@ -2,12 +2,14 @@ package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimBitXor extends PrimitiveBinaryOperation {
+public abstract class PrimBitXor extends PrimitiveBinaryOperation {
     public PrimBitXor(CompiledMethodObject cm) {
         super(cm);
     }
@@ -26,4 +28,10 @@ public class PrimBitXor extends PrimitiveBinaryOperation {
     protected BigInteger bitAnd(BigInteger receiver, BigInteger arg) {
         return receiver.xor(arg);
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
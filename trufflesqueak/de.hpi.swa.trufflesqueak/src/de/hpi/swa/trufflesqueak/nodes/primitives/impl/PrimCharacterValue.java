@@ -1,12 +1,14 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimCharacterValue extends PrimitiveBinaryOperation {
+public abstract class PrimCharacterValue extends PrimitiveBinaryOperation {
 
     public PrimCharacterValue(CompiledMethodObject cm) {
         super(cm);
@@ -21,4 +23,10 @@ public class PrimCharacterValue extends PrimitiveBinaryOperation {
     protected char value(@SuppressWarnings("unused") BaseSqueakObject ignored, int value) {
         return (char) value;
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
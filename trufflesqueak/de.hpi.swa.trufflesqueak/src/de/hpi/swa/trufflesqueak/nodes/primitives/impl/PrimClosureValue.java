@@ -1,9 +1,11 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.NodeChild;
 import com.oracle.truffle.api.dsl.NodeChildren;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.BlockClosure;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.model.ListObject;
@@ -30,6 +32,12 @@ public abstract class PrimClosureValue extends PrimitiveNode {
         protected Object value(BlockClosure block) {
             return dispatch.executeBlock(block, block.getFrameArguments());
         }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object r) {
+            throw PrimitiveFailed.INSTANCE;
+        }
     }
 
     @NodeChildren({@NodeChild(value = "r", type = SqueakNode.class), @NodeChild(value = "a1", type = SqueakNode.class)})
@@ -42,6 +50,12 @@ public abstract class PrimClosureValue extends PrimitiveNode {
         protected Object value(BlockClosure block, Object arg) {
             return dispatch.executeBlock(block, block.getFrameArguments(arg));
         }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object r, Object a1) {
+            throw PrimitiveFailed.INSTANCE;
+        }
     }
 
     @NodeChildren({@NodeChild(value = "r", type = SqueakNode.class), @NodeChild(value = "a1", type = SqueakNode.class), @NodeChild(value = "a2", type = SqueakNode.class)})
@@ -54,6 +68,12 @@ public abstract class PrimClosureValue extends PrimitiveNode {
         protected Object value(BlockClosure block, Object arg1, Object arg2) {
             return dispatch.executeBlock(block, block.getFrameArguments(arg1, arg2));
         }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object r, Object a1, Object a2) {
+            throw PrimitiveFailed.INSTANCE;
+        }
     }
 
     @NodeChildren({@NodeChild(value = "r", type = SqueakNode.class), @NodeChild(value = "a1", type = SqueakNode.class), @NodeChild(value = "a2", type = SqueakNode.class),
@@ -67,6 +87,12 @@ public abstract class PrimClosureValue extends PrimitiveNode {
         protected Object value(BlockClosure block, Object arg1, Object arg2, Object arg3) {
             return dispatch.executeBlock(block, block.getFrameArguments(arg1, arg2, arg3));
         }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object r, Object a1, Object a2, Object a3) {
+            throw PrimitiveFailed.INSTANCE;
+        }
     }
 
     @NodeChildren({@NodeChild(value = "r", type = SqueakNode.class), @NodeChild(value = "a1", type = SqueakNode.class), @NodeChild(value = "a2", type = SqueakNode.class),
@@ -80,6 +106,12 @@ public abstract class PrimClosureValue extends PrimitiveNode {
         protected Object value(BlockClosure block, Object arg1, Object arg2, Object arg3, Object arg4) {
             return dispatch.executeBlock(block, block.getFrameArguments(arg1, arg2, arg3, arg4));
         }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object r, Object a1, Object a2, Object a3, Object a4) {
+            throw PrimitiveFailed.INSTANCE;
+        }
     }
 
     @NodeChildren({@NodeChild(value = "r", type = SqueakNode.class), @NodeChild(value = "ary", type = SqueakNode.class)})
@@ -92,5 +124,11 @@ public abstract class PrimClosureValue extends PrimitiveNode {
         protected Object value(BlockClosure block, ListObject argArray) {
             return dispatch.executeBlock(block, block.getFrameArguments(argArray.getPointers()));
         }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object r, Object ary) {
+            throw PrimitiveFailed.INSTANCE;
+        }
     }
 }
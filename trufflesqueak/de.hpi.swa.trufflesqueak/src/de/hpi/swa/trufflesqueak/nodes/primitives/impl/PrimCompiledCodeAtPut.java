@@ -1,7 +1,9 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveTernaryOperation;
@@ -13,7 +15,16 @@ public class PrimCompiledCodeAtPut extends PrimitiveTernaryOperation {
 
     @Specialization
     Object setLiteral(CompiledCodeObject cc, int idx, Object value) {
+        if (idx < 0 || idx >= cc.getLiterals().length) {
+            throw PrimitiveFailed.INSTANCE;
+        }
         cc.setLiteral(idx, value);
         return value;
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument1, Object argument2) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
@@ -20,7 +20,7 @@ public class PrimDebugger extends PrimitiveNode {
 
     @Override
     public Object executeGeneric(VirtualFrame frame) {
-        throw new PrimitiveFailed();
+        throw PrimitiveFailed.INSTANCE;
     }
 
     @Override
@@ -2,17 +2,19 @@ package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimDiv extends PrimitiveBinaryOperation {
+public abstract class PrimDiv extends PrimitiveBinaryOperation {
     public PrimDiv(CompiledMethodObject cm) {
         super(cm);
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b != 0", rewriteOn = ArithmeticException.class)
     int div(int a, int b) {
         if (a == Integer.MIN_VALUE && b == -1) {
             throw new ArithmeticException();
@@ -20,7 +22,7 @@ public class PrimDiv extends PrimitiveBinaryOperation {
         return Math.floorDiv(a, b);
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b != 0", rewriteOn = ArithmeticException.class)
     int divInt(long a, long b) {
         if (a == Long.MIN_VALUE && b == -1) {
             throw new ArithmeticException();
@@ -28,7 +30,7 @@ public class PrimDiv extends PrimitiveBinaryOperation {
         return Math.toIntExact(Math.floorDiv(a, b));
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b != 0", rewriteOn = ArithmeticException.class)
     long div(long a, long b) {
         if (a == Long.MIN_VALUE && b == -1) {
             throw new ArithmeticException();
@@ -36,18 +38,24 @@ public class PrimDiv extends PrimitiveBinaryOperation {
         return Math.floorDiv(a, b);
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b.signum() != 0", rewriteOn = ArithmeticException.class)
     int divInt(BigInteger a, BigInteger b) {
         return a.divide(b).intValueExact();
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b.signum() != 0", rewriteOn = ArithmeticException.class)
     long div(BigInteger a, BigInteger b) {
         return a.divide(b).longValueExact();
     }
 
-    @Specialization
+    @Specialization(guards = "b.signum() != 0")
     BigInteger divBig(BigInteger a, BigInteger b) {
         return a.divide(b);
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
@@ -2,61 +2,62 @@ package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
 import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimDivide extends PrimitiveBinaryOperation {
+public abstract class PrimDivide extends PrimitiveBinaryOperation {
     public PrimDivide(CompiledMethodObject cm) {
         super(cm);
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b != 0", rewriteOn = ArithmeticException.class)
     int divide(int a, int b) {
         if (a % b != 0) {
-            throw new PrimitiveFailed();
+            throw PrimitiveFailed.INSTANCE;
         }
         return a / b;
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b != 0", rewriteOn = ArithmeticException.class)
     long divideInt(long a, long b) {
         if (a % b != 0) {
-            throw new PrimitiveFailed();
+            throw PrimitiveFailed.INSTANCE;
         }
         return Math.toIntExact(a / b);
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b != 0", rewriteOn = ArithmeticException.class)
     long divide(long a, long b) {
         if (a % b != 0) {
-            throw new PrimitiveFailed();
+            throw PrimitiveFailed.INSTANCE;
         }
         return a / b;
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b.signum() != 0", rewriteOn = ArithmeticException.class)
     int divdideInt(BigInteger a, BigInteger b) {
         if (a.mod(b.abs()).compareTo(BigInteger.ZERO) != 0) {
-            throw new PrimitiveFailed();
+            throw PrimitiveFailed.INSTANCE;
         }
         return a.divide(b).intValueExact();
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b.signum() != 0", rewriteOn = ArithmeticException.class)
     long divide(BigInteger a, BigInteger b) {
         if (a.mod(b.abs()).compareTo(BigInteger.ZERO) != 0) {
-            throw new PrimitiveFailed();
+            throw PrimitiveFailed.INSTANCE;
         }
         return a.divide(b).longValueExact();
     }
 
-    @Specialization
+    @Specialization(guards = "b.signum() != 0")
     BigInteger divBig(BigInteger a, BigInteger b) {
         if (a.mod(b.abs()).compareTo(BigInteger.ZERO) != 0) {
-            throw new PrimitiveFailed();
+            throw PrimitiveFailed.INSTANCE;
         }
         return a.divide(b);
     }
@@ -65,4 +66,10 @@ public class PrimDivide extends PrimitiveBinaryOperation {
     double div(double a, double b) {
         return a / b;
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
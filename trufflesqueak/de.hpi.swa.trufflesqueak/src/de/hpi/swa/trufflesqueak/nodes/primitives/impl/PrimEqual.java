@@ -2,12 +2,14 @@ package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimEqual extends PrimitiveBinaryOperation {
+public abstract class PrimEqual extends PrimitiveBinaryOperation {
     public PrimEqual(CompiledMethodObject cm) {
         super(cm);
     }
@@ -31,4 +33,10 @@ public class PrimEqual extends PrimitiveBinaryOperation {
     boolean eq(double a, double b) {
         return a == b;
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
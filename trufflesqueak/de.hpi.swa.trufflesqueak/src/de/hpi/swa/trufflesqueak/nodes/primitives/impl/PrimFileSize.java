@@ -1,12 +1,13 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
 import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimFileSize extends PrimitiveBinaryOperation {
+public abstract class PrimFileSize extends PrimitiveBinaryOperation {
     public PrimFileSize(CompiledMethodObject cm) {
         super(cm);
     }
@@ -17,8 +18,14 @@ public class PrimFileSize extends PrimitiveBinaryOperation {
         if (fd <= 2) {
             return 0;
         }
-        throw new PrimitiveFailed();
+        throw PrimitiveFailed.INSTANCE;
     }
 
     // TODO: double, long, BigInteger
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
@@ -1,6 +1,7 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
 import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
@@ -31,10 +32,16 @@ public class PrimFileWrite extends PrimitiveQuinaryOperation {
                 method.image.getError().flush();
                 break;
             default:
-                throw new PrimitiveFailed();
+                throw PrimitiveFailed.INSTANCE;
         }
         return (byteEnd - byteStart) / elementSize;
     }
 
     // TODO: double, long, BigInteger
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object arg1, Object arg2, Object arg3, Object arg4) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
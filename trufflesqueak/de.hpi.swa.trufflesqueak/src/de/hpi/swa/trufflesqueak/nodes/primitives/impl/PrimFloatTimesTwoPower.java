@@ -1,11 +1,13 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimFloatTimesTwoPower extends PrimitiveBinaryOperation {
+public abstract class PrimFloatTimesTwoPower extends PrimitiveBinaryOperation {
     public PrimFloatTimesTwoPower(CompiledMethodObject cm) {
         super(cm);
     }
@@ -14,4 +16,10 @@ public class PrimFloatTimesTwoPower extends PrimitiveBinaryOperation {
     double calc(double receiver, long argument) {
         return receiver * Math.pow(2, argument);
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
@@ -5,16 +5,42 @@ import com.oracle.truffle.api.dsl.Specialization;
 import de.hpi.swa.trufflesqueak.model.AbstractPointersObject;
 import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.ListObject;
 
 public abstract class PrimIndexAt extends PrimAt {
     public PrimIndexAt(CompiledMethodObject cm) {
         super(cm);
     }
 
+    @Specialization(guards = "receiver.isIntStorage()")
+    protected Object intAt(ListObject receiver, int idx) {
+        return receiver.intAt0(checkIndex(idx, receiver.varsize()) + receiver.instsize());
+    }
+
+    @Specialization(guards = "receiver.isLongStorage()")
+    protected Object longAt(ListObject receiver, int idx) {
+        return receiver.longAt0(checkIndex(idx, receiver.varsize()) + receiver.instsize());
+    }
+
+    @Specialization(guards = "receiver.isDoubleStorage()")
+    protected Object doubleAt(ListObject receiver, int idx) {
+        return receiver.doubleAt0(checkIndex(idx, receiver.varsize()) + receiver.instsize());
+    }
+
+    @Specialization(guards = "receiver.isCharStorage()")
+    protected Object charAt(ListObject receiver, int idx) {
+        return receiver.charAt0(checkIndex(idx, receiver.varsize()) + receiver.instsize());
+    }
+
+    @Specialization(guards = "receiver.isObjectStorage()")
+    protected Object objectAt(ListObject receiver, int idx) {
+        return receiver.getObjectStorage()[checkIndex(idx, receiver.varsize()) + receiver.instsize()];
+    }
+
     @Override
     @Specialization
     protected Object at(AbstractPointersObject receiver, int idx) {
-        return receiver.at0(idx - 1 + receiver.instsize());
+        return receiver.at0(checkIndex(idx, receiver.varsize()) + receiver.instsize());
     }
 
     @Override
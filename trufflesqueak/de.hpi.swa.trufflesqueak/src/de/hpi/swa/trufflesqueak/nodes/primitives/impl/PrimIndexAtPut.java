@@ -5,16 +5,53 @@ import com.oracle.truffle.api.dsl.Specialization;
 import de.hpi.swa.trufflesqueak.model.AbstractPointersObject;
 import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.ListObject;
 
 public abstract class PrimIndexAtPut extends PrimAtPut {
     public PrimIndexAtPut(CompiledMethodObject cm) {
         super(cm);
     }
 
+    @Specialization(guards = "receiver.isIntStorage()")
+    protected int intAtput(ListObject receiver, int idx, int value) {
+        receiver.intAtPut0(checkIndex(idx, receiver.varsize()) + receiver.instsize(), value);
+        return value;
+    }
+
+    @Specialization(guards = "receiver.isLongStorage()")
+    protected int longAtput(ListObject receiver, int idx, int value) {
+        receiver.longAtPut0(checkIndex(idx, receiver.varsize()) + receiver.instsize(), value);
+        return value;
+    }
+
+    @Specialization(guards = "receiver.isLongStorage()")
+    protected long longAtput(ListObject receiver, int idx, long value) {
+        receiver.longAtPut0(checkIndex(idx, receiver.varsize()) + receiver.instsize(), value);
+        return value;
+    }
+
+    @Specialization(guards = "receiver.isDoubleStorage()")
+    protected double doubleAtput(ListObject receiver, int idx, double value) {
+        receiver.doubleAtPut0(checkIndex(idx, receiver.varsize()) + receiver.instsize(), value);
+        return value;
+    }
+
+    @Specialization(guards = "receiver.isCharStorage()")
+    protected char charAtput(ListObject receiver, int idx, char value) {
+        receiver.charAtPut0(checkIndex(idx, receiver.varsize()) + receiver.instsize(), value);
+        return value;
+    }
+
+    @Specialization(guards = {"receiver.isObjectStorage()", "!receiver.hasMethodDictOwner()"})
+    protected Object objectAtput(ListObject receiver, int idx, Object value) {
+        receiver.getObjectStorage()[checkIndex(idx, receiver.varsize()) + receiver.instsize()] = value;
+        return value;
+    }
+
     @Override
     @Specialization
     protected Object atput(AbstractPointersObject receiver, int idx, Object value) {
-        receiver.atput0(idx - 1 + receiver.instsize(), value);
+        receiver.atput0(checkIndex(idx, receiver.varsize()) + receiver.instsize(), value);
         return value;
     }
 
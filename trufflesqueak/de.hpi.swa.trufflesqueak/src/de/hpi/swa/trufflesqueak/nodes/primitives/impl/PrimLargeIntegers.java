@@ -0,0 +1,471 @@
+package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
+
+import java.math.BigInteger;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Fallback;
+import com.oracle.truffle.api.dsl.Specialization;
+
+import de.hpi.swa.trufflesqueak.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.LargeInteger;
+import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveQuaternaryOperation;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveTernaryOperation;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveUnaryOperation;
+import de.hpi.swa.trufflesqueak.util.LargeIntegerDigits;
+
+/**
+ * The primitives of the LargeIntegers plugin. Like in the plugin, the digit operations work on the
+ * magnitudes of their operands and take the sign of the result from the receiver or an argument,
+ * which lets the image implement signed arithmetic on top of them. SmallInteger operands are
+ * handled with long arithmetic, everything else directly on the digits of the large integers.
+ * Results are normalized, so they are SmallIntegers whenever they fit.
+ */
+public final class PrimLargeIntegers {
+    private static final String MODULE_NAME = "LargeIntegers v2.0 (TruffleSqueak)";
+
+    private PrimLargeIntegers() {
+    }
+
+    public abstract static class PrimDigitAdd extends PrimitiveBinaryOperation {
+        public PrimDigitAdd(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization(rewriteOn = ArithmeticException.class)
+        Object add(long a, long b) {
+            return toSmallInteger((a < 0) == (b < 0) ? Math.addExact(a, b) : Math.subtractExact(a, b));
+        }
+
+        @Specialization
+        Object add(Object a, Object b) {
+            return addMagnitudes(method.image, a, b);
+        }
+    }
+
+    public abstract static class PrimDigitSubtract extends PrimitiveBinaryOperation {
+        public PrimDigitSubtract(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization(rewriteOn = ArithmeticException.class)
+        Object subtract(long a, long b) {
+            return toSmallInteger((a < 0) == (b < 0) ? Math.subtractExact(a, b) : Math.addExact(a, b));
+        }
+
+        @Specialization
+        Object subtract(Object a, Object b) {
+            return subtractMagnitudes(method.image, a, b);
+        }
+    }
+
+    public abstract static class PrimDigitMultiplyNegative extends PrimitiveTernaryOperation {
+        public PrimDigitMultiplyNegative(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization(rewriteOn = ArithmeticException.class)
+        Object multiply(long a, long b, boolean negative) {
+            long product = Math.multiplyExact(a, b);
+            long magnitude = product < 0 ? Math.negateExact(product) : product;
+            return toSmallInteger(negative ? -magnitude : magnitude);
+        }
+
+        @Specialization
+        Object multiply(Object a, Object b, boolean negative) {
+            return multiplyMagnitudes(method.image, a, b, negative);
+        }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object receiver, Object argument1, Object argument2) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+    }
+
+    public abstract static class PrimDigitDivNegative extends PrimitiveTernaryOperation {
+        public PrimDigitDivNegative(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization(guards = "b != 0", rewriteOn = ArithmeticException.class)
+        ListObject divide(long a, long b, boolean negative) {
+            long quotient = a / b;
+            long magnitude = quotient < 0 ? Math.negateExact(quotient) : quotient;
+            // the remainder of a truncating division has the sign of the receiver
+            return method.image.wrap(toSmallInteger(negative ? -magnitude : magnitude), toSmallInteger(a % b));
+        }
+
+        @Specialization
+        ListObject divide(Object a, Object b, boolean negative) {
+            return divideMagnitudes(method.image, a, b, negative);
+        }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object receiver, Object argument1, Object argument2) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+    }
+
+    public abstract static class PrimDigitBitAnd extends PrimitiveBinaryOperation {
+        public PrimDigitBitAnd(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization(guards = {"a >= 0", "b >= 0"})
+        Object and(long a, long b) {
+            return toSmallInteger(a & b);
+        }
+
+        @Specialization
+        Object and(Object a, Object b) {
+            int[] digitsA = positiveDigitsOf(a);
+            int[] digitsB = positiveDigitsOf(b);
+            return normalize(method.image, LargeIntegerDigits.and(digitsA, lengthOf(digitsA), digitsB, lengthOf(digitsB)), false);
+        }
+    }
+
+    public abstract static class PrimDigitBitOr extends PrimitiveBinaryOperation {
+        public PrimDigitBitOr(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization(guards = {"a >= 0", "b >= 0"})
+        Object or(long a, long b) {
+            return toSmallInteger(a | b);
+        }
+
+        @Specialization
+        Object or(Object a, Object b) {
+            int[] digitsA = positiveDigitsOf(a);
+            int[] digitsB = positiveDigitsOf(b);
+            return normalize(method.image, LargeIntegerDigits.or(digitsA, lengthOf(digitsA), digitsB, lengthOf(digitsB)), false);
+        }
+    }
+
+    public abstract static class PrimDigitBitXor extends PrimitiveBinaryOperation {
+        public PrimDigitBitXor(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization(guards = {"a >= 0", "b >= 0"})
+        Object xor(long a, long b) {
+            return toSmallInteger(a ^ b);
+        }
+
+        @Specialization
+        Object xor(Object a, Object b) {
+            int[] digitsA = positiveDigitsOf(a);
+            int[] digitsB = positiveDigitsOf(b);
+            return normalize(method.image, LargeIntegerDigits.xor(digitsA, lengthOf(digitsA), digitsB, lengthOf(digitsB)), false);
+        }
+    }
+
+    public abstract static class PrimDigitBitShiftMagnitude extends PrimitiveBinaryOperation {
+        public PrimDigitBitShiftMagnitude(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization(guards = {"receiver >= 0", "shift <= 0"})
+        Object shiftRight(long receiver, int shift) {
+            return toSmallInteger(shift <= -Long.SIZE ? 0 : receiver >> -shift);
+        }
+
+        @Specialization(guards = {"receiver >= 0", "shift > 0"}, rewriteOn = ArithmeticException.class)
+        Object shiftLeft(long receiver, int shift) {
+            if (shift >= Long.SIZE - 1 || receiver >>> (Long.SIZE - 1 - shift) != 0) {
+                throw new ArithmeticException();
+            }
+            return toSmallInteger(receiver << shift);
+        }
+
+        @Specialization
+        Object shift(Object receiver, int shift) {
+            int[] digits = digitsOf(receiver);
+            int length = lengthOf(digits);
+            int[] result;
+            if (shift >= 0) {
+                result = LargeIntegerDigits.shiftLeft(digits, length, shift);
+            } else {
+                result = LargeIntegerDigits.shiftRight(digits, length, -shift);
+            }
+            return normalize(method.image, result, isNegative(receiver));
+        }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object receiver, Object argument) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+    }
+
+    public abstract static class PrimDigitCompare extends PrimitiveBinaryOperation {
+        public PrimDigitCompare(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization
+        int compare(long a, long b) {
+            // Math.abs(Long.MIN_VALUE) still has the right magnitude when read as unsigned
+            return Integer.signum(Long.compareUnsigned(Math.abs(a), Math.abs(b)));
+        }
+
+        @Specialization
+        int compare(Object a, Object b) {
+            int[] digitsA = digitsOf(a);
+            int[] digitsB = digitsOf(b);
+            return LargeIntegerDigits.compare(digitsA, lengthOf(digitsA), digitsB, lengthOf(digitsB));
+        }
+    }
+
+    public abstract static class PrimAnyBitFromTo extends PrimitiveTernaryOperation {
+        public PrimAnyBitFromTo(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization(guards = {"start >= 1", "stop >= 1"})
+        boolean anyBit(Object receiver, int start, int stop) {
+            int[] digits = digitsOf(receiver);
+            return LargeIntegerDigits.anyBit(digits, lengthOf(digits), start, stop);
+        }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object receiver, Object argument1, Object argument2) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+    }
+
+    public abstract static class PrimNormalizeMagnitude extends PrimitiveUnaryOperation {
+        public PrimNormalizeMagnitude(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization
+        Object normalize(long receiver) {
+            return toSmallInteger(receiver);
+        }
+
+        @Specialization
+        Object normalize(LargeInteger receiver) {
+            int[] digits = receiver.getDigits();
+            int length = lengthOf(digits);
+            if (length > 2 && LargeIntegerDigits.byteSize(digits, length) == receiver.size()) {
+                return receiver;
+            }
+            // the result takes over the digits, so it must not share them with the receiver
+            return PrimLargeIntegers.normalize(method.image, digits.clone(), receiver.isNegative());
+        }
+
+        @Specialization
+        Object normalize(BigInteger receiver) {
+            return PrimLargeIntegers.normalize(method.image, LargeInteger.digitsOf(receiver), receiver.signum() < 0);
+        }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object receiver) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+    }
+
+    public abstract static class PrimMontgomeryTimesModulo extends PrimitiveQuaternaryOperation {
+        public PrimMontgomeryTimesModulo(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization
+        Object montgomeryTimes(Object a, Object b, Object modulo, long mInvModB) {
+            int[] digitsA = positiveDigitsOf(a);
+            int[] digitsB = positiveDigitsOf(b);
+            int[] digitsM = positiveDigitsOf(modulo);
+            int lengthA = lengthOf(digitsA);
+            int lengthB = lengthOf(digitsB);
+            int lengthM = lengthOf(digitsM);
+            if (lengthM == 0 || lengthA > lengthM || lengthB > lengthM) {
+                throw PrimitiveFailed.INSTANCE;
+            }
+            return normalize(method.image, LargeIntegerDigits.montgomeryTimes(digitsA, lengthA, digitsB, lengthB, digitsM, lengthM, (int) mInvModB), false);
+        }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object receiver, Object arg1, Object arg2, Object arg3) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+    }
+
+    public abstract static class PrimMontgomeryDigitLength extends PrimitiveUnaryOperation {
+        public PrimMontgomeryDigitLength(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization
+        int digitLength(@SuppressWarnings("unused") Object receiver) {
+            return Integer.SIZE;
+        }
+    }
+
+    public abstract static class PrimAsLargeInteger extends PrimitiveBinaryOperation {
+        public PrimAsLargeInteger(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization
+        LargeInteger asLargeInteger(@SuppressWarnings("unused") Object receiver, long value) {
+            int[] digits = digitsOf(value);
+            ClassObject klass = value < 0 ? method.image.largeNegativeIntegerClass : method.image.largePositiveIntegerClass;
+            return new LargeInteger(method.image, klass, digits, Math.max(1, LargeIntegerDigits.byteSize(digits, lengthOf(digits))));
+        }
+
+        @Specialization
+        LargeInteger asLargeInteger(@SuppressWarnings("unused") Object receiver, LargeInteger value) {
+            return value;
+        }
+
+        @SuppressWarnings("unused")
+        @Fallback
+        protected Object fail(Object receiver, Object argument) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+    }
+
+    public abstract static class PrimGetModuleName extends PrimitiveUnaryOperation {
+        public PrimGetModuleName(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization
+        Object moduleName(@SuppressWarnings("unused") Object receiver) {
+            return method.image.wrap(MODULE_NAME);
+        }
+    }
+
+    public abstract static class PrimCheckIfCModuleExists extends PrimitiveUnaryOperation {
+        public PrimCheckIfCModuleExists(CompiledMethodObject cm) {
+            super(cm);
+        }
+
+        @Specialization
+        boolean moduleExists(@SuppressWarnings("unused") Object receiver) {
+            return method.image.sqTrue;
+        }
+    }
+
+    @TruffleBoundary
+    private static Object addMagnitudes(SqueakImageContext image, Object a, Object b) {
+        int[] digitsA = digitsOf(a);
+        int[] digitsB = digitsOf(b);
+        return normalize(image, LargeIntegerDigits.add(digitsA, lengthOf(digitsA), digitsB, lengthOf(digitsB)), isNegative(a));
+    }
+
+    @TruffleBoundary
+    private static Object subtractMagnitudes(SqueakImageContext image, Object a, Object b) {
+        int[] digitsA = digitsOf(a);
+        int[] digitsB = digitsOf(b);
+        int lengthA = lengthOf(digitsA);
+        int lengthB = lengthOf(digitsB);
+        boolean negative = isNegative(a);
+        if (LargeIntegerDigits.compare(digitsA, lengthA, digitsB, lengthB) < 0) {
+            return normalize(image, LargeIntegerDigits.subtract(digitsB, lengthB, digitsA, lengthA), !negative);
+        }
+        return normalize(image, LargeIntegerDigits.subtract(digitsA, lengthA, digitsB, lengthB), negative);
+    }
+
+    @TruffleBoundary
+    private static Object multiplyMagnitudes(SqueakImageContext image, Object a, Object b, boolean negative) {
+        int[] digitsA = digitsOf(a);
+        int[] digitsB = digitsOf(b);
+        int lengthA = lengthOf(digitsA);
+        int lengthB = lengthOf(digitsB);
+        if (lengthA == 0 || lengthB == 0) {
+            return 0;
+        }
+        return normalize(image, LargeIntegerDigits.multiply(digitsA, lengthA, digitsB, lengthB), negative);
+    }
+
+    @TruffleBoundary
+    private static ListObject divideMagnitudes(SqueakImageContext image, Object a, Object b, boolean negative) {
+        int[] digitsA = digitsOf(a);
+        int[] digitsB = digitsOf(b);
+        int lengthB = lengthOf(digitsB);
+        if (lengthB == 0) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        int[][] quotientAndRemainder = LargeIntegerDigits.divide(digitsA, lengthOf(digitsA), digitsB, lengthB);
+        return image.wrap(normalize(image, quotientAndRemainder[0], negative), normalize(image, quotientAndRemainder[1], isNegative(a)));
+    }
+
+    /**
+     * Returns the digits of the magnitude of an integer, without copying those of large integers.
+     */
+    private static int[] digitsOf(Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            return digitsOf(((Number) value).longValue());
+        } else if (value instanceof LargeInteger) {
+            return ((LargeInteger) value).getDigits();
+        } else if (value instanceof BigInteger) {
+            return LargeInteger.digitsOf((BigInteger) value);
+        }
+        throw PrimitiveFailed.INSTANCE;
+    }
+
+    private static int[] digitsOf(long value) {
+        // the magnitude of Long.MIN_VALUE is right when read as unsigned
+        long magnitude = value < 0 ? -value : value;
+        return new int[]{(int) magnitude, (int) (magnitude >>> 32)};
+    }
+
+    /**
+     * The bit operations of the plugin are only defined on positive integers.
+     */
+    private static int[] positiveDigitsOf(Object value) {
+        if (isNegative(value)) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        return digitsOf(value);
+    }
+
+    private static boolean isNegative(Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue() < 0;
+        } else if (value instanceof LargeInteger) {
+            return ((LargeInteger) value).isNegative();
+        } else if (value instanceof BigInteger) {
+            return ((BigInteger) value).signum() < 0;
+        }
+        throw PrimitiveFailed.INSTANCE;
+    }
+
+    private static int lengthOf(int[] digits) {
+        return LargeIntegerDigits.length(digits);
+    }
+
+    private static Object toSmallInteger(long value) {
+        int intValue = (int) value;
+        return intValue == value ? (Object) intValue : (Object) value;
+    }
+
+    /**
+     * Returns the integer with the given magnitude as SmallInteger if it fits, otherwise as a large
+     * integer that takes over the digits.
+     */
+    private static Object normalize(SqueakImageContext image, int[] digits, boolean negative) {
+        int length = lengthOf(digits);
+        if (length <= 2) {
+            long magnitude = length == 0 ? 0 : length == 1 ? digits[0] & 0xFFFFFFFFL : ((long) digits[1] << 32) | (digits[0] & 0xFFFFFFFFL);
+            if (magnitude >= 0) {
+                return toSmallInteger(negative ? -magnitude : magnitude);
+            } else if (negative && magnitude == Long.MIN_VALUE) {
+                return Long.MIN_VALUE;
+            }
+        }
+        ClassObject klass = negative ? image.largeNegativeIntegerClass : image.largePositiveIntegerClass;
+        return new LargeInteger(image, klass, digits, LargeIntegerDigits.byteSize(digits, length));
+    }
+}
@@ -2,42 +2,44 @@ package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimMod extends PrimitiveBinaryOperation {
+public abstract class PrimMod extends PrimitiveBinaryOperation {
     public PrimMod(CompiledMethodObject cm) {
         super(cm);
     }
 
-    @Specialization
+    @Specialization(guards = "b != 0")
     int mod(int a, int b) {
         return a % b;
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b != 0", rewriteOn = ArithmeticException.class)
     int modInt(long a, long b) {
         return Math.toIntExact(a % b);
     }
 
-    @Specialization
+    @Specialization(guards = "b != 0")
     long mod(long a, long b) {
         return a % b;
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b.signum() != 0", rewriteOn = ArithmeticException.class)
     int modInt(BigInteger a, BigInteger b) {
         return doBigModulo(a, b).intValueExact();
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b.signum() != 0", rewriteOn = ArithmeticException.class)
     long mod(BigInteger a, BigInteger b) {
         return doBigModulo(a, b).longValueExact();
     }
 
-    @Specialization
+    @Specialization(guards = "b.signum() != 0")
     BigInteger modBig(BigInteger a, BigInteger b) {
         return doBigModulo(a, b);
     }
@@ -50,4 +52,10 @@ public class PrimMod extends PrimitiveBinaryOperation {
             return mod;
         }
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
@@ -2,6 +2,7 @@ package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
 import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
@@ -10,7 +11,7 @@ import de.hpi.swa.trufflesqueak.model.ClassObject;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimNewArg extends PrimitiveBinaryOperation {
+public abstract class PrimNewArg extends PrimitiveBinaryOperation {
     final static int NEW_CACHE_SIZE = 3;
 
     public PrimNewArg(CompiledMethodObject cm) {
@@ -23,7 +24,7 @@ public class PrimNewArg extends PrimitiveBinaryOperation {
                     @Cached("receiver") ClassObject cachedReceiver,
                     @Cached("cachedReceiver.getClassFormatStable()") Assumption classFormatStable) {
         if (size == 0 || !cachedReceiver.isVariable())
-            throw new PrimitiveFailed();
+            throw PrimitiveFailed.INSTANCE;
         return cachedReceiver.newInstance(size);
     }
 
@@ -35,4 +36,10 @@ public class PrimNewArg extends PrimitiveBinaryOperation {
             return null;
         return receiver.newInstance(size);
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
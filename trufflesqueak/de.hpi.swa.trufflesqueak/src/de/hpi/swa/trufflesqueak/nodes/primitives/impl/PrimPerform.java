@@ -1,52 +1,37 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
-import java.util.Arrays;
-
+import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.nodes.ExplodeLoop;
-import com.oracle.truffle.api.nodes.UnexpectedResultException;
 
-import de.hpi.swa.trufflesqueak.model.ClassObject;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
-import de.hpi.swa.trufflesqueak.nodes.DispatchNode;
-import de.hpi.swa.trufflesqueak.nodes.DispatchNodeGen;
-import de.hpi.swa.trufflesqueak.nodes.LookupNode;
-import de.hpi.swa.trufflesqueak.nodes.LookupNodeGen;
-import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
-import de.hpi.swa.trufflesqueak.nodes.SqueakTypesGen;
-import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNode;
-import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNodeGen;
+import de.hpi.swa.trufflesqueak.nodes.PerformNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveNode;
 
+/**
+ * perform:, perform:with:, ... The method's arguments are the selector followed by the arguments of
+ * the send, so the send's arguments are built directly from the frame with the receiver in place of
+ * the selector.
+ */
 public class PrimPerform extends PrimitiveNode {
-    @Child public SqueakNode receiverNode;
-    @Child public SqueakNode selectorNode;
-    @Child protected SqueakLookupClassNode lookupClassNode;
-    @Child private LookupNode lookupNode;
-    @Child private DispatchNode dispatchNode;
+    @Child private PerformNode performNode;
 
     public PrimPerform(CompiledMethodObject cm) {
         super(cm);
-        lookupClassNode = SqueakLookupClassNodeGen.create(method);
-        dispatchNode = DispatchNodeGen.create();
-        lookupNode = LookupNodeGen.create();
+        performNode = PerformNode.create(cm);
     }
 
     @Override
     @ExplodeLoop
     public Object executeGeneric(VirtualFrame frame) {
         Object[] args = frame.getArguments();
-        Object receiver = args[0];
-        ClassObject rcvrClass;
-        try {
-            rcvrClass = SqueakTypesGen.expectClassObject(lookupClassNode.executeLookup(receiver));
-        } catch (UnexpectedResultException e) {
-            throw new RuntimeException("receiver has no class");
+        int numArgs = method.getNumArgs();
+        CompilerAsserts.compilationConstant(numArgs);
+        Object[] sendArguments = new Object[numArgs];
+        sendArguments[0] = args[0];
+        for (int i = 1; i < numArgs; i++) {
+            sendArguments[i] = args[i + 1];
         }
-        Object selector = args[1];
-        Object[] newArguments = Arrays.copyOfRange(args, 1, args.length);
-        newArguments[0] = receiver; // the second argument was the selector, put the receiver here
-        Object lookupResult = lookupNode.executeLookup(rcvrClass, selector);
-        return dispatchNode.executeDispatch(lookupResult, newArguments);
+        return performNode.executePerform(args[0], args[1], sendArguments);
     }
 }
@@ -0,0 +1,62 @@
+package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
+
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.UnexpectedResultException;
+
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.nodes.DispatchNode;
+import de.hpi.swa.trufflesqueak.nodes.LookupNode;
+import de.hpi.swa.trufflesqueak.nodes.PerformNode;
+import de.hpi.swa.trufflesqueak.nodes.SqueakTypesGen;
+import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNode;
+import de.hpi.swa.trufflesqueak.nodes.context.SqueakLookupClassNodeGen;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveNode;
+
+/**
+ * perform: selector withArguments: anArray inSuperclass: lookupClass
+ *
+ * The lookup class is an argument, so the lookup is cached on (lookup class, selector) rather than
+ * on the receiver class. Like in the VM, the receiver must be an instance of the lookup class or one
+ * of its subclasses.
+ */
+public class PrimPerformInSuperclass extends PrimitiveNode {
+    @Child private LookupNode lookupNode;
+    @Child private DispatchNode dispatchNode;
+    @Child private SqueakLookupClassNode lookupClassNode;
+
+    public PrimPerformInSuperclass(CompiledMethodObject cm) {
+        super(cm);
+        lookupNode = LookupNode.create(cm.image);
+        dispatchNode = DispatchNode.create(cm.image);
+        lookupClassNode = SqueakLookupClassNodeGen.create(cm);
+    }
+
+    @Override
+    public Object executeGeneric(VirtualFrame frame) {
+        Object[] args = frame.getArguments();
+        if (!(args[1] instanceof NativeObject) || !(args[2] instanceof ListObject) || !(args[3] instanceof ClassObject)) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        ListObject argumentArray = (ListObject) args[2];
+        if (argumentArray.size() != PerformNode.numArgsOf(args[1]) || !receiverClass(args[0]).includesBehavior((ClassObject) args[3])) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        Object lookupResult = lookupNode.executeLookup(args[3], args[1]);
+        if (!(lookupResult instanceof CompiledMethodObject)) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        return dispatchNode.executeDispatch(lookupResult, PrimPerformWithArguments.sendArguments(args[0], argumentArray));
+    }
+
+    private ClassObject receiverClass(Object receiver) {
+        try {
+            return SqueakTypesGen.expectClassObject(lookupClassNode.executeLookup(receiver));
+        } catch (UnexpectedResultException e) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+    }
+}
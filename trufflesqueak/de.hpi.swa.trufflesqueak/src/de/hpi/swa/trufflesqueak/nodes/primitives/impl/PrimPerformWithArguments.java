@@ -0,0 +1,40 @@
+package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
+
+import com.oracle.truffle.api.frame.VirtualFrame;
+
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
+import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.nodes.PerformNode;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveNode;
+
+/**
+ * perform: selector withArguments: anArray
+ */
+public class PrimPerformWithArguments extends PrimitiveNode {
+    @Child private PerformNode performNode;
+
+    public PrimPerformWithArguments(CompiledMethodObject cm) {
+        super(cm);
+        performNode = PerformNode.create(cm);
+    }
+
+    @Override
+    public Object executeGeneric(VirtualFrame frame) {
+        Object[] args = frame.getArguments();
+        if (!(args[2] instanceof ListObject)) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        return performNode.executePerform(args[0], args[1], sendArguments(args[0], (ListObject) args[2]));
+    }
+
+    static Object[] sendArguments(Object receiver, ListObject argumentArray) {
+        int numArgs = argumentArray.size();
+        Object[] sendArguments = new Object[numArgs + 1];
+        sendArguments[0] = receiver;
+        for (int i = 0; i < numArgs; i++) {
+            sendArguments[i + 1] = argumentArray.at0(i);
+        }
+        return sendArguments;
+    }
+}
@@ -2,43 +2,51 @@ package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimQuo extends PrimitiveBinaryOperation {
+public abstract class PrimQuo extends PrimitiveBinaryOperation {
     public PrimQuo(CompiledMethodObject cm) {
         super(cm);
     }
 
-    @Specialization
+    @Specialization(guards = "b != 0")
     int quo(int a, int b) {
         return a / b;
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b != 0", rewriteOn = ArithmeticException.class)
     int quoInt(long a, long b) {
         return Math.toIntExact(a / b);
     }
 
-    @Specialization
+    @Specialization(guards = "b != 0")
     long quo(long a, long b) {
         return a / b;
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b.signum() != 0", rewriteOn = ArithmeticException.class)
     int quoInt(BigInteger a, BigInteger b) {
         return a.divide(b).intValueExact();
     }
 
-    @Specialization(rewriteOn = ArithmeticException.class)
+    @Specialization(guards = "b.signum() != 0", rewriteOn = ArithmeticException.class)
     long quo(BigInteger a, BigInteger b) {
         return a.divide(b).longValueExact();
     }
 
-    @Specialization
+    @Specialization(guards = "b.signum() != 0")
     BigInteger quoBig(BigInteger a, BigInteger b) {
         return a.divide(b);
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
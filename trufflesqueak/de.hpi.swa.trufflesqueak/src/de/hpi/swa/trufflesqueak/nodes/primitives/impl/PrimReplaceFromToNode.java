@@ -2,12 +2,17 @@ package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import java.math.BigInteger;
 
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.model.LargeInteger;
 import de.hpi.swa.trufflesqueak.model.ListObject;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.nodes.NativeAtNode;
+import de.hpi.swa.trufflesqueak.nodes.NativeAtPutNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveQuinaryOperation;
 
 public class PrimReplaceFromToNode extends PrimitiveQuinaryOperation {
@@ -17,54 +22,117 @@ public class PrimReplaceFromToNode extends PrimitiveQuinaryOperation {
 
     @Specialization
     Object replace(LargeInteger rcvr, int start, int stop, LargeInteger repl, int replStart) {
-        return replaceInLarge(rcvr, start, stop, repl.getBytes(), replStart);
+        int repOff = replStart - start;
+        for (int i = start - 1; i < stop; i++) {
+            rcvr.byteAtPut0(i, repl.byteAt0(repOff + i));
+        }
+        return rcvr;
     }
 
     @Specialization
-    Object replace(LargeInteger rcvr, int start, int stop, NativeObject repl, int replStart) {
-        return replaceInLarge(rcvr, start, stop, repl.getBytes(), replStart);
+    Object replace(LargeInteger rcvr, int start, int stop, NativeObject repl, int replStart,
+                    @Cached("create()") NativeAtNode atNode) {
+        int repOff = replStart - start;
+        for (int i = start - 1; i < stop; i++) {
+            rcvr.byteAtPut0(i, (int) atNode.executeAt(repl, repOff + i));
+        }
+        return rcvr;
     }
 
     @Specialization
     Object replace(LargeInteger rcvr, int start, int stop, BigInteger repl, int replStart) {
-        return replaceInLarge(rcvr, start, stop, LargeInteger.getSqueakBytes(repl), replStart);
-    }
-
-    private static Object replaceInLarge(LargeInteger rcvr, int start, int stop, byte[] replBytes, int replStart) {
-        byte[] rcvrBytes = rcvr.getBytes();
         int repOff = replStart - start;
+        byte[] bytes = LargeInteger.getSqueakBytes(repl);
         for (int i = start - 1; i < stop; i++) {
-            rcvrBytes[i] = replBytes[repOff + i];
+            rcvr.byteAtPut0(i, bytes[repOff + i]);
         }
-        rcvr.setBytes(rcvrBytes);
         return rcvr;
     }
 
     @Specialization
-    Object replace(NativeObject rcvr, int start, int stop, LargeInteger repl, int replStart) {
+    Object replace(NativeObject rcvr, int start, int stop, LargeInteger repl, int replStart,
+                    @Cached("create()") NativeAtPutNode atPutNode) {
         int repOff = replStart - start;
-        byte[] replBytes = repl.getBytes();
         for (int i = start - 1; i < stop; i++) {
-            rcvr.setNativeAt0(i, replBytes[repOff + i]);
+            atPutNode.executeAtPut(rcvr, i, repl.byteAt0(repOff + i));
+        }
+        return rcvr;
+    }
+
+    @Specialization(guards = {"rcvr.getElementSize() == repl.getElementSize()", "isForwardCopy(rcvr, start, repl, replStart)"})
+    Object replaceSameSize(NativeObject rcvr, int start, int stop, NativeObject repl, int replStart) {
+        if (stop >= start) {
+            // the backing arrays have the same type
+            System.arraycopy(repl.getStorage(), replStart - 1, rcvr.getStorage(), start - 1, stop - start + 1);
         }
         return rcvr;
     }
 
     @Specialization
-    Object replace(NativeObject rcvr, int start, int stop, NativeObject repl, int replStart) {
+    Object replace(NativeObject rcvr, int start, int stop, NativeObject repl, int replStart,
+                    @Cached("create()") NativeAtNode atNode,
+                    @Cached("create()") NativeAtPutNode atPutNode) {
         int repOff = replStart - start;
         for (int i = start - 1; i < stop; i++) {
-            rcvr.setNativeAt0(i, repl.getNativeAt0(repOff + i));
+            atPutNode.executeAtPut(rcvr, i, atNode.executeAt(repl, repOff + i));
         }
         return rcvr;
     }
 
     @Specialization
-    Object replace(NativeObject rcvr, int start, int stop, BigInteger repl, int replStart) {
+    Object replace(NativeObject rcvr, int start, int stop, BigInteger repl, int replStart,
+                    @Cached("create()") NativeAtPutNode atPutNode) {
         int repOff = replStart - start;
         byte[] bytes = LargeInteger.getSqueakBytes(repl);
         for (int i = start - 1; i < stop; i++) {
-            rcvr.setNativeAt0(i, bytes[repOff + i]);
+            atPutNode.executeAtPut(rcvr, i, bytes[repOff + i]);
+        }
+        return rcvr;
+    }
+
+    protected static boolean isForwardCopy(NativeObject rcvr, int start, NativeObject repl, int replStart) {
+        return rcvr != repl || start <= replStart;
+    }
+
+    @Specialization(guards = {"rcvr.isIntStorage()", "repl.isIntStorage()", "isForwardCopy(rcvr, start, repl, replStart)"})
+    Object replaceInts(ListObject rcvr, int start, int stop, ListObject repl, int replStart) {
+        return copyStorage(rcvr, rcvr.getIntStorage(), start, stop, repl.getIntStorage(), replStart);
+    }
+
+    @Specialization(guards = {"rcvr.isLongStorage()", "repl.isLongStorage()", "isForwardCopy(rcvr, start, repl, replStart)"})
+    Object replaceLongs(ListObject rcvr, int start, int stop, ListObject repl, int replStart) {
+        return copyStorage(rcvr, rcvr.getLongStorage(), start, stop, repl.getLongStorage(), replStart);
+    }
+
+    @Specialization(guards = {"rcvr.isDoubleStorage()", "repl.isDoubleStorage()", "isForwardCopy(rcvr, start, repl, replStart)"})
+    Object replaceDoubles(ListObject rcvr, int start, int stop, ListObject repl, int replStart) {
+        return copyStorage(rcvr, rcvr.getDoubleStorage(), start, stop, repl.getDoubleStorage(), replStart);
+    }
+
+    @Specialization(guards = {"rcvr.isCharStorage()", "repl.isCharStorage()", "isForwardCopy(rcvr, start, repl, replStart)"})
+    Object replaceChars(ListObject rcvr, int start, int stop, ListObject repl, int replStart) {
+        return copyStorage(rcvr, rcvr.getCharStorage(), start, stop, repl.getCharStorage(), replStart);
+    }
+
+    @Specialization(guards = {"rcvr.isObjectStorage()", "repl.isObjectStorage()", "!rcvr.hasMethodDictOwner()", "isForwardCopy(rcvr, start, repl, replStart)"})
+    Object replaceObjects(ListObject rcvr, int start, int stop, ListObject repl, int replStart) {
+        return copyStorage(rcvr, rcvr.getObjectStorage(), start, stop, repl.getObjectStorage(), replStart);
+    }
+
+    /**
+     * The primitive copies front to back, which only matches a block copy unless the elements are
+     * moved to the back within the same list.
+     */
+    protected static boolean isForwardCopy(ListObject rcvr, int start, ListObject repl, int replStart) {
+        return rcvr != repl || start <= replStart;
+    }
+
+    /**
+     * Both lists use the same storage, so the elements can be copied without boxing them.
+     */
+    private static Object copyStorage(ListObject rcvr, Object rcvrStorage, int start, int stop, Object replStorage, int replStart) {
+        if (stop >= start) {
+            System.arraycopy(replStorage, replStart - 1, rcvrStorage, start - 1, stop - start + 1);
         }
         return rcvr;
     }
@@ -77,4 +145,10 @@ public class PrimReplaceFromToNode extends PrimitiveQuinaryOperation {
         }
         return rcvr;
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object arg1, Object arg2, Object arg3, Object arg4) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
@@ -0,0 +1,62 @@
+package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.frame.VirtualFrame;
+
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
+import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveNode;
+import de.hpi.swa.trufflesqueak.util.ImageWriter;
+
+public class PrimSnapshot extends PrimitiveNode {
+    public PrimSnapshot(CompiledMethodObject cm) {
+        super(cm);
+    }
+
+    @Override
+    public Object executeGeneric(VirtualFrame frame) {
+        writeImage();
+        // the running image continues, a resumed snapshot would see true
+        return method.image.sqFalse;
+    }
+
+    /**
+     * Writes the image next to the old one and only replaces it once the write succeeded, so a
+     * failed snapshot never leaves a truncated image behind.
+     */
+    @TruffleBoundary
+    private void writeImage() {
+        String imagePath = method.image.getImagePath();
+        if (imagePath == null) {
+            throw PrimitiveFailed.INSTANCE;
+        }
+        Path imageFile = Paths.get(imagePath).toAbsolutePath();
+        Path temporaryFile = imageFile.resolveSibling(imageFile.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ImageWriter.writeImage(method.image, channel);
+            }
+            Files.move(temporaryFile, imageFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            // the writer rejects object graphs it cannot represent with runtime exceptions
+            deleteQuietly(temporaryFile);
+            throw PrimitiveFailed.INSTANCE;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // the snapshot failed anyway
+        }
+    }
+}
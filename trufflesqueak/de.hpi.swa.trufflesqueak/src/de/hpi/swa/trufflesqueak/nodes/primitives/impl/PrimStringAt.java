@@ -1,19 +1,29 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.nodes.NativeAtNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimStringAt extends PrimitiveBinaryOperation {
+public abstract class PrimStringAt extends PrimitiveBinaryOperation {
     public PrimStringAt(CompiledMethodObject cm) {
         super(cm);
     }
 
     @Specialization
-    char stringAt(NativeObject obj, int idx) {
-        byte nativeAt0 = ((Long) obj.getNativeAt0(idx - 1)).byteValue();
-        return (char) nativeAt0;
+    char stringAt(NativeObject obj, int idx,
+                    @Cached("create()") NativeAtNode atNode) {
+        return (char) atNode.executeAt(obj, checkIndex(idx, obj.size()));
+    }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
     }
 }
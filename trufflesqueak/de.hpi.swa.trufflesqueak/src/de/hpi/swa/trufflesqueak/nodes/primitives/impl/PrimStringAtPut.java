@@ -1,9 +1,13 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.nodes.NativeAtPutNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveTernaryOperation;
 
 public class PrimStringAtPut extends PrimitiveTernaryOperation {
@@ -12,15 +16,23 @@ public class PrimStringAtPut extends PrimitiveTernaryOperation {
     }
 
     @Specialization
-    char atput(NativeObject obj, int idx, char value) {
-        obj.setNativeAt0(idx - 1, value);
+    char atput(NativeObject obj, int idx, char value,
+                    @Cached("create()") NativeAtPutNode atPutNode) {
+        atPutNode.executeAtPut(obj, checkIndex(idx, obj.size()), value);
         return value;
     }
 
     @Specialization
-    char atput(NativeObject obj, int idx, int value) {
-        char charValue = (char) ((Integer) value).byteValue();
-        obj.setNativeAt0(idx - 1, charValue);
+    char atput(NativeObject obj, int idx, int value,
+                    @Cached("create()") NativeAtPutNode atPutNode) {
+        char charValue = (char) (byte) value;
+        atPutNode.executeAtPut(obj, checkIndex(idx, obj.size()), charValue);
         return charValue;
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument1, Object argument2) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
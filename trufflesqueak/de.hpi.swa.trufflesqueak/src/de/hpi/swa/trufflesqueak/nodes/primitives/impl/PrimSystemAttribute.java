@@ -1,12 +1,14 @@
 package de.hpi.swa.trufflesqueak.nodes.primitives.impl;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Fallback;
 import com.oracle.truffle.api.dsl.Specialization;
 
+import de.hpi.swa.trufflesqueak.exceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveBinaryOperation;
 
-public class PrimSystemAttribute extends PrimitiveBinaryOperation {
+public abstract class PrimSystemAttribute extends PrimitiveBinaryOperation {
     public PrimSystemAttribute(CompiledMethodObject cm) {
         super(cm);
     }
@@ -30,4 +32,10 @@ public class PrimSystemAttribute extends PrimitiveBinaryOperation {
         }
         return null;
     }
+
+    @SuppressWarnings("unused")
+    @Fallback
+    protected Object fail(Object receiver, Object argument) {
+        throw PrimitiveFailed.INSTANCE;
+    }
 }
@@ -1,14 +1,19 @@
 package de.hpi.swa.trufflesqueak.nodes.roots;
 
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.frame.VirtualFrame;
 
+import de.hpi.swa.trufflesqueak.SqueakImageContext;
 import de.hpi.swa.trufflesqueak.SqueakLanguage;
 import de.hpi.swa.trufflesqueak.exceptions.SqueakExit;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 
 public class SqueakMainNode extends SqueakMethodNode {
+    private final SqueakImageContext image;
+
     public SqueakMainNode(SqueakLanguage language, CompiledCodeObject cc, boolean hasReceiver) {
         super(language, cc, hasReceiver);
+        image = cc.image;
     }
 
     @Override
@@ -17,6 +22,22 @@ public class SqueakMainNode extends SqueakMethodNode {
             return super.execute(frame);
         } catch (SqueakExit e) {
             return e.code;
+        } finally {
+            printStatistics();
+            image.saveASTCache();
+        }
+    }
+
+    @TruffleBoundary
+    private void printStatistics() {
+        if (image.config.isVerbose()) {
+            image.methodCache.printStatistics(image.getOutput());
+            if (image.getASTCache() != null) {
+                image.getASTCache().printStatistics(image.getOutput());
+            }
+        }
+        if (image.sendStatistics != null) {
+            image.sendStatistics.printReport(image.getOutput());
         }
     }
 }
@@ -1,5 +1,7 @@
 package de.hpi.swa.trufflesqueak.nodes.roots;
 
+import java.util.Arrays;
+
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.frame.FrameSlot;
@@ -17,6 +19,7 @@ import de.hpi.swa.trufflesqueak.model.CompiledBlockObject;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.model.FrameMarker;
 import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
+import de.hpi.swa.trufflesqueak.nodes.bytecodes.CallPrimitiveNode;
 import de.hpi.swa.trufflesqueak.nodes.context.FrameSlotWriteNode;
 
 public class SqueakMethodNode extends RootNode {
@@ -24,6 +27,7 @@ public class SqueakMethodNode extends RootNode {
     @Children final SqueakNode[] argumentNodes;
     @Children final SqueakNode[] copiedValuesNodes;
     @Children final SqueakNode[] ast;
+    @Child private CallPrimitiveNode primitiveNode;
     private final FrameSlot markerSlot;
     private final FrameSlot methodSlot;
 
@@ -34,7 +38,14 @@ public class SqueakMethodNode extends RootNode {
     protected SqueakMethodNode(SqueakLanguage language, CompiledCodeObject cc, boolean hasReceiver) {
         super(language, cc.getFrameDescriptor());
         code = cc;
-        ast = cc.getBytecodeAST();
+        SqueakNode[] bytecodeAST = cc.getBytecodeAST();
+        if (bytecodeAST.length > 0 && bytecodeAST[0] instanceof CallPrimitiveNode) {
+            // the primitive runs before the bytecodes and answers its result directly
+            primitiveNode = (CallPrimitiveNode) bytecodeAST[0];
+            ast = Arrays.copyOfRange(bytecodeAST, 1, bytecodeAST.length);
+        } else {
+            ast = bytecodeAST;
+        }
         int numArgs = cc.getNumArgs();
         if (hasReceiver) {
             argumentNodes = new SqueakNode[numArgs + 1];
@@ -90,6 +101,12 @@ public class SqueakMethodNode extends RootNode {
     @ExplodeLoop
     public Object execute(VirtualFrame frame) {
         enterFrame(frame);
+        if (primitiveNode != null) {
+            Object result = primitiveNode.executePrimitive(frame);
+            if (result != CallPrimitiveNode.FAILED) {
+                return result;
+            }
+        }
         for (SqueakNode node : ast) {
             try {
                 node.executeGeneric(frame);
@@ -0,0 +1,225 @@
+package de.hpi.swa.trufflesqueak.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+
+import de.hpi.swa.trufflesqueak.instrumentation.PrettyPrintVisitor;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
+import de.hpi.swa.trufflesqueak.nodes.SqueakNode;
+
+/**
+ * Persistent cache of decompiled ASTs, stored next to the image. Decompiled nodes belong to their
+ * method, they hold its frame slots and literals, so the cache does not store nodes but the
+ * {@link DecompilationPlan} of each method. Rebuilding an AST from its plan decodes the bytecodes
+ * into nodes and wires them up without looking ahead in the bytecodes again. Plans are keyed by a
+ * hash of the bytecodes and the shape of the literals, so an entry is found again for the same
+ * method in the next run, and a changed method gets a new entry.
+ *
+ * <pre>
+ * file:  magic, version, entry count, then per entry
+ * entry: key (long), decision count (int), one byte per decision
+ * </pre>
+ *
+ * In validation mode every AST rebuilt from a plan is compared with a fresh decompilation, and the
+ * fresh one wins if they differ.
+ */
+public final class ASTCache {
+    static final int MAGIC = 0x54534143; // "TSAC"
+    static final int VERSION = 1;
+
+    private final File file;
+    private final boolean validate;
+    private final Map<Long, int[]> plans = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private volatile boolean modified = false;
+
+    public ASTCache(File file, boolean validate) {
+        this.file = file;
+        this.validate = validate;
+    }
+
+    /**
+     * The cache file for an image, e.g. {@code Squeak.ast} for {@code Squeak.image}.
+     */
+    public static File fileFor(String imagePath) {
+        String basePath = imagePath.endsWith(".image") ? imagePath.substring(0, imagePath.length() - ".image".length()) : imagePath;
+        return new File(basePath + ".ast");
+    }
+
+    @TruffleBoundary
+    public SqueakNode[] getAST(CompiledCodeObject code) {
+        long key = keyOf(code);
+        int[] decisions = plans.get(key);
+        if (decisions != null) {
+            SqueakNode[] ast = replay(code, decisions);
+            if (ast != null) {
+                if (!validate) {
+                    hits.increment();
+                    return ast;
+                }
+                DecompilationPlan plan = DecompilationPlan.recording();
+                SqueakNode[] fresh = new Decompiler(code).getAST(plan);
+                if (render(ast).equals(render(fresh))) {
+                    hits.increment();
+                    return ast;
+                }
+                mismatches.increment();
+                misses.increment();
+                store(key, plan);
+                return fresh;
+            }
+            mismatches.increment();
+        }
+        misses.increment();
+        DecompilationPlan plan = DecompilationPlan.recording();
+        SqueakNode[] ast = new Decompiler(code).getAST(plan);
+        store(key, plan);
+        return ast;
+    }
+
+    /**
+     * Rebuilds the AST from a plan, or answers null if the plan does not fit the bytecodes.
+     */
+    private static SqueakNode[] replay(CompiledCodeObject code, int[] decisions) {
+        DecompilationPlan plan = DecompilationPlan.replaying(decisions);
+        SqueakNode[] ast;
+        try {
+            ast = new Decompiler(code).getAST(plan);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return plan.isComplete() ? ast : null;
+    }
+
+    private void store(long key, DecompilationPlan plan) {
+        plans.put(key, plan.toArray());
+        modified = true;
+    }
+
+    private static String render(SqueakNode[] ast) {
+        PrettyPrintVisitor visitor = new PrettyPrintVisitor();
+        visitor.visit(ast);
+        return visitor.build();
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of the bytecodes and of the kind of each literal. The values of the
+     * literals don't change how a method decompiles, only the bytecodes do.
+     */
+    static long keyOf(CompiledCodeObject code) {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, code.getClass().getName().hashCode());
+        Object[] literals = code.getLiterals();
+        int numLiterals = literals == null ? 0 : literals.length;
+        hash = mix(hash, numLiterals);
+        for (int i = 0; i < numLiterals; i++) {
+            Object literal = literals[i];
+            hash = mix(hash, literal == null ? 0 : literal.getClass().getName().hashCode());
+        }
+        byte[] bytes = code.getBytes();
+        int numBytes = bytes == null ? 0 : bytes.length;
+        hash = mix(hash, numBytes);
+        for (int i = 0; i < numBytes; i++) {
+            hash = (hash ^ (bytes[i] & 0xFF)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        long result = hash;
+        for (int shift = 0; shift < 32; shift += 8) {
+            result = (result ^ ((value >>> shift) & 0xFF)) * 0x100000001b3L;
+        }
+        return result;
+    }
+
+    /**
+     * Reads the plans stored by a previous run. A missing file, or one written by another version,
+     * leaves the cache empty.
+     */
+    public void load() throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                int[] decisions = new int[in.readInt()];
+                for (int j = 0; j < decisions.length; j++) {
+                    decisions[j] = in.readUnsignedByte();
+                }
+                plans.put(key, decisions);
+            }
+        }
+        modified = false;
+    }
+
+    /**
+     * Writes the cache back to its file if any plan was added since it was loaded.
+     */
+    public void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        modified = false;
+        Map<Long, int[]> snapshot = new HashMap<>(plans);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<Long, int[]> entry : snapshot.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for (int decision : entry.getValue()) {
+                    out.writeByte(decision);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return plans.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The number of stored plans that did not reproduce the AST of a fresh decompilation.
+     */
+    public long getMismatches() {
+        return mismatches.sum();
+    }
+
+    @TruffleBoundary
+    public void printStatistics(PrintWriter output) {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        double hitRate = total == 0 ? 0 : hitCount * 100.0 / total;
+        output.println(String.format("AST cache: %d lookups, %.2f%% hits, %d mismatches", total, hitRate, getMismatches()));
+    }
+}
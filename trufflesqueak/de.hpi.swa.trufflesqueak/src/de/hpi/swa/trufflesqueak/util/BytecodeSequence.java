@@ -0,0 +1,87 @@
+package de.hpi.swa.trufflesqueak.util;
+
+import java.util.AbstractList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import de.hpi.swa.trufflesqueak.nodes.bytecodes.SqueakBytecodeNode;
+
+/**
+ * The decoded bytecodes of a method as the decompiler walks them. Sub-sequences for branches and
+ * loop bodies are views onto the same array, and positions are remembered per node, so the
+ * {@link #indexOf(Object)} each instruction does while decompiling is constant time instead of a
+ * linear scan. Decisions that depend on looking ahead in the sequence go through the
+ * {@link DecompilationPlan} of the sequence, if it has one.
+ */
+public class BytecodeSequence extends AbstractList<SqueakBytecodeNode> {
+    private final SqueakBytecodeNode[] nodes;
+    private final IdentityHashMap<SqueakBytecodeNode, Integer> positions;
+    private final int offset;
+    private final int size;
+    private final DecompilationPlan plan;
+
+    public BytecodeSequence(List<SqueakBytecodeNode> sequence) {
+        this(sequence, null);
+    }
+
+    public BytecodeSequence(List<SqueakBytecodeNode> sequence, DecompilationPlan plan) {
+        nodes = sequence.toArray(new SqueakBytecodeNode[sequence.size()]);
+        positions = new IdentityHashMap<>(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] != null) {
+                positions.put(nodes[i], i);
+            }
+        }
+        offset = 0;
+        size = nodes.length;
+        this.plan = plan;
+    }
+
+    private BytecodeSequence(BytecodeSequence parent, int from, int to) {
+        nodes = parent.nodes;
+        positions = parent.positions;
+        offset = parent.offset + from;
+        size = to - from;
+        plan = parent.plan;
+    }
+
+    public int decide(IntSupplier analysis) {
+        return plan == null ? analysis.getAsInt() : plan.decide(analysis);
+    }
+
+    @Override
+    public SqueakBytecodeNode get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return nodes[offset + index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        Integer position = positions.get(o);
+        if (position == null || position < offset || position >= offset + size) {
+            return -1;
+        }
+        return position - offset;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public List<SqueakBytecodeNode> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size);
+        }
+        return new BytecodeSequence(this, fromIndex, toIndex);
+    }
+}
@@ -1,10 +1,7 @@
 package de.hpi.swa.trufflesqueak.util;
 
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.IntBuffer;
-import java.util.List;
-import java.util.Vector;
+import java.util.Arrays;
 
 import de.hpi.swa.trufflesqueak.SqueakImageContext;
 import de.hpi.swa.trufflesqueak.model.ClassObject;
@@ -18,7 +15,9 @@ import de.hpi.swa.trufflesqueak.model.PointersObject;
 import de.hpi.swa.trufflesqueak.model.SqueakObject;
 
 public class Chunk {
-    Object object;
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    volatile Object object;
 
     private ClassObject sqClass;
     private Object[] pointers;
@@ -30,7 +29,8 @@ public class Chunk {
     private final ImageReader reader;
     private final int format;
     private final int hash;
-    private final Vector<Integer> data;
+    private final int[] data;
+    private int dataSize;
     private final SqueakImageContext image;
 
     public Chunk(ImageReader reader,
@@ -47,105 +47,132 @@ public class Chunk {
         this.classid = classid;
         this.hash = hash;
         this.pos = pos;
-        this.data = new Vector<>();
+        this.data = new int[(int) size];
+        this.dataSize = 0;
     }
 
     public void append(int nextInt) {
-        data.add(nextInt);
+        data[dataSize++] = nextInt;
     }
 
     public long size() {
-        return data.size();
+        return dataSize;
     }
 
     public void removeLast() {
-        data.remove(data.size() - 1);
+        dataSize--;
     }
 
-    public Vector<Integer> data() {
-        return data;
+    /**
+     * The raw 32-bit slots of this chunk. The array is sized from the object header, so it must
+     * only be read once all slots have been appended. Slots dropped with {@link #removeLast()} are
+     * not included.
+     */
+    public int[] data() {
+        if (dataSize == data.length) {
+            return data;
+        }
+        return Arrays.copyOf(data, dataSize);
     }
 
     public SqueakObject asClassObject() {
-        if (object == null) {
-            assert format == 1;
-            object = new ClassObject(image);
-        } else if (object == ImageReader.NIL_OBJECT_PLACEHOLDER) {
+        Object result = object;
+        if (result == null) {
+            synchronized (this) {
+                if (object == null) {
+                    assert format == 1;
+                    object = new ClassObject(image);
+                }
+                result = object;
+            }
+        }
+        if (result == ImageReader.NIL_OBJECT_PLACEHOLDER) {
             return null;
         }
-        return (ClassObject) object;
+        return (ClassObject) result;
     }
 
     public Object asFloatObject() {
         assert format == 10 || format == 11;
-        ByteBuffer buf = ByteBuffer.allocate(8); // 2 * 32 bit
-        buf.order(ByteOrder.nativeOrder());
-        buf.put(getBytes());
-        buf.rewind();
-        long low = Integer.toUnsignedLong(buf.asIntBuffer().get(0));
-        long high = Integer.toUnsignedLong(buf.asIntBuffer().get(1));
+        long low = Integer.toUnsignedLong(data[0]);
+        long high = Integer.toUnsignedLong(data[1]);
         return Double.longBitsToDouble(high << 32 | low);
     }
 
+    /**
+     * Returns the object for this chunk, instantiating it on first access. Safe to call from
+     * multiple threads while the image is loaded in parallel.
+     */
     public Object asObject() {
-        if (object == null) {
-            if (format == 0) {
-                // no fields
-                object = new EmptyObject(image);
-            } else if (format == 1) {
-                // fixed pointers
-                // classes should already be instantiated at this point, check a
-                // bit
-                assert this.getSqClass() != image.metaclass && (this.getSqClass() == null || this.getSqClass().getSqClass() != image.metaclass);
-                object = new PointersObject(image);
-            } else if (format == 2) {
-                // indexable fields
-                object = new ListObject(image);
-            } else if (format == 3) {
-                if (this.getSqClass() == image.methodContextClass) {
-                    object = ContextObject.createWriteableContextObject(image);
-                } else {
-                    // fixed and indexable fields
-                    object = new ListObject(image);
+        Object result = object;
+        if (result == null) {
+            synchronized (this) {
+                if (object == null) {
+                    object = instantiate();
                 }
-            } else if (format == 4) {
-                // indexable weak fields // TODO: Weak
-                object = new ListObject(image);
-            } else if (format == 5) {
-                // fixed weak fields // TODO: Weak
-                object = new PointersObject(image);
-            } else if (format <= 8) {
-                assert false; // unused
-            } else if (format == 9) {
-                // 64-bit integers
-                object = new NativeObject(image, (byte) 8);
-            } else if (format <= 11) {
-                // 32-bit integers
-                if (this.getSqClass() == image.floatClass) {
-                    object = asFloatObject();
-                } else {
-                    object = new NativeObject(image, (byte) 4);
-                }
-            } else if (format <= 15) {
-                // 16-bit integers
-                object = new NativeObject(image, (byte) 2);
-            } else if (format <= 23) {
-                // bytes
-                if (this.getSqClass() == image.largePositiveIntegerClass || this.getSqClass() == image.largeNegativeIntegerClass) {
-                    object = new LargeInteger(image);
-                } else {
-                    object = new NativeObject(image, (byte) 1);
-                }
-            } else if (format <= 31) {
-                // compiled methods
-                object = new CompiledMethodObject(image);
+                result = object;
             }
         }
-        if (object == ImageReader.NIL_OBJECT_PLACEHOLDER) {
+        if (result == ImageReader.NIL_OBJECT_PLACEHOLDER) {
             return null;
         } else {
-            return object;
+            return result;
+        }
+    }
+
+    private Object instantiate() {
+        if (format == 0) {
+            // no fields
+            return new EmptyObject(image);
+        } else if (format == 1) {
+            // fixed pointers
+            // classes should already be instantiated at this point, check a
+            // bit
+            assert this.getSqClass() != image.metaclass && (this.getSqClass() == null || this.getSqClass().getSqClass() != image.metaclass);
+            return new PointersObject(image);
+        } else if (format == 2) {
+            // indexable fields
+            return new ListObject(image);
+        } else if (format == 3) {
+            if (this.getSqClass() == image.methodContextClass) {
+                return ContextObject.createWriteableContextObject(image);
+            } else {
+                // fixed and indexable fields
+                return new ListObject(image);
+            }
+        } else if (format == 4) {
+            // indexable weak fields // TODO: Weak
+            return new ListObject(image);
+        } else if (format == 5) {
+            // fixed weak fields // TODO: Weak
+            return new PointersObject(image);
+        } else if (format <= 8) {
+            assert false; // unused
+        } else if (format == 9) {
+            // 64-bit integers
+            return new NativeObject(image, (byte) 8);
+        } else if (format <= 11) {
+            // 32-bit integers
+            if (this.getSqClass() == image.floatClass) {
+                return asFloatObject();
+            } else {
+                return new NativeObject(image, (byte) 4);
+            }
+        } else if (format <= 15) {
+            // 16-bit integers
+            return new NativeObject(image, (byte) 2);
+        } else if (format <= 23) {
+            // bytes
+            if (this.getSqClass() == image.largePositiveIntegerClass || this.getSqClass() == image.largeNegativeIntegerClass) {
+                return new LargeInteger(image);
+            } else {
+                return new NativeObject(image, (byte) 1);
+            }
+        } else if (format <= 31) {
+            // compiled methods
+            return new CompiledMethodObject(image);
         }
+        return null;
     }
 
     public long getSize() {
@@ -165,14 +192,14 @@ public class Chunk {
     }
 
     public Object[] getPointers() {
-        return getPointers(data.size());
+        return getPointers(dataSize);
     }
 
     public Object[] getPointers(int end) {
         if (pointers == null) {
             pointers = new Object[end];
             for (int i = 0; i < end; i++) {
-                pointers[i] = decodePointer(data.get(i));
+                pointers[i] = decodePointer(data[i]);
             }
         }
         return pointers;
@@ -200,16 +227,11 @@ public class Chunk {
     }
 
     public byte[] getBytes(int start) {
-        byte[] bytes = new byte[((data.size() - start) * 4) - getPadding()];
-        List<Integer> subList = data.subList(start, data.size());
-        ByteBuffer buf = ByteBuffer.allocate(subList.size() * 4);
-        buf.order(ByteOrder.nativeOrder());
-        IntBuffer intBuf = buf.asIntBuffer();
-        for (int i : subList) {
-            intBuf.put(i);
-        }
+        byte[] bytes = new byte[((dataSize - start) * 4) - getPadding()];
         for (int i = 0; i < bytes.length; i++) {
-            bytes[i] = buf.get(i);
+            int word = data[start + (i >> 2)];
+            int shift = LITTLE_ENDIAN ? (i & 3) * 8 : (3 - (i & 3)) * 8;
+            bytes[i] = (byte) (word >> shift);
         }
         return bytes;
     }
@@ -231,6 +253,10 @@ public class Chunk {
     public byte getElementSize() {
         if ((16 <= format) && (format <= 23)) {
             return 1;
+        } else if ((12 <= format) && (format <= 15)) {
+            return 2;
+        } else if (format == 9) {
+            return 8;
         } else {
             return 4;
         }
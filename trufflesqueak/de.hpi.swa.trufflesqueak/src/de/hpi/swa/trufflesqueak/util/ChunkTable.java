@@ -0,0 +1,85 @@
+package de.hpi.swa.trufflesqueak.util;
+
+/**
+ * Maps object addresses to chunks without boxing the keys. Uses open addressing with linear
+ * probing over a power-of-two sized table, which is kept at most half full.
+ */
+public class ChunkTable {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private int[] keys;
+    private Chunk[] values;
+    private int size;
+
+    public ChunkTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ChunkTable(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new Chunk[capacity];
+    }
+
+    private static int indexFor(int address, int mask) {
+        // addresses are 8-byte aligned, so mix the upper bits in before masking
+        int h = address * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    public Chunk get(int address) {
+        int mask = keys.length - 1;
+        int i = indexFor(address, mask);
+        while (values[i] != null) {
+            if (keys[i] == address) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public void put(int address, Chunk chunk) {
+        assert chunk != null;
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length << 1);
+        }
+        if (insert(keys, values, address, chunk)) {
+            size++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static boolean insert(int[] keys, Chunk[] values, int address, Chunk chunk) {
+        int mask = keys.length - 1;
+        int i = indexFor(address, mask);
+        while (values[i] != null) {
+            if (keys[i] == address) {
+                values[i] = chunk;
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = address;
+        values[i] = chunk;
+        return true;
+    }
+
+    private void resize(int capacity) {
+        int[] newKeys = new int[capacity];
+        Chunk[] newValues = new Chunk[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                insert(newKeys, newValues, keys[i], values[i]);
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+}
@@ -0,0 +1,67 @@
+package de.hpi.swa.trufflesqueak.util;
+
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+
+/**
+ * The decisions the decompiler takes by looking ahead in a method's bytecodes: whether a
+ * conditional jump closes a loop or has an else branch, which kind of cascade or macro a send
+ * belongs to, whether a primitive asks for an error code. Together with the bytecodes they
+ * determine the decompiled AST. A plan either records these decisions on a fresh decompilation, or
+ * replays recorded ones, so the AST can be rebuilt without analysing the bytecodes again, see
+ * {@link ASTCache}.
+ */
+public final class DecompilationPlan {
+    private final boolean replaying;
+    private int[] decisions;
+    private int size;
+    private int position = 0;
+
+    private DecompilationPlan(int[] decisions, boolean replaying) {
+        this.decisions = decisions;
+        this.size = replaying ? decisions.length : 0;
+        this.replaying = replaying;
+    }
+
+    public static DecompilationPlan recording() {
+        return new DecompilationPlan(new int[16], false);
+    }
+
+    public static DecompilationPlan replaying(int[] decisions) {
+        return new DecompilationPlan(decisions, true);
+    }
+
+    /**
+     * Answers the next decision. A recording plan runs the analysis and remembers its answer, a
+     * replaying plan answers the recorded one.
+     *
+     * @throws IllegalStateException if a replayed plan has no decisions left, i.e. it was not
+     *             recorded for these bytecodes
+     */
+    public int decide(IntSupplier analysis) {
+        if (replaying) {
+            if (position >= size) {
+                throw new IllegalStateException("decompilation plan exhausted after " + size + " decisions");
+            }
+            return decisions[position++];
+        }
+        int decision = analysis.getAsInt();
+        if (size == decisions.length) {
+            decisions = Arrays.copyOf(decisions, size * 2);
+        }
+        decisions[size++] = decision;
+        return decision;
+    }
+
+    /**
+     * Whether a replayed plan answered all of its decisions, a plan that was recorded for
+     * different bytecodes usually does not.
+     */
+    public boolean isComplete() {
+        return !replaying || position == size;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(decisions, size);
+    }
+}
@@ -3,6 +3,7 @@ package de.hpi.swa.trufflesqueak.util;
 import java.util.List;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.function.IntSupplier;
 
 import de.hpi.swa.trufflesqueak.SqueakImageContext;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
@@ -39,6 +40,7 @@ import de.hpi.swa.trufflesqueak.nodes.bytecodes.jump.UnconditionalJump;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.send.SecondExtendedSendNode;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.send.Send;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.send.SendSelector;
+import de.hpi.swa.trufflesqueak.nodes.bytecodes.send.SendSpecialSelector;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.send.SingleExtendedSendNode;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.send.SingleExtendedSuperNode;
 
@@ -55,6 +57,23 @@ public class Decompiler {
     }
 
     public SqueakNode[] getAST() {
+        return getAST(null);
+    }
+
+    /**
+     * Decompiles the method, taking the decisions that need to look ahead in the bytecodes from
+     * the given plan, if any.
+     */
+    public SqueakNode[] getAST(DecompilationPlan plan) {
+        Stack<SqueakNode> stack = new Stack<>();
+        return blockFrom(new BytecodeSequence(decodeSequence(), plan), stack);
+    }
+
+    /**
+     * Decodes the bytecodes into one node per instruction. A multi-byte instruction is placed at
+     * the index of its last byte, the indices of its other bytes hold null.
+     */
+    public Vector<SqueakBytecodeNode> decodeSequence() {
         int index[] = {0};
 
         Vector<SqueakBytecodeNode> sequence = new Vector<>();
@@ -65,9 +84,18 @@ public class Decompiler {
             }
             sequence.add(node);
         }
+        return sequence;
+    }
 
-        Stack<SqueakNode> stack = new Stack<>();
-        return blockFrom(sequence, stack);
+    /**
+     * Takes a decision that looks ahead in the sequence, or replays it from the plan of the
+     * sequence when the AST is rebuilt from a {@link DecompilationPlan}.
+     */
+    public static int decide(List<SqueakBytecodeNode> sequence, IntSupplier analysis) {
+        if (sequence instanceof BytecodeSequence) {
+            return ((BytecodeSequence) sequence).decide(analysis);
+        }
+        return analysis.getAsInt();
     }
 
     public static SqueakNode[] blockFrom(List<SqueakBytecodeNode> sequence, Stack<SqueakNode> stack) {
@@ -205,37 +233,37 @@ public class Decompiler {
             case 172: case 173: case 174: case 175:
                 return new ConditionalJump(code, index, b, nextByte(indexRef), false);
             case 176:
-                return new SendSelector(code, index, getImage().plus, 1);
+                return new SendSpecialSelector(code, index, getImage().plus, 1);
             case 177:
-                return new SendSelector(code, index, getImage().minus, 1);
+                return new SendSpecialSelector(code, index, getImage().minus, 2);
             case 178:
-                return new SendSelector(code, index, getImage().lt, 1);
+                return new SendSpecialSelector(code, index, getImage().lt, 3);
             case 179:
-                return new SendSelector(code, index, getImage().gt, 1);
+                return new SendSpecialSelector(code, index, getImage().gt, 4);
             case 180:
-                return new SendSelector(code, index, getImage().le, 1);
+                return new SendSpecialSelector(code, index, getImage().le, 5);
             case 181:
-                return new SendSelector(code, index, getImage().ge, 1);
+                return new SendSpecialSelector(code, index, getImage().ge, 6);
             case 182:
-                return new SendSelector(code, index, getImage().eq, 1);
+                return new SendSpecialSelector(code, index, getImage().eq, 7);
             case 183:
-                return new SendSelector(code, index, getImage().ne, 1);
+                return new SendSpecialSelector(code, index, getImage().ne, 8);
             case 184:
-                return new SendSelector(code, index, getImage().times, 1);
+                return new SendSpecialSelector(code, index, getImage().times, 9);
             case 185:
-                return new SendSelector(code, index, getImage().div, 1);
+                return new SendSpecialSelector(code, index, getImage().div, 10);
             case 186:
-                return new SendSelector(code, index, getImage().modulo, 1);
+                return new SendSpecialSelector(code, index, getImage().modulo, 11);
             case 187:
                 return new SendSelector(code, index, getImage().pointAt, 1);
             case 188:
-                return new SendSelector(code, index, getImage().bitShift, 1);
+                return new SendSpecialSelector(code, index, getImage().bitShift, 17);
             case 189:
-                return new SendSelector(code, index, getImage().divide, 1);
+                return new SendSpecialSelector(code, index, getImage().divide, 12);
             case 190:
-                return new SendSelector(code, index, getImage().bitAnd, 1);
+                return new SendSpecialSelector(code, index, getImage().bitAnd, 14);
             case 191:
-                return new SendSelector(code, index, getImage().bitOr, 1);
+                return new SendSpecialSelector(code, index, getImage().bitOr, 15);
             case 192:
                 return new SendSelector(code, index, getImage().at, 1);
             case 193:
@@ -249,7 +277,7 @@ public class Decompiler {
             case 197:
                 return new SendSelector(code, index, getImage().atEnd, 0);
             case 198:
-                return new SendSelector(code, index, getImage().equivalent, 1);
+                return new SendSpecialSelector(code, index, getImage().equivalent, 110);
             case 199:
                 return new SendSelector(code, index, getImage().klass, 0);
             case 200:
@@ -0,0 +1,173 @@
+package de.hpi.swa.trufflesqueak.util;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompresses an image on a separate thread and hands the inflated bytes over in chunks, so
+ * decompression overlaps with parsing the objects. Compression is detected from the magic number at
+ * the start of the file.
+ */
+public final class DecompressingInputStream extends InputStream implements Runnable {
+    private static final int GZIP_MAGIC = 0x8b1f; // little-endian
+    private static final int ZSTD_MAGIC = 0xfd2fb528; // little-endian
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int QUEUED_CHUNKS = 64;
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final InputStream source;
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+    private final Thread thread;
+    private volatile IOException failure;
+    private volatile boolean closed;
+    private volatile long bytesDecompressed;
+    private volatile long decompressionNanos;
+    private byte[] chunk = new byte[0];
+    private int chunkPosition;
+
+    private DecompressingInputStream(InputStream source) {
+        this.source = source;
+        this.thread = new Thread(this, "TruffleSqueak image decompressor");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns a decompressing stream if the image is compressed, null if it can be read as is. The
+     * file position is not changed by the check.
+     */
+    public static DecompressingInputStream forCompressed(FileInputStream inputStream) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        if (inputStream.getChannel().read(magic, 0) != 4) {
+            return null;
+        }
+        if ((magic.getInt(0) & 0xffff) == GZIP_MAGIC) {
+            return new DecompressingInputStream(new GZIPInputStream(inputStream, CHUNK_SIZE));
+        } else if (magic.getInt(0) == ZSTD_MAGIC) {
+            throw new IOException("zstd-compressed images are not supported, decompress the image with 'zstd -d' first");
+        }
+        return null;
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        try {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int filled = 0;
+            int read;
+            while ((read = source.read(buffer, filled, CHUNK_SIZE - filled)) >= 0) {
+                filled += read;
+                if (filled == CHUNK_SIZE) {
+                    chunks.put(buffer);
+                    bytesDecompressed += filled;
+                    buffer = new byte[CHUNK_SIZE];
+                    filled = 0;
+                }
+            }
+            if (filled > 0) {
+                byte[] last = new byte[filled];
+                System.arraycopy(buffer, 0, last, 0, filled);
+                chunks.put(last);
+                bytesDecompressed += filled;
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            // the stream was closed before the end of the image
+            return;
+        } finally {
+            decompressionNanos = System.nanoTime() - start;
+            try {
+                source.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        try {
+            chunks.put(END_OF_STREAM);
+        } catch (InterruptedException e) {
+            // closed, nobody is waiting for the end anymore
+        }
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (closed) {
+            // the decompressor is gone, waiting for its next chunk would block forever
+            throw new IOException("Stream closed");
+        }
+        if (chunk == END_OF_STREAM) {
+            return false;
+        }
+        try {
+            chunk = chunks.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        chunkPosition = 0;
+        if (chunk == END_OF_STREAM) {
+            if (failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (chunkPosition == chunk.length && !nextChunk()) {
+            return -1;
+        }
+        return chunk[chunkPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (chunkPosition == chunk.length && !nextChunk()) {
+            return -1;
+        }
+        int count = Math.min(len, chunk.length - chunkPosition);
+        System.arraycopy(chunk, chunkPosition, b, off, count);
+        chunkPosition += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return chunk.length - chunkPosition;
+    }
+
+    /**
+     * Stops the decompressor, which may be blocked handing over a chunk nobody is going to read.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    public long getBytesDecompressed() {
+        return bytesDecompressed;
+    }
+
+    /**
+     * The throughput of the decompressor thread, including the time it waited for the parser.
+     */
+    public long getBytesPerSecond() {
+        long nanos = decompressionNanos;
+        return nanos == 0 ? 0 : bytesDecompressed * 1000000000L / nanos;
+    }
+}
@@ -1,14 +1,20 @@
 package de.hpi.swa.trufflesqueak.util;
 
 import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.HashMap;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 import de.hpi.swa.trufflesqueak.SqueakImageContext;
 import de.hpi.swa.trufflesqueak.model.ClassObject;
@@ -23,7 +29,10 @@ public class ImageReader {
     private static final long SLOTS_MASK = 0xFF << 56;
     private static final long OVERFLOW_SLOTS = 255;
     private static final int HIDDEN_ROOTS_CHUNK = 4; // nil, false, true, freeList, hiddenRoots
+    private static final int PARALLEL_LOAD_THRESHOLD = 4096; // chunks per fork-join task
     final BufferedInputStream stream;
+    final FileChannel channel;
+    final MappedByteBuffer mappedImage;
     final ByteBuffer shortBuf = ByteBuffer.allocate(2);
     final ByteBuffer intBuf = ByteBuffer.allocate(4);
     final ByteBuffer longBuf = ByteBuffer.allocate(8);
@@ -42,40 +51,103 @@ public class ImageReader {
     private int firstSegmentSize;
     private int freeOldSpace;
     private int position;
+    private int mappedOffset;
     private Vector<Chunk> chunklist;
-    HashMap<Integer, Chunk> chunktable;
+    ChunkTable chunktable;
     private PrintWriter output;
 
-    public ImageReader(FileInputStream inputStream, PrintWriter printWriter) throws FileNotFoundException {
+    public ImageReader(FileInputStream inputStream, PrintWriter printWriter) throws IOException {
+        this(inputStream, printWriter, false);
+    }
+
+    /**
+     * When memoryMapped is set, the image file is mapped into memory and all header words and slots
+     * are decoded from the mapped buffer at absolute offsets, instead of being copied through the
+     * stream one word at a time. Images that do not fit into a single mapping are streamed anyway.
+     */
+    public ImageReader(FileInputStream inputStream, PrintWriter printWriter, boolean memoryMapped) throws IOException {
+        this(inputStream, memoryMapped ? mappableChannel(inputStream) : null, printWriter);
+    }
+
+    /**
+     * A mapped buffer and the int offsets into it cover at most {@link Integer#MAX_VALUE} bytes.
+     */
+    private static FileChannel mappableChannel(FileInputStream inputStream) throws IOException {
+        FileChannel fileChannel = inputStream.getChannel();
+        return fileChannel.size() <= Integer.MAX_VALUE ? fileChannel : null;
+    }
+
+    /**
+     * Reads the image from a stream that cannot be mapped, e.g. the output of a decompressor.
+     */
+    public ImageReader(InputStream inputStream, PrintWriter printWriter) throws IOException {
+        this(inputStream, null, printWriter);
+    }
+
+    private ImageReader(InputStream inputStream, FileChannel mappedChannel, PrintWriter printWriter) throws IOException {
         shortBuf.order(ByteOrder.nativeOrder());
         intBuf.order(ByteOrder.nativeOrder());
         longBuf.order(ByteOrder.nativeOrder());
         this.output = printWriter;
-        this.stream = new BufferedInputStream(inputStream);
+        if (mappedChannel != null) {
+            this.stream = null;
+            this.channel = mappedChannel;
+            this.mappedImage = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            this.mappedImage.order(ByteOrder.nativeOrder());
+        } else {
+            this.stream = new BufferedInputStream(inputStream);
+            this.channel = null;
+            this.mappedImage = null;
+        }
         this.position = 0;
+        this.mappedOffset = 0;
         this.chunklist = new Vector<>();
-        this.chunktable = new HashMap<>();
+        this.chunktable = new ChunkTable();
     }
 
     void nextInto(ByteBuffer buf) throws IOException {
         assert buf.hasArray();
         this.position += buf.capacity();
         buf.rewind();
-        stream.read(buf.array());
+        byte[] bytes = buf.array();
+        int read = 0;
+        while (read < bytes.length) {
+            // streams such as the decompressor may return fewer bytes than requested
+            int count = stream.read(bytes, read, bytes.length - read);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of image");
+            }
+            read += count;
+        }
         buf.rewind();
     }
 
     short nextShort() throws IOException {
+        if (mappedImage != null) {
+            short value = mappedImage.getShort(mappedOffset + position);
+            position += 2;
+            return value;
+        }
         nextInto(shortBuf);
         return shortBuf.getShort();
     }
 
     int nextInt() throws IOException {
+        if (mappedImage != null) {
+            int value = mappedImage.getInt(mappedOffset + position);
+            position += 4;
+            return value;
+        }
         nextInto(intBuf);
         return intBuf.getInt();
     }
 
     long nextLong() throws IOException {
+        if (mappedImage != null) {
+            long value = mappedImage.getLong(mappedOffset + position);
+            position += 8;
+            return value;
+        }
         nextInto(longBuf);
         return longBuf.getLong();
     }
@@ -116,11 +188,21 @@ public class ImageReader {
 
     void skipToBody() throws IOException {
         int skip = headerSize - this.position;
-        this.stream.skip(skip);
+        if (stream != null) {
+            long skipped = 0;
+            while (skipped < skip) {
+                long count = this.stream.skip(skip - skipped);
+                if (count <= 0) {
+                    throw new EOFException("Unexpected end of image");
+                }
+                skipped += count;
+            }
+        }
         this.position += skip;
     }
 
     void readBody(SqueakImageContext image) throws IOException {
+        mappedOffset += position; // object addresses are relative to the start of the body
         position = 0;
         int segmentEnd = firstSegmentSize;
         int currentAddressSwizzle = oldBaseAddress;
@@ -148,7 +230,11 @@ public class ImageReader {
             segmentEnd = segmentEnd + nextSegmentSize;
             currentAddressSwizzle += bridgeSpan * 4;
         }
-        this.stream.close();
+        if (stream != null) {
+            this.stream.close();
+        } else {
+            this.channel.close(); // the mapping stays valid until it is garbage collected
+        }
     }
 
     private Chunk readObject(SqueakImageContext image) throws IOException {
@@ -174,11 +260,20 @@ public class ImageReader {
         assert size >= 0;
         assert 0 <= format && format <= 31;
         Chunk chunk = new Chunk(this, image, size, format, classid, hash, pos);
-        for (long i = 0; i < wordsFor(size); i++) {
-            if (chunk.size() < size) {
-                chunk.append(nextInt());
-            } else {
-                nextInt(); // don't add trailing alignment words
+        if (mappedImage != null) {
+            // decode the slots in place and skip over trailing alignment words at once
+            int slotsOffset = mappedOffset + position;
+            position += (int) wordsFor(size) * 4;
+            for (int i = 0; i < size; i++) {
+                chunk.append(mappedImage.getInt(slotsOffset + i * 4));
+            }
+        } else {
+            for (long i = 0; i < wordsFor(size); i++) {
+                if (chunk.size() < size) {
+                    chunk.append(nextInt());
+                } else {
+                    nextInt(); // don't add trailing alignment words
+                }
             }
         }
         if (format < 10 && classid != FREE_OBJECT_CLASS_INDEX_PUN) {
@@ -202,7 +297,7 @@ public class ImageReader {
 
     Chunk specialObjectChunk(int idx) {
         Chunk specialObjectsChunk = chunktable.get(specialObjectsPointer);
-        return chunktable.get(specialObjectsChunk.data().get(idx));
+        return chunktable.get(specialObjectsChunk.data()[idx]);
     }
 
     void setPrebuiltObject(int idx, Object object) {
@@ -259,21 +354,28 @@ public class ImageReader {
         };
 
         Chunk specialObjectsChunk = chunktable.get(specialObjectsPointer);
-        Chunk specialSelectorChunk = chunktable.get(specialObjectsChunk.data().get(SPECIAL_SELECTORS_INDEX));
+        Chunk specialSelectorChunk = chunktable.get(specialObjectsChunk.data()[SPECIAL_SELECTORS_INDEX]);
 
         for (int i = 0; i < specialSelectors.length; i++) {
-            chunktable.get(specialSelectorChunk.data().get(i * 2)).object = specialSelectors[i];
+            chunktable.get(specialSelectorChunk.data()[i * 2]).object = specialSelectors[i];
         }
     }
 
-    void initObjects(SqueakImageContext image) {
+    void initObjects(SqueakImageContext image, boolean parallelLoad) {
         initPrebuiltConstant(image);
         initPrebuiltSelectors(image);
 
+        boolean parallel = parallelLoad && ForkJoinPool.getCommonPoolParallelism() > 1;
+        Chunk[] chunks = parallel ? chunklist.toArray(new Chunk[chunklist.size()]) : null;
+
         // connect all instances to their classes
         output.println("Connect classes");
-        for (Chunk chunk : chunklist) {
-            chunk.setSqClass(classOf(chunk, image));
+        if (parallel) {
+            forEachInParallel(chunks, chunk -> chunk.setSqClass(classOf(chunk, image)));
+        } else {
+            for (Chunk chunk : chunklist) {
+                chunk.setSqClass(classOf(chunk, image));
+            }
         }
 
         output.println("Instantiate classes");
@@ -284,8 +386,8 @@ public class ImageReader {
                     Chunk metaClass = chunktable.get(potentialClassPtr);
                     if (metaClass != null) {
                         if (metaClass.getSqClass() == image.metaclass) {
-                            Chunk classInstance = chunktable.get(metaClass.data().lastElement());
-                            assert metaClass.data().size() == 6;
+                            Chunk classInstance = chunktable.get(metaClass.data()[metaClass.data().length - 1]);
+                            assert metaClass.data().length == 6;
                             metaClass.asClassObject();
                             classInstance.asClassObject();
                         }
@@ -296,22 +398,70 @@ public class ImageReader {
 
         // fillin objects
         output.println("Fillin Objects");
-        for (Chunk chunk : chunklist) {
-            Object chunkObject = chunk.asObject();
-            if (chunkObject instanceof SqueakObject) {
-                ((SqueakObject) chunkObject).fillin(chunk);
+        if (parallel) {
+            // classes register themselves with their superclass during fillin, so they are
+            // filled in afterwards on this thread
+            forEachInParallel(chunks, chunk -> {
+                Object chunkObject = chunk.asObject();
+                if (chunkObject instanceof SqueakObject && !(chunkObject instanceof ClassObject)) {
+                    ((SqueakObject) chunkObject).fillin(chunk);
+                }
+            });
+            for (Chunk chunk : chunks) {
+                Object chunkObject = chunk.asObject();
+                if (chunkObject instanceof ClassObject) {
+                    ((ClassObject) chunkObject).fillin(chunk);
+                }
+            }
+        } else {
+            for (Chunk chunk : chunklist) {
+                Object chunkObject = chunk.asObject();
+                if (chunkObject instanceof SqueakObject) {
+                    ((SqueakObject) chunkObject).fillin(chunk);
+                }
             }
         }
 
         output.println();
     }
 
+    private static void forEachInParallel(Chunk[] chunks, Consumer<Chunk> action) {
+        ForkJoinPool.commonPool().invoke(new ChunkRangeAction(chunks, 0, chunks.length, action));
+    }
+
+    private static final class ChunkRangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Chunk[] chunks;
+        private final int start;
+        private final int end;
+        private final Consumer<Chunk> action;
+
+        ChunkRangeAction(Chunk[] chunks, int start, int end, Consumer<Chunk> action) {
+            this.chunks = chunks;
+            this.start = start;
+            this.end = end;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_LOAD_THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    action.accept(chunks[i]);
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new ChunkRangeAction(chunks, start, middle, action), new ChunkRangeAction(chunks, middle, end, action));
+            }
+        }
+    }
+
     Chunk classChunkOf(Chunk chunk, SqueakImageContext image) {
         int majorIdx = majorClassIndexOf(chunk.classid);
         int minorIdx = minorClassIndexOf(chunk.classid);
         Chunk hiddenRoots = chunklist.get(HIDDEN_ROOTS_CHUNK);
-        Chunk classTablePage = chunktable.get(hiddenRoots.data().get(majorIdx));
-        return chunktable.get(classTablePage.data().get(minorIdx));
+        Chunk classTablePage = chunktable.get(hiddenRoots.data()[majorIdx]);
+        return chunktable.get(classTablePage.data()[minorIdx]);
     }
 
     ClassObject classOf(Chunk chunk, SqueakImageContext image) {
@@ -327,13 +477,34 @@ public class ImageReader {
     }
 
     public void readImage(SqueakImageContext image) throws IOException {
+        readImage(image, image.config.isParallelLoad());
+    }
+
+    /**
+     * When parallelLoad is set, classes are connected and objects filled in on the common fork/join
+     * pool, if it has more than one thread.
+     */
+    public void readImage(SqueakImageContext image, boolean parallelLoad) throws IOException {
         readHeader();
         readBody(image);
-        initObjects(image);
+        initObjects(image, parallelLoad);
     }
 
     public static void readImage(SqueakImageContext squeakImageContext, FileInputStream inputStream) throws IOException {
-        ImageReader instance = new ImageReader(inputStream, squeakImageContext.getOutput());
-        instance.readImage(squeakImageContext);
+        DecompressingInputStream decompressor = DecompressingInputStream.forCompressed(inputStream);
+        if (decompressor == null) {
+            ImageReader instance = new ImageReader(inputStream, squeakImageContext.getOutput(), squeakImageContext.config.isMemoryMapped());
+            instance.readImage(squeakImageContext);
+            return;
+        }
+        try {
+            new ImageReader(decompressor, squeakImageContext.getOutput()).readImage(squeakImageContext);
+        } finally {
+            // stops the decompressor when reading fails before the end of the image
+            decompressor.close();
+        }
+        if (squeakImageContext.config.isVerbose()) {
+            squeakImageContext.getOutput().println("Decompressed " + decompressor.getBytesDecompressed() + " bytes at " + decompressor.getBytesPerSecond() + " bytes/s");
+        }
     }
 }
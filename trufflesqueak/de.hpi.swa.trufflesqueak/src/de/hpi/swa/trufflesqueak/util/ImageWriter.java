@@ -0,0 +1,451 @@
+package de.hpi.swa.trufflesqueak.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+
+import de.hpi.swa.trufflesqueak.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.model.AbstractPointersObject;
+import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledBlockObject;
+import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.EmptyObject;
+import de.hpi.swa.trufflesqueak.model.LargeInteger;
+import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.model.SqueakObject;
+
+/**
+ * Writes the object graph reachable from the special objects array as a 32-bit Spur image that
+ * {@link ImageReader} (and a regular Cog VM) can load again. The graph is walked once to assign
+ * addresses, then the single segment is streamed through a {@link FileChannel} from a large direct
+ * buffer.
+ *
+ * nil, false and true, the free lists and the hidden roots with the class table are synthesized,
+ * because the VM represents them as Java values or does not have them at all. Every class gets
+ * a class table entry, and its identity hash is its class index.
+ */
+public class ImageWriter {
+    private static final int IMAGE_VERSION = 0x00001979;
+    private static final int HEADER_SIZE = 64;
+    private static final int OLD_BASE_ADDRESS = 0x10000000;
+    private static final int BUFFER_SIZE = 1 << 22;
+    private static final int CLASS_TABLE_PAGE_SIZE = 1024;
+    private static final int CLASS_TABLE_ROOT_SLOTS = 4096;
+    private static final int HIDDEN_ROOT_SLOTS = CLASS_TABLE_ROOT_SLOTS + 8;
+    private static final int NUM_FREE_LISTS = 32;
+    private static final int OVERFLOW_SLOTS = 255;
+    // class index puns, see SpurMemoryManager
+    private static final int ARRAY_CLASS_INDEX_PUN = 16;
+    private static final int WORD_SIZE_CLASS_INDEX_PUN = 17;
+    private static final int FIRST_FREE_CLASS_INDEX = 32;
+    // segment bridge, see SpurMemoryManager>>initSegmentBridgeWithBytes:at:
+    private static final long SEGMENT_BRIDGE = (1L << 30) | (10L << 24) | 3L | (1L << 55);
+
+    private final SqueakImageContext image;
+    private final ArrayList<Object> objects = new ArrayList<>();
+    private final ArrayList<Object[]> slotLists = new ArrayList<>();
+    private final IdentityHashMap<Object, Integer> oops = new IdentityHashMap<>();
+    private final IdentityHashMap<ClassObject, Integer> classIndices = new IdentityHashMap<>();
+    private Object[] classTablePages;
+    private ByteBuffer buffer;
+    private FileChannel channel;
+    private int nextAddress;
+    private int lastHash;
+
+    public ImageWriter(SqueakImageContext image) {
+        this.image = image;
+    }
+
+    /**
+     * Objects that exist in the image but not in this VM's object model.
+     */
+    private static final class SyntheticObject {
+        private final int classIndex;
+        private final int format;
+        private final byte[] bytes;
+
+        SyntheticObject(int classIndex, int format, byte[] bytes) {
+            this.classIndex = classIndex;
+            this.format = format;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Boxed floats and large integers for values that do not fit into a tagged SmallInteger.
+     */
+    private static final class BoxedValue {
+        private final ClassObject sqClass;
+        private final int format;
+        private final byte[] bytes;
+
+        BoxedValue(ClassObject sqClass, int format, byte[] bytes) {
+            this.sqClass = sqClass;
+            this.format = format;
+            this.bytes = bytes;
+        }
+    }
+
+    public void write(FileChannel fileChannel) throws IOException {
+        collectObjects();
+        assignClassIndices();
+        assignAddresses();
+        channel = fileChannel;
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
+        writeHeader();
+        for (int i = 0; i < objects.size(); i++) {
+            writeObject(objects.get(i), slotLists.get(i));
+        }
+        ensure(16);
+        buffer.putLong(SEGMENT_BRIDGE);
+        buffer.putLong(0); // no next segment
+        flush();
+    }
+
+    private void collectObjects() {
+        add(new SyntheticObject(-1, 0, null), null); // nil
+        add(image.sqFalse, null);
+        add(image.sqTrue, null);
+        add(new SyntheticObject(WORD_SIZE_CLASS_INDEX_PUN, 10, new byte[NUM_FREE_LISTS * 4]), null);
+        add(new SyntheticObject(ARRAY_CLASS_INDEX_PUN, 2, null), null); // hidden roots, slots come later
+        enqueue(image.nilClass);
+        enqueue(image.falseClass);
+        enqueue(image.trueClass);
+        enqueue(image.specialObjectsArray);
+        for (int i = 5; i < objects.size(); i++) {
+            Object object = objects.get(i);
+            if (object instanceof BaseSqueakObject) {
+                BaseSqueakObject sqObject = (BaseSqueakObject) object;
+                if (sqObject.getSqClass() == null) {
+                    throw new RuntimeException("Cannot write " + sqObject.getClass().getSimpleName() + " without a class");
+                }
+                enqueue(sqObject.getSqClass());
+                Object[] slots = slotsOf(sqObject);
+                for (int j = 0; j < slots.length; j++) {
+                    slots[j] = encodable(slots[j]);
+                }
+                slotLists.set(i, slots);
+            }
+        }
+    }
+
+    private void add(Object object, Object[] slots) {
+        oops.put(object, objects.size());
+        objects.add(object);
+        slotLists.add(slots);
+    }
+
+    private void enqueue(BaseSqueakObject object) {
+        if (object != null && !oops.containsKey(object)) {
+            add(object, null);
+        }
+    }
+
+    private Object encodable(Object value) {
+        if (value instanceof CompiledBlockObject) {
+            // blocks are part of their method in the image
+            return null;
+        } else if (value instanceof BaseSqueakObject) {
+            enqueue((BaseSqueakObject) value);
+            return value;
+        } else if (value == null || value instanceof Boolean || value instanceof Character) {
+            return value;
+        } else if (value instanceof Integer || value instanceof Long) {
+            long longValue = ((Number) value).longValue();
+            if (isSmallInteger(longValue)) {
+                return value;
+            }
+            BigInteger integer = BigInteger.valueOf(longValue);
+            ClassObject sqClass = integer.signum() < 0 ? image.largeNegativeIntegerClass : image.largePositiveIntegerClass;
+            return box(sqClass, LargeInteger.getSqueakBytes(integer), 16);
+        } else if (value instanceof Double) {
+            long bits = Double.doubleToRawLongBits((double) value);
+            // same word order the image reader decodes floats in
+            ByteBuffer words = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+            words.putInt((int) bits).putInt((int) (bits >>> 32));
+            return box(image.floatClass, words.array(), 10);
+        }
+        // frame markers and the like only exist while the VM runs
+        return null;
+    }
+
+    private BoxedValue box(ClassObject sqClass, byte[] bytes, int format) {
+        enqueue(sqClass);
+        BoxedValue boxed = new BoxedValue(sqClass, format, bytes);
+        add(boxed, null);
+        return boxed;
+    }
+
+    private static boolean isSmallInteger(long value) {
+        return -(1L << 30) <= value && value < (1L << 30);
+    }
+
+    private static Object[] slotsOf(BaseSqueakObject object) {
+        if (object instanceof AbstractPointersObject) {
+            Object[] pointers = ((AbstractPointersObject) object).getPointers();
+            return pointers == null ? new Object[0] : pointers.clone();
+        } else if (object instanceof CompiledMethodObject) {
+            return ((CompiledMethodObject) object).getLiterals().clone();
+        } else if (object instanceof SqueakObject) {
+            return new Object[0];
+        }
+        // contexts and closures only expose their slots through at0
+        Object[] slots = new Object[object.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = object.at0(i);
+        }
+        return slots;
+    }
+
+    private void assignClassIndices() {
+        ArrayList<ClassObject> unassigned = new ArrayList<>();
+        HashSet<Integer> used = new HashSet<>();
+        int maxIndex = FIRST_FREE_CLASS_INDEX - 1;
+        for (Object object : objects) {
+            if (object instanceof ClassObject) {
+                ClassObject sqClass = (ClassObject) object;
+                int hash = sqClass.squeakHash();
+                // SmallInteger and Character live at 1 and 2, the rest of the first entries are puns
+                boolean usable = hash == 1 || hash == 2 || hash >= FIRST_FREE_CLASS_INDEX;
+                if (usable && used.add(hash)) {
+                    classIndices.put(sqClass, hash);
+                    maxIndex = Math.max(maxIndex, hash);
+                } else {
+                    unassigned.add(sqClass);
+                }
+            }
+        }
+        for (ClassObject sqClass : unassigned) {
+            classIndices.put(sqClass, ++maxIndex);
+        }
+        int numPages = maxIndex / CLASS_TABLE_PAGE_SIZE + 1;
+        if (numPages > CLASS_TABLE_ROOT_SLOTS) {
+            throw new RuntimeException("Class table overflow");
+        }
+        classTablePages = new Object[HIDDEN_ROOT_SLOTS];
+        for (int i = 0; i < numPages; i++) {
+            Object[] page = new Object[CLASS_TABLE_PAGE_SIZE];
+            SyntheticObject pageObject = new SyntheticObject(ARRAY_CLASS_INDEX_PUN, 2, null);
+            add(pageObject, page);
+            classTablePages[i] = pageObject;
+        }
+        for (ClassObject sqClass : classIndices.keySet()) {
+            int index = classIndices.get(sqClass);
+            slotLists.get(oops.get(classTablePages[index / CLASS_TABLE_PAGE_SIZE]))[index % CLASS_TABLE_PAGE_SIZE] = sqClass;
+        }
+        slotLists.set(4, classTablePages);
+    }
+
+    private void assignAddresses() {
+        nextAddress = 0;
+        for (int i = 0; i < objects.size(); i++) {
+            int numSlots = numSlotsOf(objects.get(i), slotLists.get(i));
+            if (numSlots >= OVERFLOW_SLOTS) {
+                nextAddress += 8;
+            }
+            // replace the index by the address of the object's header
+            oops.put(objects.get(i), OLD_BASE_ADDRESS + nextAddress);
+            nextAddress += 8 + wordsFor(numSlots) * 4;
+        }
+    }
+
+    private static int numSlotsOf(Object object, Object[] slots) {
+        byte[] bytes = bytesOf(object);
+        int numSlots = slots == null ? 0 : slots.length;
+        if (bytes != null) {
+            numSlots += (bytes.length + 3) / 4;
+        }
+        return numSlots;
+    }
+
+    private static byte[] bytesOf(Object object) {
+        if (object instanceof NativeObject) {
+            return ((NativeObject) object).getBytes();
+        } else if (object instanceof LargeInteger) {
+            return ((LargeInteger) object).getBytes();
+        } else if (object instanceof CompiledMethodObject) {
+            return ((CompiledMethodObject) object).getBytes();
+        } else if (object instanceof BoxedValue) {
+            return ((BoxedValue) object).bytes;
+        } else if (object instanceof SyntheticObject) {
+            return ((SyntheticObject) object).bytes;
+        }
+        return null;
+    }
+
+    private static int wordsFor(int numSlots) {
+        // see Spur32BitMemoryManager>>smallObjectBytesForSlots:
+        return numSlots <= 1 ? 2 : numSlots + (numSlots & 1);
+    }
+
+    private void writeHeader() throws IOException {
+        int segmentSize = nextAddress + 16;
+        buffer.putInt(IMAGE_VERSION);
+        buffer.putInt(HEADER_SIZE);
+        buffer.putInt(OLD_BASE_ADDRESS + segmentSize); // end of memory
+        buffer.putInt(OLD_BASE_ADDRESS);
+        buffer.putInt(oops.get(image.specialObjectsArray));
+        buffer.putInt(lastHash);
+        buffer.putInt(0); // last window size, the VM picks a default
+        buffer.putInt(0); // header flags
+        buffer.putInt(0); // extra VM memory
+        buffer.putShort((short) 0); // stack pages
+        buffer.putShort((short) 0); // cog code size
+        buffer.putInt(0); // eden bytes
+        buffer.putShort((short) 0); // max external semaphore table size
+        buffer.putShort((short) 0); // re-align
+        buffer.putInt(segmentSize);
+        buffer.putInt(0); // free old space
+        while (buffer.position() < HEADER_SIZE) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private void writeObject(Object object, Object[] slots) throws IOException {
+        byte[] bytes = bytesOf(object);
+        int numSlots = numSlotsOf(object, slots);
+        int format = formatOf(object, slots, bytes);
+        int classIndex = classIndexOf(object);
+        int hash = hashOf(object);
+        ensure(16);
+        if (numSlots >= OVERFLOW_SLOTS) {
+            buffer.putLong(((long) OVERFLOW_SLOTS << 56) | numSlots);
+            numSlots = OVERFLOW_SLOTS;
+        }
+        buffer.putLong(((long) numSlots << 56) | ((long) hash << 32) | ((long) format << 24) | classIndex);
+        int written = 0;
+        if (slots != null) {
+            for (Object slot : slots) {
+                ensure(4);
+                buffer.putInt(encode(slot));
+            }
+            written += slots.length * 4;
+        }
+        if (bytes != null) {
+            writeBytes(bytes);
+            written += bytes.length;
+        }
+        int size = wordsFor(numSlotsOf(object, slots)) * 4;
+        ensure(size - written);
+        while (written < size) {
+            buffer.put((byte) 0);
+            written++;
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private int encode(Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            return (int) (((Number) value).longValue() << 1) | 1;
+        } else if (value instanceof Character) {
+            // immediate character, see Spur32BitMemoryManager>>characterObjectOf:
+            return ((char) value << 2) | 2;
+        } else if (value == null) {
+            return OLD_BASE_ADDRESS; // nil is the first object
+        }
+        return oops.get(value);
+    }
+
+    private int classIndexOf(Object object) {
+        if (object instanceof SyntheticObject) {
+            int classIndex = ((SyntheticObject) object).classIndex;
+            return classIndex < 0 ? classIndices.get(image.nilClass) : classIndex;
+        } else if (object instanceof Boolean) {
+            return classIndices.get((boolean) object ? image.trueClass : image.falseClass);
+        } else if (object instanceof BoxedValue) {
+            return classIndices.get(((BoxedValue) object).sqClass);
+        }
+        return classIndices.get(((BaseSqueakObject) object).getSqClass());
+    }
+
+    private int hashOf(Object object) {
+        int hash;
+        if (object instanceof ClassObject) {
+            hash = classIndices.get(object);
+        } else if (object instanceof BaseSqueakObject) {
+            // already masked to the identity hash bits
+            hash = ((BaseSqueakObject) object).squeakHash();
+        } else {
+            // boxed numbers have no identity, Spur assigns their hash on first use
+            return 0;
+        }
+        lastHash = Math.max(lastHash, hash);
+        return hash;
+    }
+
+    private static int formatOf(Object object, Object[] slots, byte[] bytes) {
+        if (object instanceof SyntheticObject) {
+            return ((SyntheticObject) object).format;
+        } else if (object instanceof BoxedValue) {
+            return ((BoxedValue) object).format + paddingOf(bytes.length, 1);
+        } else if (object instanceof Boolean || object instanceof EmptyObject) {
+            return 0;
+        } else if (object instanceof AbstractPointersObject) {
+            int instSpec = ((AbstractPointersObject) object).getSqClass().getInstSpec();
+            if (1 <= instSpec && instSpec <= 5) {
+                return instSpec;
+            }
+            return object instanceof ListObject ? 2 : 1;
+        } else if (object instanceof LargeInteger) {
+            return 16 + paddingOf(bytes.length, 1);
+        } else if (object instanceof NativeObject) {
+            switch (((NativeObject) object).getElementSize()) {
+                case 1:
+                    return 16 + paddingOf(bytes.length, 1);
+                case 2:
+                    return 12 + paddingOf(bytes.length / 2, 2);
+                case 4:
+                    return 10;
+                default:
+                    return 9;
+            }
+        } else if (object instanceof CompiledMethodObject) {
+            return 24 + paddingOf(bytes.length, 1);
+        }
+        return slots.length > ((BaseSqueakObject) object).instsize() ? 3 : 1;
+    }
+
+    /**
+     * The number of unused elements in the last word, encoded in the low bits of the format.
+     */
+    private static int paddingOf(int numElements, int elementSize) {
+        int perWord = 4 / elementSize;
+        return (perWord - numElements % perWord) % perWord;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public static void writeImage(SqueakImageContext image, FileChannel channel) throws IOException {
+        new ImageWriter(image).write(channel);
+    }
+}
@@ -0,0 +1,348 @@
+package de.hpi.swa.trufflesqueak.util;
+
+/**
+ * Arithmetic on magnitudes stored as little-endian arrays of unsigned 32-bit digits, as used by
+ * {@link de.hpi.swa.trufflesqueak.model.LargeInteger}. Operands are passed together with their
+ * length in digits, so arrays with unused leading digits can be used without copying them first.
+ * Results are fresh arrays that may have leading zero digits, use {@link #length(int[], int)} to
+ * find their actual length.
+ */
+public final class LargeIntegerDigits {
+    private static final long MASK = 0xFFFFFFFFL;
+
+    private LargeIntegerDigits() {
+    }
+
+    /**
+     * Returns the number of digits without leading zero digits.
+     */
+    public static int length(int[] digits, int len) {
+        int i = len;
+        while (i > 0 && digits[i - 1] == 0) {
+            i--;
+        }
+        return i;
+    }
+
+    public static int length(int[] digits) {
+        return length(digits, digits.length);
+    }
+
+    /**
+     * Returns the number of bytes needed for the magnitude.
+     */
+    public static int byteSize(int[] digits, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        return (len - 1) * 4 + (39 - Integer.numberOfLeadingZeros(digits[len - 1])) / 8;
+    }
+
+    public static int compare(int[] a, int alen, int[] b, int blen) {
+        if (alen != blen) {
+            return alen < blen ? -1 : 1;
+        }
+        for (int i = alen - 1; i >= 0; i--) {
+            if (a[i] != b[i]) {
+                return Integer.compareUnsigned(a[i], b[i]) < 0 ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    public static int[] add(int[] a, int alen, int[] b, int blen) {
+        if (alen < blen) {
+            return add(b, blen, a, alen);
+        }
+        int[] result = new int[alen + 1];
+        long carry = 0;
+        for (int i = 0; i < blen; i++) {
+            long sum = (a[i] & MASK) + (b[i] & MASK) + carry;
+            result[i] = (int) sum;
+            carry = sum >>> 32;
+        }
+        for (int i = blen; i < alen; i++) {
+            long sum = (a[i] & MASK) + carry;
+            result[i] = (int) sum;
+            carry = sum >>> 32;
+        }
+        result[alen] = (int) carry;
+        return result;
+    }
+
+    /**
+     * Subtracts b from a, which must not be smaller than b.
+     */
+    public static int[] subtract(int[] a, int alen, int[] b, int blen) {
+        int[] result = new int[alen];
+        long borrow = 0;
+        for (int i = 0; i < blen; i++) {
+            long difference = (a[i] & MASK) - (b[i] & MASK) - borrow;
+            result[i] = (int) difference;
+            borrow = difference >>> 63;
+        }
+        for (int i = blen; i < alen; i++) {
+            long difference = (a[i] & MASK) - borrow;
+            result[i] = (int) difference;
+            borrow = difference >>> 63;
+        }
+        assert borrow == 0;
+        return result;
+    }
+
+    public static int[] multiply(int[] a, int alen, int[] b, int blen) {
+        if (alen < blen) {
+            return multiply(b, blen, a, alen);
+        }
+        if (blen == 1) {
+            return multiplyByDigit(a, alen, b[0]);
+        }
+        int[] result = new int[alen + blen];
+        for (int j = 0; j < blen; j++) {
+            long digit = b[j] & MASK;
+            if (digit == 0) {
+                continue;
+            }
+            long carry = 0;
+            for (int i = 0; i < alen; i++) {
+                long product = (a[i] & MASK) * digit + (result[i + j] & MASK) + carry;
+                result[i + j] = (int) product;
+                carry = product >>> 32;
+            }
+            result[alen + j] = (int) carry;
+        }
+        return result;
+    }
+
+    private static int[] multiplyByDigit(int[] a, int alen, int digit) {
+        int[] result = new int[alen + 1];
+        long factor = digit & MASK;
+        long carry = 0;
+        for (int i = 0; i < alen; i++) {
+            long product = (a[i] & MASK) * factor + carry;
+            result[i] = (int) product;
+            carry = product >>> 32;
+        }
+        result[alen] = (int) carry;
+        return result;
+    }
+
+    /**
+     * Returns the quotient and the remainder of dividing a by b, which must not be zero.
+     */
+    public static int[][] divide(int[] a, int alen, int[] b, int blen) {
+        assert blen > 0;
+        if (alen < blen) {
+            return new int[][]{new int[0], copyOf(a, alen)};
+        }
+        if (blen == 1) {
+            return divideByDigit(a, alen, b[0]);
+        }
+        return divideKnuth(a, alen, b, blen);
+    }
+
+    private static int[][] divideByDigit(int[] a, int alen, int digit) {
+        int[] quotient = new int[alen];
+        long divisor = digit & MASK;
+        long remainder = 0;
+        for (int i = alen - 1; i >= 0; i--) {
+            long current = (remainder << 32) | (a[i] & MASK);
+            quotient[i] = (int) Long.divideUnsigned(current, divisor);
+            remainder = Long.remainderUnsigned(current, divisor);
+        }
+        return new int[][]{quotient, new int[]{(int) remainder}};
+    }
+
+    /**
+     * Knuth's algorithm D (The Art of Computer Programming, Vol. 2, 4.3.1) for divisors with at
+     * least two digits.
+     */
+    private static int[][] divideKnuth(int[] a, int alen, int[] b, int blen) {
+        // normalize so that the top digit of the divisor has its high bit set
+        int shift = Integer.numberOfLeadingZeros(b[blen - 1]);
+        int[] divisor = shiftLeftDigits(b, blen, shift, blen);
+        int[] dividend = shiftLeftDigits(a, alen, shift, alen + 1);
+        int[] quotient = new int[alen - blen + 1];
+        long divisorTop = divisor[blen - 1] & MASK;
+        long divisorNext = divisor[blen - 2] & MASK;
+        for (int j = alen - blen; j >= 0; j--) {
+            long top = ((dividend[j + blen] & MASK) << 32) | (dividend[j + blen - 1] & MASK);
+            long qhat = Long.divideUnsigned(top, divisorTop);
+            long rhat = Long.remainderUnsigned(top, divisorTop);
+            while (qhat > MASK || Long.compareUnsigned(qhat * divisorNext, (rhat << 32) | (dividend[j + blen - 2] & MASK)) > 0) {
+                qhat--;
+                rhat += divisorTop;
+                if (rhat > MASK) {
+                    break;
+                }
+            }
+            // multiply and subtract
+            long borrow = 0;
+            long difference;
+            for (int i = 0; i < blen; i++) {
+                long product = qhat * (divisor[i] & MASK);
+                difference = (dividend[i + j] & MASK) - borrow - (product & MASK);
+                dividend[i + j] = (int) difference;
+                borrow = (product >>> 32) - (difference >> 32);
+            }
+            difference = (dividend[j + blen] & MASK) - borrow;
+            dividend[j + blen] = (int) difference;
+            if (difference < 0) {
+                // qhat was one too large, add the divisor back
+                qhat--;
+                long carry = 0;
+                for (int i = 0; i < blen; i++) {
+                    long sum = (dividend[i + j] & MASK) + (divisor[i] & MASK) + carry;
+                    dividend[i + j] = (int) sum;
+                    carry = sum >>> 32;
+                }
+                dividend[j + blen] += (int) carry;
+            }
+            quotient[j] = (int) qhat;
+        }
+        return new int[][]{quotient, shiftRightDigits(dividend, blen + 1, shift, blen)};
+    }
+
+    public static int[] and(int[] a, int alen, int[] b, int blen) {
+        int len = Math.min(alen, blen);
+        int[] result = new int[len];
+        for (int i = 0; i < len; i++) {
+            result[i] = a[i] & b[i];
+        }
+        return result;
+    }
+
+    public static int[] or(int[] a, int alen, int[] b, int blen) {
+        if (alen < blen) {
+            return or(b, blen, a, alen);
+        }
+        int[] result = copyOf(a, alen);
+        for (int i = 0; i < blen; i++) {
+            result[i] |= b[i];
+        }
+        return result;
+    }
+
+    public static int[] xor(int[] a, int alen, int[] b, int blen) {
+        if (alen < blen) {
+            return xor(b, blen, a, alen);
+        }
+        int[] result = copyOf(a, alen);
+        for (int i = 0; i < blen; i++) {
+            result[i] ^= b[i];
+        }
+        return result;
+    }
+
+    public static int[] shiftLeft(int[] a, int alen, int shift) {
+        int digitShift = shift >>> 5;
+        int[] shifted = shiftLeftDigits(a, alen, shift & 31, alen + 1);
+        if (digitShift == 0) {
+            return shifted;
+        }
+        int[] result = new int[shifted.length + digitShift];
+        System.arraycopy(shifted, 0, result, digitShift, shifted.length);
+        return result;
+    }
+
+    public static int[] shiftRight(int[] a, int alen, int shift) {
+        int digitShift = shift >>> 5;
+        if (digitShift >= alen) {
+            return new int[0];
+        }
+        int len = alen - digitShift;
+        int bitShift = shift & 31;
+        int[] result = new int[len];
+        for (int i = 0; i < len; i++) {
+            int low = a[i + digitShift] >>> bitShift;
+            int high = bitShift == 0 || i + digitShift + 1 >= alen ? 0 : a[i + digitShift + 1] << (32 - bitShift);
+            result[i] = low | high;
+        }
+        return result;
+    }
+
+    /**
+     * Tests whether any bit between the 1-based bit indices start and stop is set.
+     */
+    public static boolean anyBit(int[] a, int alen, int start, int stop) {
+        int last = Math.min(stop, alen * 32);
+        for (int bit = start - 1; bit < last; bit++) {
+            if ((a[bit >>> 5] & (1 << (bit & 31))) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Montgomery multiplication: returns a * b / 2^(32 * mlen) modulo m, where mInv is -1 / m modulo
+     * 2^32 and neither a nor b has more digits than m.
+     */
+    public static int[] montgomeryTimes(int[] a, int alen, int[] b, int blen, int[] m, int mlen, int mInv) {
+        int[] t = new int[mlen + 2];
+        long inverse = mInv & MASK;
+        for (int i = 0; i < mlen; i++) {
+            long ai = i < alen ? a[i] & MASK : 0;
+            // t += ai * b
+            long carry = 0;
+            for (int j = 0; j < mlen; j++) {
+                long bj = j < blen ? b[j] & MASK : 0;
+                long sum = (t[j] & MASK) + ai * bj + carry;
+                t[j] = (int) sum;
+                carry = sum >>> 32;
+            }
+            long sum = (t[mlen] & MASK) + carry;
+            t[mlen] = (int) sum;
+            t[mlen + 1] = (int) (sum >>> 32);
+            // t = (t + u * m) / 2^32, with u chosen so that the lowest digit becomes zero
+            long u = ((t[0] & MASK) * inverse) & MASK;
+            sum = (t[0] & MASK) + u * (m[0] & MASK);
+            carry = sum >>> 32;
+            for (int j = 1; j < mlen; j++) {
+                sum = (t[j] & MASK) + u * (m[j] & MASK) + carry;
+                t[j - 1] = (int) sum;
+                carry = sum >>> 32;
+            }
+            sum = (t[mlen] & MASK) + carry;
+            t[mlen - 1] = (int) sum;
+            t[mlen] = t[mlen + 1] + (int) (sum >>> 32);
+            t[mlen + 1] = 0;
+        }
+        if (compare(t, length(t, mlen + 1), m, mlen) >= 0) {
+            return subtract(t, mlen + 1, m, mlen);
+        }
+        return t;
+    }
+
+    private static int[] shiftLeftDigits(int[] a, int alen, int shift, int resultLength) {
+        int[] result = new int[resultLength];
+        if (shift == 0) {
+            System.arraycopy(a, 0, result, 0, alen);
+            return result;
+        }
+        int carry = 0;
+        for (int i = 0; i < alen; i++) {
+            result[i] = (a[i] << shift) | carry;
+            carry = a[i] >>> (32 - shift);
+        }
+        if (alen < resultLength) {
+            result[alen] = carry;
+        }
+        return result;
+    }
+
+    private static int[] shiftRightDigits(int[] a, int alen, int shift, int resultLength) {
+        int[] result = new int[resultLength];
+        for (int i = 0; i < resultLength; i++) {
+            int high = shift == 0 || i + 1 >= alen ? 0 : a[i + 1] << (32 - shift);
+            result[i] = (a[i] >>> shift) | high;
+        }
+        return result;
+    }
+
+    private static int[] copyOf(int[] a, int alen) {
+        int[] result = new int[alen];
+        System.arraycopy(a, 0, result, 0, alen);
+        return result;
+    }
+}
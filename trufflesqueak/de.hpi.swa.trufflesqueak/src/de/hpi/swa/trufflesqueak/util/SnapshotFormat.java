@@ -0,0 +1,81 @@
+package de.hpi.swa.trufflesqueak.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import de.hpi.swa.trufflesqueak.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
+
+/**
+ * Layout of TruffleSqueak snapshots. A snapshot is written from an already loaded image and stores
+ * the object graph pre-decoded, so it can be restored without going through Spur chunks:
+ *
+ * <pre>
+ * header:   magic, version, object count
+ * prebuilt: count, then (object id, prebuilt index) pairs for objects the image context owns
+ * kinds:    one byte per object
+ * objects:  per object the class id (-1 for none), the identity hash, and the kind specific body
+ * </pre>
+ *
+ * Object ids are indices into the object table, the special objects array always has id 0.
+ * Compiled blocks are not objects of their own, a closure stores the number of arguments and the
+ * bytecodes of its block, and the outer method as the first of its values. Characters are stored
+ * as an int code point. All values are big-endian.
+ */
+public final class SnapshotFormat {
+    static final int MAGIC = 0x54535153; // "TSQS"
+    static final int VERSION = 3;
+
+    static final byte KIND_EMPTY = 0;
+    static final byte KIND_POINTERS = 1;
+    static final byte KIND_LIST = 2;
+    static final byte KIND_CLASS = 3;
+    static final byte KIND_CONTEXT = 4;
+    static final byte KIND_NATIVE = 5;
+    static final byte KIND_LARGE_INTEGER = 6;
+    static final byte KIND_METHOD = 7;
+    static final byte KIND_CLOSURE = 8;
+
+    static final byte TAG_NIL = 0;
+    static final byte TAG_FALSE = 1;
+    static final byte TAG_TRUE = 2;
+    static final byte TAG_INT = 3;
+    static final byte TAG_LONG = 4;
+    static final byte TAG_DOUBLE = 5;
+    static final byte TAG_OBJECT = 6;
+    static final byte TAG_CHAR = 7;
+
+    static final int NO_POINTERS = -1;
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * The objects that the image context allocates up front and that a loaded image fills in
+     * instead of creating new ones. The order is part of the format.
+     */
+    static BaseSqueakObject[] prebuiltObjects(SqueakImageContext image) {
+        return new BaseSqueakObject[]{
+                        image.specialObjectsArray, image.schedulerAssociation, image.characterClass,
+                        image.smallIntegerClass, image.arrayClass, image.smalltalk, image.doesNotUnderstand,
+                        image.specialSelectors, image.mustBeBoolean, image.metaclass, image.methodContextClass,
+                        image.nilClass, image.trueClass, image.falseClass, image.stringClass,
+                        image.compiledMethodClass, image.blockClosureClass, image.largePositiveIntegerClass,
+                        image.largeNegativeIntegerClass, image.floatClass,
+                        image.plus, image.minus, image.lt, image.gt, image.le, image.ge,
+                        image.eq, image.ne, image.times, image.div, image.modulo, image.pointAt,
+                        image.bitShift, image.divide, image.bitAnd, image.bitOr, image.at,
+                        image.atput, image.size_, image.next, image.nextPut, image.atEnd,
+                        image.equivalent, image.klass, image.blockCopy, image.value,
+                        image.valueWithArg, image.do_, image.new_, image.newWithArg,
+                        image.x, image.y
+        };
+    }
+
+    public static boolean isSnapshot(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        // positional read, leaves the channel where it was for the image reader
+        return channel.read(magic, 0) == 4 && magic.getInt(0) == MAGIC;
+    }
+}
@@ -0,0 +1,192 @@
+package de.hpi.swa.trufflesqueak.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import de.hpi.swa.trufflesqueak.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.model.AbstractPointersObject;
+import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
+import de.hpi.swa.trufflesqueak.model.BlockClosure;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledBlockObject;
+import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.ContextObject;
+import de.hpi.swa.trufflesqueak.model.EmptyObject;
+import de.hpi.swa.trufflesqueak.model.LargeInteger;
+import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.model.PointersObject;
+import de.hpi.swa.trufflesqueak.model.SqueakObject;
+
+/**
+ * Restores an image from a {@link SnapshotFormat snapshot}. All objects are allocated from the
+ * kind table first, so references can be resolved by index while the object bodies are read in a
+ * single pass. The snapshot is streamed rather than mapped, a mapping can't be larger than 2GB.
+ */
+public class SnapshotReader {
+    private final SqueakImageContext image;
+    private final DataInputStream in;
+    private BaseSqueakObject[] objects;
+    private final ArrayList<Runnable> pendingClosures = new ArrayList<>();
+
+    public SnapshotReader(SqueakImageContext image, FileChannel channel) throws IOException {
+        this.image = image;
+        channel.position(0);
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+    }
+
+    public void readSnapshot() throws IOException {
+        if (in.readInt() != SnapshotFormat.MAGIC) {
+            throw new IOException("Not a TruffleSqueak snapshot");
+        }
+        int version = in.readInt();
+        if (version != SnapshotFormat.VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        objects = new BaseSqueakObject[in.readInt()];
+        readPrebuiltTable();
+        byte[] kinds = new byte[objects.length];
+        in.readFully(kinds);
+        for (int i = 0; i < objects.length; i++) {
+            if (objects[i] == null) {
+                objects[i] = allocate(kinds[i]);
+            }
+        }
+        for (int i = 0; i < objects.length; i++) {
+            fillin(objects[i], kinds[i]);
+        }
+        // blocks are created from their outer methods, which have to be filled in first
+        for (Runnable closure : pendingClosures) {
+            closure.run();
+        }
+    }
+
+    private void readPrebuiltTable() throws IOException {
+        BaseSqueakObject[] prebuilt = SnapshotFormat.prebuiltObjects(image);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            objects[id] = prebuilt[in.readInt()];
+        }
+    }
+
+    private BaseSqueakObject allocate(byte kind) throws IOException {
+        switch (kind) {
+            case SnapshotFormat.KIND_EMPTY:
+                return new EmptyObject(image);
+            case SnapshotFormat.KIND_POINTERS:
+                return new PointersObject(image);
+            case SnapshotFormat.KIND_LIST:
+                return new ListObject(image);
+            case SnapshotFormat.KIND_CLASS:
+                return new ClassObject(image);
+            case SnapshotFormat.KIND_CONTEXT:
+                return ContextObject.createWriteableContextObject(image);
+            case SnapshotFormat.KIND_CLOSURE:
+                return new BlockClosure(image);
+            case SnapshotFormat.KIND_NATIVE:
+                return new NativeObject(image, (byte) 1);
+            case SnapshotFormat.KIND_LARGE_INTEGER:
+                return new LargeInteger(image);
+            case SnapshotFormat.KIND_METHOD:
+                return new CompiledMethodObject(image);
+            default:
+                throw new IOException("Unknown object kind " + kind + " in snapshot");
+        }
+    }
+
+    private void fillin(BaseSqueakObject object, byte kind) throws IOException {
+        int classId = in.readInt();
+        int hash = in.readInt();
+        if (object instanceof SqueakObject) {
+            ((SqueakObject) object).fillinHeader(hash, classId < 0 ? null : (ClassObject) objects[classId]);
+        }
+        switch (kind) {
+            case SnapshotFormat.KIND_POINTERS:
+            case SnapshotFormat.KIND_LIST:
+            case SnapshotFormat.KIND_CLASS:
+                int size = in.readInt();
+                if (size != SnapshotFormat.NO_POINTERS) {
+                    ((AbstractPointersObject) object).fillinPointers(readValues(size));
+                }
+                break;
+            case SnapshotFormat.KIND_NATIVE:
+                byte elementSize = in.readByte();
+                ((NativeObject) object).fillinBytes(readBytes(), elementSize);
+                break;
+            case SnapshotFormat.KIND_LARGE_INTEGER:
+                // the header must be filled in first, the class determines the sign
+                ((LargeInteger) object).setBytes(readBytes());
+                break;
+            case SnapshotFormat.KIND_METHOD:
+                Object[] literals = readValues(in.readInt());
+                ((CompiledMethodObject) object).fillinLiteralsAndBytes(literals, readBytes());
+                break;
+            case SnapshotFormat.KIND_CONTEXT:
+                ((ContextObject) object).fillinPointers(hash, readValues(in.readInt()));
+                break;
+            case SnapshotFormat.KIND_CLOSURE:
+                int numArgs = in.readInt();
+                byte[] blockBytes = readBytes();
+                Object[] values = readValues(in.readInt());
+                pendingClosures.add(() -> fillinClosure((BlockClosure) object, hash, numArgs, blockBytes, values));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void fillinClosure(BlockClosure closure, int hash, int numArgs, byte[] blockBytes, Object[] values) {
+        CompiledBlockObject block = new CompiledBlockObject((CompiledMethodObject) values[0], numArgs, values.length - 3);
+        block.setBytes(blockBytes);
+        Object[] copied = new Object[values.length - 3];
+        System.arraycopy(values, 3, copied, 0, copied.length);
+        closure.fillinClosure(hash, values[1], block, values[2], copied);
+    }
+
+    private Object[] readValues(int size) throws IOException {
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = readValue();
+        }
+        return values;
+    }
+
+    private Object readValue() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case SnapshotFormat.TAG_NIL:
+                return null;
+            case SnapshotFormat.TAG_FALSE:
+                return image.sqFalse;
+            case SnapshotFormat.TAG_TRUE:
+                return image.sqTrue;
+            case SnapshotFormat.TAG_INT:
+                return in.readInt();
+            case SnapshotFormat.TAG_LONG:
+                return in.readLong();
+            case SnapshotFormat.TAG_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case SnapshotFormat.TAG_OBJECT:
+                return objects[in.readInt()];
+            case SnapshotFormat.TAG_CHAR:
+                return (char) in.readInt();
+            default:
+                throw new IOException("Unknown value tag " + tag + " in snapshot");
+        }
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    public static void readSnapshot(SqueakImageContext image, FileChannel channel) throws IOException {
+        new SnapshotReader(image, channel).readSnapshot();
+    }
+}
@@ -0,0 +1,225 @@
+package de.hpi.swa.trufflesqueak.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import de.hpi.swa.trufflesqueak.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.model.AbstractPointersObject;
+import de.hpi.swa.trufflesqueak.model.BaseSqueakObject;
+import de.hpi.swa.trufflesqueak.model.BlockClosure;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledMethodObject;
+import de.hpi.swa.trufflesqueak.model.ContextObject;
+import de.hpi.swa.trufflesqueak.model.EmptyObject;
+import de.hpi.swa.trufflesqueak.model.LargeInteger;
+import de.hpi.swa.trufflesqueak.model.ListObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.model.PointersObject;
+
+/**
+ * Writes the object graph reachable from the special objects array as a {@link SnapshotFormat
+ * snapshot}.
+ */
+public class SnapshotWriter {
+    private final SqueakImageContext image;
+    private final ArrayList<BaseSqueakObject> objects = new ArrayList<>();
+    private final IdentityHashMap<BaseSqueakObject, Integer> ids = new IdentityHashMap<>();
+
+    public SnapshotWriter(SqueakImageContext image) {
+        this.image = image;
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        collectObjects();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+        out.writeInt(SnapshotFormat.MAGIC);
+        out.writeInt(SnapshotFormat.VERSION);
+        out.writeInt(objects.size());
+        writePrebuiltTable(out);
+        for (BaseSqueakObject object : objects) {
+            out.writeByte(kindOf(object));
+        }
+        for (BaseSqueakObject object : objects) {
+            writeObject(out, object);
+        }
+        out.flush();
+    }
+
+    private void collectObjects() {
+        enqueue(image.specialObjectsArray);
+        for (int i = 0; i < objects.size(); i++) {
+            BaseSqueakObject object = objects.get(i);
+            enqueue(object.getSqClass());
+            for (Object value : slotsOf(object)) {
+                if (value instanceof BaseSqueakObject) {
+                    enqueue((BaseSqueakObject) value);
+                }
+            }
+        }
+    }
+
+    private void enqueue(BaseSqueakObject object) {
+        if (object != null && !ids.containsKey(object)) {
+            ids.put(object, objects.size());
+            objects.add(object);
+        }
+    }
+
+    private static Object[] slotsOf(BaseSqueakObject object) {
+        Object[] slots = null;
+        if (object instanceof AbstractPointersObject) {
+            slots = ((AbstractPointersObject) object).getPointers();
+        } else if (object instanceof CompiledMethodObject) {
+            slots = ((CompiledMethodObject) object).getLiterals();
+        } else if (object instanceof ContextObject) {
+            // contexts only expose their slots through at0, like the frame they may be backed by
+            slots = new Object[object.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = object.at0(i);
+            }
+        } else if (object instanceof BlockClosure) {
+            slots = closureValuesOf((BlockClosure) object);
+        }
+        return slots == null ? new Object[0] : slots;
+    }
+
+    /**
+     * The outer method, the outer context, the receiver, and the copied values of a closure.
+     */
+    private static Object[] closureValuesOf(BlockClosure closure) {
+        Object[] copied = closure.getStack();
+        Object[] values = new Object[3 + copied.length];
+        values[0] = closure.getCompiledBlock().getMethod();
+        values[1] = closure.at0(0);
+        values[2] = closure.getReceiver();
+        System.arraycopy(copied, 0, values, 3, copied.length);
+        return values;
+    }
+
+    private void writePrebuiltTable(DataOutputStream out) throws IOException {
+        BaseSqueakObject[] prebuilt = SnapshotFormat.prebuiltObjects(image);
+        int count = 0;
+        for (BaseSqueakObject object : prebuilt) {
+            if (ids.containsKey(object)) {
+                count++;
+            }
+        }
+        out.writeInt(count);
+        for (int i = 0; i < prebuilt.length; i++) {
+            Integer id = ids.get(prebuilt[i]);
+            if (id != null) {
+                out.writeInt(id);
+                out.writeInt(i);
+            }
+        }
+    }
+
+    private static byte kindOf(BaseSqueakObject object) {
+        if (object instanceof ClassObject) {
+            return SnapshotFormat.KIND_CLASS;
+        } else if (object instanceof ListObject) {
+            return SnapshotFormat.KIND_LIST;
+        } else if (object instanceof PointersObject) {
+            return SnapshotFormat.KIND_POINTERS;
+        } else if (object instanceof EmptyObject) {
+            return SnapshotFormat.KIND_EMPTY;
+        } else if (object instanceof ContextObject) {
+            return SnapshotFormat.KIND_CONTEXT;
+        } else if (object instanceof BlockClosure) {
+            return SnapshotFormat.KIND_CLOSURE;
+        } else if (object instanceof LargeInteger) {
+            return SnapshotFormat.KIND_LARGE_INTEGER;
+        } else if (object instanceof NativeObject) {
+            return SnapshotFormat.KIND_NATIVE;
+        } else if (object instanceof CompiledMethodObject) {
+            return SnapshotFormat.KIND_METHOD;
+        }
+        throw new RuntimeException("Cannot snapshot instances of " + object.getClass().getSimpleName());
+    }
+
+    private void writeObject(DataOutputStream out, BaseSqueakObject object) throws IOException {
+        ClassObject sqClass = object.getSqClass();
+        out.writeInt(sqClass == null ? -1 : ids.get(sqClass));
+        out.writeInt(object.squeakHash());
+        switch (kindOf(object)) {
+            case SnapshotFormat.KIND_POINTERS:
+            case SnapshotFormat.KIND_LIST:
+            case SnapshotFormat.KIND_CLASS:
+                Object[] pointers = ((AbstractPointersObject) object).getPointers();
+                if (pointers == null) {
+                    // prebuilt object the image never filled in
+                    out.writeInt(SnapshotFormat.NO_POINTERS);
+                } else {
+                    writeValues(out, pointers);
+                }
+                break;
+            case SnapshotFormat.KIND_NATIVE:
+                NativeObject nativeObject = (NativeObject) object;
+                out.writeByte(nativeObject.getElementSize());
+                writeBytes(out, nativeObject.getBytes());
+                break;
+            case SnapshotFormat.KIND_LARGE_INTEGER:
+                writeBytes(out, ((LargeInteger) object).getBytes());
+                break;
+            case SnapshotFormat.KIND_METHOD:
+                // the literal count is stored up front so the loader never decodes headers
+                CompiledMethodObject method = (CompiledMethodObject) object;
+                writeValues(out, method.getLiterals());
+                writeBytes(out, method.getBytes());
+                break;
+            case SnapshotFormat.KIND_CONTEXT:
+                writeValues(out, slotsOf(object));
+                break;
+            case SnapshotFormat.KIND_CLOSURE:
+                BlockClosure closure = (BlockClosure) object;
+                out.writeInt(closure.getCompiledBlock().getNumArgs());
+                writeBytes(out, closure.getCompiledBlock().getBytes());
+                writeValues(out, closureValuesOf(closure));
+                break;
+            default:
+                // empty objects have no body
+                break;
+        }
+    }
+
+    private void writeValues(DataOutputStream out, Object[] values) throws IOException {
+        out.writeInt(values.length);
+        for (Object value : values) {
+            writeValue(out, value);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(SnapshotFormat.TAG_NIL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((boolean) value ? SnapshotFormat.TAG_TRUE : SnapshotFormat.TAG_FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(SnapshotFormat.TAG_INT);
+            out.writeInt((int) value);
+        } else if (value instanceof Long) {
+            out.writeByte(SnapshotFormat.TAG_LONG);
+            out.writeLong((long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(SnapshotFormat.TAG_DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((double) value));
+        } else if (value instanceof Character) {
+            out.writeByte(SnapshotFormat.TAG_CHAR);
+            out.writeInt((char) value);
+        } else if (value instanceof BaseSqueakObject) {
+            out.writeByte(SnapshotFormat.TAG_OBJECT);
+            out.writeInt(ids.get(value));
+        } else {
+            throw new RuntimeException("Cannot snapshot " + value.getClass().getSimpleName());
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}